@@ -1,13 +1,14 @@
 package com.kentnek.cdcl;
 
-import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.generator.CnfWriter;
+import com.kentnek.cdcl.generator.RandomKSatGenerator;
+import com.kentnek.cdcl.maxsat.WeightedFormula;
 import com.kentnek.cdcl.model.Formula;
-import com.kentnek.cdcl.model.Literal;
+import com.kentnek.cdcl.parser.ClauseArena;
+import com.kentnek.cdcl.parser.DimacsParser;
 
 import java.io.*;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
+import java.nio.file.Paths;
 
 /**
  * Helper methods to parse/generate formula.
@@ -18,102 +19,108 @@ import java.util.Set;
 
 public class FormulaHelper {
 
-    private static Random rand = new Random();
-
+    /**
+     * Parses a formula in DIMACS format from a file, see {@link DimacsParser}.
+     *
+     * @return the formula, or null if the file cannot be parsed or the clause count does not match the header.
+     */
     public static Formula parseFromFile(String inputFilePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(inputFilePath))) {
-            Formula formula = null;
-            int variableNum = 0;
-            int clauseNum = 0;
-            Clause clause = null;
-
-            for (String line; (line = br.readLine()) != null; ) {
-                if (line.startsWith("c") || line.isEmpty()) continue; // Comment line
-
-                String[] tokens = line.trim().split("\\s+");
-
-                if (line.startsWith("p cnf")) { // literals definition line
-                    variableNum = Integer.parseInt(tokens[2]);
-                    clauseNum = Integer.parseInt(tokens[3]);
-                    formula = new Formula(variableNum);
-                    continue;
-                } else if (formula == null) continue;
-
-                if (clause == null) { // Clause line
-                    clause = new Clause(variableNum);
-                }
-
-                for (String token : tokens) {
-                    int literalNum = Integer.parseInt(token);
-
-                    if (literalNum == 0) {
-                        formula.add(clause);
-                        clause = null;
-                        break;
-                    }
+        try {
+            ClauseArena arena = new DimacsParser().parseFile(Paths.get(inputFilePath));
 
-                    clause.add(new Literal(literalNum));
-                }
-
-            }
-
-            if (formula != null && formula.getClauseSize() != clauseNum) {
-                System.out.println(String.format(
+            if (arena.getParsedClauseCount() != arena.getDeclaredClauseCount()) {
+                Logger.log(String.format(
                         "Clause number defined to be %d, but found %d instead.",
-                        clauseNum, formula.getClauseSize()
+                        arena.getDeclaredClauseCount(), arena.getParsedClauseCount()
                 ));
 
                 return null;
             }
 
-            return formula;
+            if (arena.getParsedClauseCount() != arena.getClauseCount()
+                    || arena.getNormalizer().getDuplicateLiteralCount() > 0) {
+                Logger.log("Normalization", arena.getNormalizer() + ".");
+            }
 
-        } catch (IOException e) {
+            return arena.toFormula();
+        } catch (IOException | IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static WeightedFormula parseWcnfFromFile(String inputFilePath) {
+        try (BufferedReader br = new BufferedReader(new FileReader(inputFilePath))) {
+            return parseWcnf(br);
+        } catch (IOException | IllegalArgumentException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Parses a weighted MaxSAT instance, one clause per line, in either WCNF format:
+     * <p>
+     * - with a "p wcnf variables clauses top" header, where every clause starts with its weight, and the clauses of
+     * weight top are hard.
+     * <p>
+     * - without a header, where hard clauses start with "h" instead of a weight.
+     */
+    public static WeightedFormula parseWcnf(BufferedReader br) throws IOException {
+        WeightedFormula formula = new WeightedFormula(0);
+        long top = Long.MAX_VALUE;
+
+        for (String line; (line = br.readLine()) != null; ) {
+            line = line.trim();
+            if (line.startsWith("c") || line.isEmpty()) continue; // Comment line
+
+            String[] tokens = line.split("\\s+");
+
+            if (line.startsWith("p wcnf")) {
+                formula = new WeightedFormula(Integer.parseInt(tokens[2]));
+                if (tokens.length > 4) top = Long.parseLong(tokens[4]);
+                continue;
+            }
+
+            boolean isHard = tokens[0].equals("h");
+            long weight = isHard ? top : Long.parseLong(tokens[0]);
+
+            if (!tokens[tokens.length - 1].equals("0")) {
+                throw new IllegalArgumentException("A clause must end with 0 on the same line: " + line);
+            }
 
-    public static void generateCnf(int variables, int literalPerClause, int clauses) {
-        rand.setSeed(System.currentTimeMillis());
+            int[] literals = new int[tokens.length - 2];
+            for (int i = 1; i < tokens.length - 1; i++) literals[i - 1] = Integer.parseInt(tokens[i]);
 
-        String fileName = String.format(
-                "N%d_K%d_L%d_%d.cnf",
+            if (isHard || weight >= top) formula.addHard(literals);
+            else formula.addSoft(weight, literals);
+        }
+
+        return formula;
+    }
+
+    /**
+     * Writes a random k-SAT formula into "inputs/generated", seeded by the current time, see
+     * {@link RandomKSatGenerator}.
+     *
+     * @return the path of the file, or null if it cannot be written.
+     */
+    public static String generateCnf(int variables, int literalPerClause, int clauses) {
+        RandomKSatGenerator generator = new RandomKSatGenerator(
                 variables, literalPerClause, clauses, System.currentTimeMillis()
         );
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("inputs/generated/" + fileName))) {
-            writer.write("c FILE: " + fileName + "\n");
-            writer.write("c\n");
-            writer.write("c Generated randomly by kentnek.\n");
-            writer.write("c\n");
-            writer.write(String.format("c N = %d, K = %d, L = %d.\n", variables, literalPerClause, clauses));
-            writer.write("c\n");
-            writer.write("c NOTE: \n");
-            writer.write("c\n");
-
-            writer.write(String.format("p cnf %d %d\n", variables, clauses));
-
-            Set<Integer> set = new HashSet<>();
-
-            for (int i = 0; i < clauses; i++) {
-                set.clear();
-                while (set.size() < literalPerClause) {
-                    set.add(rand.nextInt(variables) + 1);
-                }
-
-                for (int l : set) {
-                    if (rand.nextBoolean()) writer.write("-");
-                    writer.write(l + " ");
-                }
-                writer.write("0\n");
-            }
+        String path = String.format("inputs/generated/%s_%d.cnf", generator.getName(), generator.getSeed());
 
+        try {
+            new CnfWriter().write(generator, Paths.get(path));
         } catch (IOException e) {
             System.out.println("Unable to write to file.");
             e.printStackTrace();
+            return null;
         }
+
+        return path;
     }
 
     public static void main(String[] args) {
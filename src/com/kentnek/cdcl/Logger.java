@@ -13,8 +13,16 @@ import static java.util.stream.Collectors.toList;
  */
 
 public class Logger {
+    private static boolean showLog = true;
     private static boolean showDebug = false;
 
+    /**
+     * Hides all logs, e.g. when the standard output carries machine-readable results.
+     */
+    public static void setShowLog(boolean showLog) {
+        Logger.showLog = showLog;
+    }
+
     public static void setShowDebug(boolean showDebug) {
         Logger.showDebug = showDebug;
     }
@@ -24,6 +32,7 @@ public class Logger {
     }
 
     public static void log(Object... objs) {
+        if (!showLog) return;
         List<String> ret = Arrays.stream(objs).map(Object::toString).collect(toList());
         System.out.println(String.join(" ", ret));
     }
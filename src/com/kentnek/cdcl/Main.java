@@ -5,7 +5,12 @@ import com.kentnek.cdcl.algo.SatSolver;
 import com.kentnek.cdcl.algo.UnsatProver;
 import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
 import com.kentnek.cdcl.algo.picker.HybridVsidsPicker;
+import com.kentnek.cdcl.algo.preprocessor.AtMostOneDetection;
+import com.kentnek.cdcl.algo.preprocessor.BlockedClauseElimination;
+import com.kentnek.cdcl.algo.preprocessor.FailedLiteralProbing;
+import com.kentnek.cdcl.algo.preprocessor.PreprocessorPipeline;
 import com.kentnek.cdcl.algo.preprocessor.PureLiteralElimination;
+import com.kentnek.cdcl.algo.preprocessor.XorDetection;
 import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
 import com.kentnek.cdcl.model.Assignment;
 import com.kentnek.cdcl.model.Formula;
@@ -24,6 +29,9 @@ public class Main {
 
     private static boolean shouldGenerateProof;
 
+    // Gauss-Jordan propagation of detected XORs, off by default as it makes par16 twice as slow, see XorBenchmark
+    private static boolean shouldDetectXors;
+
     // This will check if the Java Debug Wire Protocol agent is used.
     private static boolean isDebugMode = java.lang.management.ManagementFactory.getRuntimeMXBean()
             .getInputArguments().toString().contains("jdwp");
@@ -33,6 +41,7 @@ public class Main {
         Logger.setShowDebug(isDebugMode);
         Metrics.setEnabled(true);
         shouldGenerateProof = true;
+        shouldDetectXors = false;
     }
 
     public static void main(String[] args) {
@@ -49,8 +58,19 @@ public class Main {
             Logger.log("The formula is too big to be displayed.");
         }
 
+        PreprocessorPipeline pipeline = new PreprocessorPipeline()
+                .add(new PureLiteralElimination())
+                .add(new BlockedClauseElimination(), 500)
+                .add(new FailedLiteralProbing(), 500);
+
+        // the propagations of native constraints are not part of refutation proofs
+        if (!shouldGenerateProof) {
+            pipeline.add(new AtMostOneDetection());
+            if (shouldDetectXors) pipeline.add(new XorDetection());
+        }
+
         SatSolver solver = new CdclSolver()
-                .with(new PureLiteralElimination())
+                .with(pipeline)
                 .with(new HybridVsidsPicker(0.1f))
                 .with(new TwoWatchedLiteralPropagator())
                 .with(new ClauseLearningWithUip())
@@ -72,6 +92,7 @@ public class Main {
 
         if (Metrics.isEnabled()) {
             Logger.log("\nTotal time:", Metrics.getElapsedTimeMillis(TOTAL), "ms");
+            Logger.log("Preprocessing time:", Metrics.getElapsedTimeMillis(PREPROCESSING), "ms");
             Logger.log("Unit propagation time:", Metrics.getElapsedTimeMillis(UNIT_PROPAGATION), "ms");
             Logger.log("Branch picking invocation count:", Metrics.getCounter(BRANCH_PICKING));
             Logger.log("Branch picking time:", Metrics.getElapsedTimeMillis(BRANCH_PICKING), "ms");
@@ -2,28 +2,27 @@ package com.kentnek.cdcl;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * [Description]
+ * Global timers and counters.
  * <p>
+ * Totals are shared by all threads, while running timers are kept per thread, so several solvers can be timed
+ * concurrently.
  *
  * @author kentnek
  */
 
 public class Metrics {
     public enum Key {
-        TOTAL, UNIT_PROPAGATION, BRANCH_PICKING, CONFLICT_ANALYSIS
+        TOTAL, PREPROCESSING, UNIT_PROPAGATION, BRANCH_PICKING, CONFLICT_ANALYSIS, RESTART, INPROCESSING,
+        CLAUSE_EXPORT, CLAUSE_IMPORT
     }
 
-    private static Map<Key, Integer> counterMap;
-    private static Map<Key, Long> elapsedTimeMap, startTimeMap;
-    private static boolean enabled = false;
-
-    static {
-        counterMap = new HashMap<>();
-        elapsedTimeMap = new HashMap<>();
-        startTimeMap = new HashMap<>();
-    }
+    private static final Map<Key, Integer> counterMap = new ConcurrentHashMap<>();
+    private static final Map<Key, Long> elapsedTimeMap = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<Key, Long>> startTimeMap = ThreadLocal.withInitial(HashMap::new);
+    private static volatile boolean enabled = false;
 
     public static void setEnabled(boolean isEnabled) {
         Metrics.enabled = isEnabled;
@@ -35,12 +34,12 @@ public class Metrics {
 
     public static void startTimer(Key key) {
         if (!enabled) return;
-        startTimeMap.put(key, System.currentTimeMillis());
+        startTimeMap.get().put(key, System.currentTimeMillis());
     }
 
     public static void stopTimer(Key key) {
         if (!enabled) return;
-        Long startTime = startTimeMap.get(key);
+        Long startTime = startTimeMap.get().get(key);
         if (startTime == null) {
             Logger.log(String.format("WARNING: stopwatch has not been started for key '%s'.", key));
             return;
@@ -48,7 +47,7 @@ public class Metrics {
 
         long elapsedTime = System.currentTimeMillis() - startTime;
         elapsedTimeMap.merge(key, elapsedTime, Long::sum);
-        startTimeMap.remove(key);
+        startTimeMap.get().remove(key);
     }
 
     public static long getElapsedTimeMillis(Key key) {
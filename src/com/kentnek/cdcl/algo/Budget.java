@@ -0,0 +1,128 @@
+package com.kentnek.cdcl.algo;
+
+/**
+ * Limits the resources of a solve: time, conflicts, propagations and memory. A budget can also be cancelled from
+ * another thread.
+ * <p>
+ * The solver checks the budget at cheap points, i.e. at every conflict, before every decision, and every few thousand
+ * propagations. Once exhausted, a budget stays exhausted, and the solver returns {@link SolveResult.Status#UNKNOWN}.
+ * Interrupting the solving thread also exhausts the budget.
+ *
+ * @author kentnek
+ */
+
+public class Budget {
+
+    private long timeLimitMillis = Long.MAX_VALUE;
+    private long conflictLimit = Long.MAX_VALUE;
+    private long propagationLimit = Long.MAX_VALUE;
+    private long memoryLimitBytes = Long.MAX_VALUE;
+
+    private volatile boolean isCancelled = false;
+    private String exhaustedReason = null;
+
+    private long startTime;
+    private long conflictCount, propagationCount;
+
+    public Budget withTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+        return this;
+    }
+
+    public Budget withConflictLimit(long conflictLimit) {
+        this.conflictLimit = conflictLimit;
+        return this;
+    }
+
+    public Budget withPropagationLimit(long propagationLimit) {
+        this.propagationLimit = propagationLimit;
+        return this;
+    }
+
+    /**
+     * Limits the used heap of the whole JVM, since the memory of a single solve cannot be measured.
+     */
+    public Budget withMemoryLimit(long memoryLimitBytes) {
+        this.memoryLimitBytes = memoryLimitBytes;
+        return this;
+    }
+
+    /**
+     * Resets the counters and the clock. A cancelled budget stays cancelled.
+     */
+    public void start() {
+        startTime = System.currentTimeMillis();
+        conflictCount = propagationCount = 0;
+        exhaustedReason = null;
+    }
+
+    /**
+     * Asks the solver to stop at the next check. Can be called from any thread.
+     */
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return isCancelled;
+    }
+
+    //region Counters
+
+    public void addConflict() {
+        conflictCount++;
+    }
+
+    public void addPropagations(int count) {
+        propagationCount += count;
+    }
+
+    public long getConflictCount() {
+        return conflictCount;
+    }
+
+    public long getPropagationCount() {
+        return propagationCount;
+    }
+
+    public long getElapsedTimeMillis() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    //endregion
+
+    /**
+     * Checks all limits. Only called by the solving thread.
+     */
+    public boolean isExhausted() {
+        if (exhaustedReason != null) return true;
+
+        if (isCancelled) {
+            exhaustedReason = "cancelled";
+        } else if (Thread.currentThread().isInterrupted()) {
+            exhaustedReason = "interrupted";
+        } else if (conflictCount >= conflictLimit) {
+            exhaustedReason = "conflict limit";
+        } else if (propagationCount >= propagationLimit) {
+            exhaustedReason = "propagation limit";
+        } else if (timeLimitMillis != Long.MAX_VALUE && getElapsedTimeMillis() >= timeLimitMillis) {
+            exhaustedReason = "time limit";
+        } else if (memoryLimitBytes != Long.MAX_VALUE && getUsedMemory() >= memoryLimitBytes) {
+            exhaustedReason = "memory limit";
+        }
+
+        return exhaustedReason != null;
+    }
+
+    /**
+     * @return the limit that has been reached, or null if the budget is not exhausted.
+     */
+    public String getExhaustedReason() {
+        return exhaustedReason;
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
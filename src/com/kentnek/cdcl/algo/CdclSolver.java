@@ -3,13 +3,24 @@ package com.kentnek.cdcl.algo;
 import com.kentnek.cdcl.Logger;
 import com.kentnek.cdcl.Metrics;
 import com.kentnek.cdcl.algo.analyzer.ConflictAnalyzer;
+import com.kentnek.cdcl.algo.guidingpath.WorkSplitter;
+import com.kentnek.cdcl.algo.inprocessor.Inprocessor;
 import com.kentnek.cdcl.algo.picker.BootstrapPicker;
 import com.kentnek.cdcl.algo.picker.BranchPicker;
 import com.kentnek.cdcl.algo.picker.VariableValue;
 import com.kentnek.cdcl.algo.preprocessor.FormulaPreprocessor;
+import com.kentnek.cdcl.algo.preprocessor.PreprocessorPipeline;
 import com.kentnek.cdcl.algo.propagator.UnitPropagator;
+import com.kentnek.cdcl.algo.restart.LubyRestarts;
+import com.kentnek.cdcl.algo.restart.RestartPolicy;
 import com.kentnek.cdcl.model.*;
 
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import static com.kentnek.cdcl.Metrics.Key.*;
 import static com.kentnek.cdcl.model.Assignment.NIL;
 
@@ -26,12 +37,43 @@ public class CdclSolver implements SatSolver {
     private BranchPicker branchPicker;
     private ConflictAnalyzer conflictAnalyzer;
     private UnitPropagator unitPropagator;
+    private RestartPolicy restartPolicy;
+    private final List<Inprocessor> inprocessors = new ArrayList<>();
+    private WorkSplitter workSplitter;
+    private Budget budget;
+    private Assignment scratchAssignment;
+
+    // Statistics of the current solve
+    private long decisionCount, restartCount;
+
+    // State kept between incremental solves, see load(Formula)
+    private Formula loadedFormula;
+    private Assignment loadedAssignment;
+
+    // Set when the empty clause has been learned, i.e. the formula is unsatisfiable whatever the assumptions
+    private boolean isRefuted;
+
+    // The negated assumptions that made the last incremental solve UNSAT, see analyzeFinal()
+    private Clause finalConflict;
+
+    private static final int[] NO_ASSUMPTIONS = new int[0];
 
     // Enables resolution tracing for refutation proof generation.
     private boolean tracing = false;
 
+    /**
+     * Adds a preprocessor. Several preprocessors are run in the order they were added, see
+     * {@link PreprocessorPipeline}.
+     */
     public CdclSolver with(FormulaPreprocessor preprocessor) {
-        this.formulaPreprocessor = preprocessor;
+        if (this.formulaPreprocessor == null) {
+            this.formulaPreprocessor = preprocessor;
+        } else if (this.formulaPreprocessor instanceof PreprocessorPipeline) {
+            ((PreprocessorPipeline) this.formulaPreprocessor).add(preprocessor);
+        } else {
+            this.formulaPreprocessor = new PreprocessorPipeline(this.formulaPreprocessor, preprocessor);
+        }
+
         return this;
     }
 
@@ -50,6 +92,46 @@ public class CdclSolver implements SatSolver {
         return this;
     }
 
+    public CdclSolver with(RestartPolicy policy) {
+        this.restartPolicy = policy;
+        return this;
+    }
+
+    /**
+     * Adds an inprocessor, which is invoked at every restart. If no {@link RestartPolicy} has been set, the solver
+     * restarts with {@link LubyRestarts}.
+     */
+    public CdclSolver with(Inprocessor inprocessor) {
+        this.inprocessors.add(inprocessor);
+        return this;
+    }
+
+    /**
+     * Lets the solver give away part of its search space, see {@link WorkSplitter}. The search then depends on
+     * unit clauses that are assumed rather than implied, so this cannot be combined with tracing.
+     */
+    public CdclSolver with(WorkSplitter splitter) {
+        this.workSplitter = splitter;
+        return this;
+    }
+
+    /**
+     * Bounds the resources of every solve, see {@link #solveWithBudget(Formula)}.
+     */
+    public CdclSolver with(Budget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * Reuses the given assignment for every solve instead of allocating a new one. The model returned by a solve is
+     * then this very object, so it is only valid until the next solve.
+     */
+    public CdclSolver with(Assignment scratchAssignment) {
+        this.scratchAssignment = scratchAssignment;
+        return this;
+    }
+
     public CdclSolver withTracing(boolean tracing) {
         this.tracing = tracing;
         return this;
@@ -67,58 +149,306 @@ public class CdclSolver implements SatSolver {
         listener.init(formula, assignment);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @throws CancellationException if the budget ran out before the answer was found.
+     */
     @Override
     public Assignment solve(Formula formula) {
         if (formula == null) return null;
+
+        SolveResult result = solveWithBudget(formula);
+        if (result.getStatus() == SolveResult.Status.UNKNOWN) {
+            throw new CancellationException("The solver stopped before finding an answer: " + result.getReason());
+        }
+
+        return result.getAssignment();
+    }
+
+    /**
+     * Solves a formula within the budget, if any.
+     *
+     * @return the status, with the model if SAT, and the statistics gathered so far.
+     */
+    public SolveResult solveWithBudget(Formula formula) {
+        prepare();
+        isRefuted = false;
+
+        Assignment assignment;
+        if (scratchAssignment != null) {
+            assignment = scratchAssignment;
+            assignment.reset(formula.getVariableCount());
+        } else {
+            assignment = new Assignment(formula.getVariableCount());
+        }
+        preprocessFormula(formula, assignment);
+
+        // A preprocessor may have already refuted the formula
+        if (formula.getBottomClause() != null) return result(SolveResult.Status.UNSAT, null);
+
+        SolveResult result = search(formula, assignment, NO_ASSUMPTIONS);
+
+        // Assigns the variables eliminated by preprocessing
+        if (result.getStatus() == SolveResult.Status.SAT) formula.getReconstructionStack().extend(assignment);
+        return result;
+    }
+
+    //region Incremental solving
+
+    /**
+     * Starts an incremental session on the formula, which is then solved by {@link #solve(int...)} any number of
+     * times. The learned clauses, the state of the picker (e.g. the VSIDS scores) and of the other listeners are kept
+     * from one solve to the next, rather than rebuilt.
+     * <p>
+     * The preprocessor is not run, since eliminated variables could appear in later assumptions or clauses.
+     */
+    public CdclSolver load(Formula formula) {
+        this.loadedFormula = formula;
+        this.loadedAssignment = null;
+        this.isRefuted = formula.getBottomClause() != null;
+        return this;
+    }
+
+    /**
+     * Adds a clause to the loaded formula between two solves. Its variables must be within the variable count of the
+     * formula.
+     */
+    public void addClause(int... literals) {
+        if (loadedFormula == null) throw new IllegalStateException("No formula has been loaded.");
+
+        Clause clause = new Clause(loadedFormula.getVariableCount());
+        for (int literal : literals) clause.add(new Literal(checkLiteral(literal)));
+
+        if (clause.isEmpty()) {
+            if (loadedFormula.getBottomClause() == null) loadedFormula.setBottomClause(clause);
+            isRefuted = true;
+        } else if (loadedAssignment == null) {
+            loadedFormula.add(clause);
+        } else {
+            // The clause is watched under the level-0 assignment, and propagated at the next solve
+            backtrack(loadedAssignment, 0);
+            loadedFormula.learn(clause);
+        }
+    }
+
+    /**
+     * Solves the loaded formula under the given assumptions, within the budget if any. The assumptions are decided
+     * first, each one at its own level below every other decision, so conflict analysis never flips them: an
+     * assumption can only become false by being implied, in which case the formula is unsatisfiable under the
+     * assumptions.
+     *
+     * @return the status, with the model if SAT, and the statistics gathered during this solve. The model is the
+     * assignment of the session, so it is only valid until the next call.
+     */
+    public SolveResult solve(int... assumptions) {
+        if (loadedFormula == null) throw new IllegalStateException("No formula has been loaded.");
+        for (int literal : assumptions) checkLiteral(literal);
+
+        prepare();
+        finalConflict = null;
+
+        if (loadedAssignment == null) {
+            loadedAssignment = new Assignment(loadedFormula.getVariableCount());
+            registerListeners(loadedFormula, loadedAssignment);
+        } else {
+            backtrack(loadedAssignment, 0);
+        }
+
+        if (isRefuted) {
+            finalConflict = loadedFormula.getBottomClause();
+            if (finalConflict == null) finalConflict = new Clause(loadedFormula.getVariableCount());
+            return result(SolveResult.Status.UNSAT, null);
+        }
+
+        return search(loadedFormula, loadedAssignment, assumptions);
+    }
+
+    /**
+     * @return the assumptions of the last {@link #solve(int...)} that are enough to make the formula unsatisfiable,
+     * or an empty array if the formula is unsatisfiable without any.
+     * @throws IllegalStateException if the last solve was not UNSAT.
+     */
+    public int[] getFailedAssumptions() {
+        if (finalConflict == null) throw new IllegalStateException("The last solve was not UNSAT.");
+        return finalConflict.stream().mapToInt(literal -> -literal.toLiteralNum()).distinct().toArray();
+    }
+
+    /**
+     * Finds a clause-level unsatisfiable core: the clauses of the loaded formula (including the ones added by
+     * {@link #addClause(int...)}) that, together with the failed assumptions, are unsatisfiable. Requires tracing.
+     *
+     * @throws IllegalStateException if the last solve was not UNSAT.
+     */
+    public List<Clause> getUnsatCore() {
+        if (finalConflict == null) throw new IllegalStateException("The last solve was not UNSAT.");
+        if (!tracing) throw new IllegalStateException("An unsatisfiable core can only be found with tracing on.");
+
+        return new UnsatProver(loadedFormula).findCore(finalConflict);
+    }
+
+    /**
+     * Shrinks the failed assumptions of the last UNSAT solve: each one is dropped in turn, and the others are solved
+     * again, keeping the smaller failed set if still UNSAT. Every solve is within the budget, and an assumption whose
+     * solve is not UNSAT is kept.
+     *
+     * @return a subset of the failed assumptions that is still unsatisfiable, and minimal unless the budget ran out.
+     */
+    public int[] shrinkFailedAssumptions() {
+        List<Integer> necessary = new ArrayList<>();
+        LinkedList<Integer> remaining = IntStream.of(getFailedAssumptions()).boxed()
+                .collect(Collectors.toCollection(LinkedList::new));
+
+        while (!remaining.isEmpty()) {
+            int assumption = remaining.poll();
+
+            int[] candidate = Stream.concat(necessary.stream(), remaining.stream()).mapToInt(i -> i).toArray();
+            if (solve(candidate).getStatus() == SolveResult.Status.UNSAT) {
+                // the new failed set may be even smaller than the candidate
+                Set<Integer> failed = IntStream.of(getFailedAssumptions()).boxed().collect(Collectors.toSet());
+                necessary.retainAll(failed);
+                remaining.retainAll(failed);
+            } else {
+                necessary.add(assumption);
+            }
+        }
+
+        int[] shrunk = necessary.stream().mapToInt(i -> i).toArray();
+
+        // leaves the failed set and the core of the session consistent with the result
+        solve(shrunk);
+        return shrunk;
+    }
+
+    private int checkLiteral(int literal) {
+        if (literal == 0 || Math.abs(literal) > loadedFormula.getVariableCount()) {
+            throw new IllegalArgumentException("Invalid literal: " + literal);
+        }
+        return literal;
+    }
+
+    //endregion
+
+    /**
+     * Configures the components for a solve, and starts the budget.
+     */
+    private void prepare() {
         if (branchPicker == null || conflictAnalyzer == null || unitPropagator == null) {
             throw new IllegalArgumentException("'branchPicker', 'conflictAnalyzer' and 'unitPropagator' must be not null.");
         }
 
         this.conflictAnalyzer.setTracing(this.tracing);
+        this.inprocessors.forEach(i -> i.setTracing(this.tracing));
+        if (restartPolicy == null && !inprocessors.isEmpty()) restartPolicy = new LubyRestarts();
 
-        Assignment assignment = new Assignment(formula.getVariableCount());
-        preprocessFormula(formula, assignment);
+        if (budget == null) budget = new Budget();
+        budget.start();
+        unitPropagator.setBudget(budget);
+        decisionCount = restartCount = 0;
+    }
 
+    /**
+     * The CDCL loop, from an assignment whose listeners are registered.
+     */
+    private SolveResult search(Formula formula, Assignment assignment, int[] assumptions) {
         // We use do...while loop to unit propagation once at first to detect top-level conflicts,
         // returns null assignment if there is any.
         do {
-            // Loop as long as there's conflict
-            while (timedUnitPropagation(formula, assignment)) {
+            // Loop as long as there's conflict (an inprocessor may have already found one)
+            while (assignment.getKappaAntecedent() != NIL || timedUnitPropagation(formula, assignment)) {
+                if (restartPolicy != null) restartPolicy.onConflict();
+                budget.addConflict();
+
                 Clause learnedClause = timedConflictAnalysis(formula, assignment);
 
                 int newDecisionLevel = determineDecisionLevel(assignment, learnedClause);
 
+                // If the learned clause is the kappa clause itself, we don't need to learn it
+                boolean isKappaClause = learnedClause.equals(formula.getClause(assignment.getKappaAntecedent()));
+
                 // unsatisfiable, return the assignment with non-null kappa
                 if (newDecisionLevel < 0) {
+                    isRefuted = true;
+                    finalConflict = learnedClause;
                     if (tracing) formula.setBottomClause(learnedClause);
-                    return null;
+                    return result(SolveResult.Status.UNSAT, null);
                 }
 
                 backtrack(assignment, newDecisionLevel);
 
-                // If the learned clause has trace of size 1, it must be the previous kappa clause,
-                // so we don't need to learn it
-                if (learnedClause.getTrace().size() > 1) formula.learn(learnedClause);
+                if (!isKappaClause) formula.learn(learnedClause);
                 Logger.debug("");
+
+                if (budget.isExhausted()) return result(SolveResult.Status.UNKNOWN, null);
+            }
+
+            // Checked before anything else, since an exhausted budget may have cut the propagation short. This is also
+            // where the solver is cancelled, e.g. by a parallel solver that already has an answer.
+            if (budget.isExhausted()) return result(SolveResult.Status.UNKNOWN, null);
+
+            // The assumptions are placed before any other decision, and must all hold in the model
+            int assumption = nextAssumption(assignment, assumptions);
+            if (assumption != 0) {
+                if (assignment.getLiteralValue(assumption) == Logic.FALSE) {
+                    finalConflict = conflictAnalyzer.analyzeFinal(formula, assignment, assumption);
+                    return result(SolveResult.Status.UNSAT, null);
+                }
+
+                assignment.decide(assumption);
+                continue;
             }
 
             // If the assignment is complete, exit
-            if (assignment.isComplete()) break;
+            if (formula.isComplete(assignment)) break;
+
+            if (restartPolicy != null && restartPolicy.shouldRestart()) {
+                restart(formula, assignment);
+                continue;
+            }
+
+            if (workSplitter != null && assumptions.length == 0
+                    && assignment.getCurrentDecisionLevel() > 0 && workSplitter.shouldSplit()) {
+                splitSearch(formula, assignment);
+                continue;
+            }
 
             // When there's no more conflict, chooses a branch
             VariableValue branchVar = timedBranchPicker(assignment);
-            assignment.incrementDecisionLevel();
-            assignment.add(branchVar.variable, branchVar.value, NIL);
+            assignment.decide(branchVar.toLiteralNum());
+            decisionCount++;
 
         } while (true);
 
-        return assignment;
+        return result(SolveResult.Status.SAT, assignment);
+    }
+
+    /**
+     * @return the first assumption that is not true yet, or 0 if they all are.
+     */
+    private static int nextAssumption(Assignment assignment, int[] assumptions) {
+        for (int literal : assumptions) {
+            if (assignment.getLiteralValue(literal) != Logic.TRUE) return literal;
+        }
+        return 0;
+    }
+
+    private SolveResult result(SolveResult.Status status, Assignment assignment) {
+        return new SolveResult(
+                status, assignment, budget.getExhaustedReason(),
+                budget.getConflictCount(), decisionCount, budget.getPropagationCount(), restartCount,
+                budget.getElapsedTimeMillis()
+        );
     }
 
     private void preprocessFormula(Formula formula, Assignment assignment) {
-        if (this.formulaPreprocessor != null) {
+        boolean canPreprocess = this.formulaPreprocessor != null
+                && (!formula.hasConstraints() || this.formulaPreprocessor.supportsConstraints());
+
+        if (canPreprocess) {
             int originalCount = formula.getClauseSize();
+            Metrics.startTimer(PREPROCESSING);
             this.formulaPreprocessor.preprocess(formula, assignment);
+            Metrics.stopTimer(PREPROCESSING);
             if (formula.getClauseSize() < originalCount) {
                 Logger.debug("Formula after preprocessing:", formula);
                 Logger.debug("Assignment after preprocessing:", assignment, "\n");
@@ -126,8 +456,45 @@ public class CdclSolver implements SatSolver {
 
         }
 
+        registerListeners(formula, assignment);
+    }
+
+    private void registerListeners(Formula formula, Assignment assignment) {
         registerListener(formula, assignment, branchPicker);
         registerListener(formula, assignment, unitPropagator);
+        inprocessors.forEach(i -> registerListener(formula, assignment, i));
+    }
+
+    /**
+     * Hands over the branch of the negated level-1 decision, then commits to this decision by learning it as a unit.
+     */
+    private void splitSearch(Formula formula, Assignment assignment) {
+        int decision = assignment.getDecisionLiteral(1);
+        if (decision == 0) return;
+
+        workSplitter.split(decision);
+        backtrack(assignment, 0);
+
+        Clause unit = new Clause(formula.getVariableCount());
+        unit.add(new Literal(decision));
+        formula.learn(unit);
+    }
+
+    /**
+     * Backtracks to level 0, keeping the learned clauses, and runs the inprocessors.
+     */
+    private void restart(Formula formula, Assignment assignment) {
+        backtrack(assignment, 0);
+        restartPolicy.onRestart();
+        restartCount++;
+        Metrics.incrementCounter(RESTART);
+
+        Metrics.startTimer(INPROCESSING);
+        for (Inprocessor inprocessor : inprocessors) {
+            // a conflict at level 0 is left for the main loop to analyze
+            if (inprocessor.inprocess(formula, assignment, unitPropagator)) break;
+        }
+        Metrics.stopTimer(INPROCESSING);
     }
 
     private boolean timedUnitPropagation(Formula formula, Assignment assignment) {
@@ -197,12 +564,7 @@ public class CdclSolver implements SatSolver {
      */
     private void backtrack(Assignment assignment, int newDecisionLevel) {
         // Removes all existing assignments whose decision level is later than our backtrack point.
-        for (Assignment.SingleAssignment single : assignment) {
-            if (single.decisionLevel > newDecisionLevel) assignment.remove(single.variable);
-        }
-
-        assignment.setCurrentDecisionLevel(newDecisionLevel);
-        assignment.setKappaAntecedent(NIL);
+        assignment.undoToLevel(newDecisionLevel);
 
         Logger.debug("Backtrack level = " + newDecisionLevel);
         Logger.debug("Assignment after backtrack: " + assignment);
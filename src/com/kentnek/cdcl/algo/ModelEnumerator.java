@@ -0,0 +1,297 @@
+package com.kentnek.cdcl.algo;
+
+import com.kentnek.cdcl.FormulaHelper;
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.VsidsPicker;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Literal;
+import com.kentnek.cdcl.model.Logic;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.kentnek.cdcl.model.Assignment.NIL;
+
+/**
+ * Enumerates the models of a formula, one solve per model, on a single incremental {@link CdclSolver} session: the
+ * learned clauses and the picker state are kept from one model to the next, and each model is excluded by adding a
+ * blocking clause, see {@link Blocking}.
+ * <p>
+ * Models are only searched for when requested, so a slow consumer never lets unread models pile up, and a limit stops
+ * the enumeration early. Each solve is within the budget of the solver, if any; once it runs out, the enumeration
+ * ends without being complete.
+ * <p>
+ * Usage: ModelEnumerator file [--limit n] [--project v1,v2,...] [--blocking model|minimized|decisions]
+ *
+ * @author kentnek
+ */
+
+public class ModelEnumerator implements Iterator<Assignment> {
+
+    public enum Blocking {
+        /**
+         * Blocks the projected model: every projected model is returned exactly once.
+         */
+        MODEL,
+
+        /**
+         * Drops from the projected model the literals whose variable can take both values, since every clause is
+         * satisfied by the other literals, then blocks the rest. The returned models are then partial: each one stands
+         * for all the assignments of its missing projected variables, and these sets are disjoint.
+         */
+        MINIMIZED,
+
+        /**
+         * Blocks the decisions that led to the model. Every total model is returned exactly once, with blocking
+         * clauses as short as the number of decisions. Cannot be combined with a projection.
+         */
+        DECISIONS
+    }
+
+    private final CdclSolver solver;
+    private final Formula formula;
+
+    private int[] projection;
+    private Blocking blocking = Blocking.MINIMIZED;
+    private long limit = Long.MAX_VALUE;
+
+    // The clauses a minimized model must satisfy: the original ones, and the blocking clauses added so far
+    private List<Clause> clauses;
+
+    private Assignment nextModel;
+    private long modelCount = 0;
+    private boolean isDone = false, isComplete = false;
+
+    public ModelEnumerator(Formula formula) {
+        this(new CdclSolver()
+                .with(new VsidsPicker(0))
+                .with(new TwoWatchedLiteralPropagator())
+                .with(new ClauseLearningWithUip()), formula);
+    }
+
+    /**
+     * @param solver the configured solver, which starts a session on the formula, see {@link CdclSolver#load(Formula)}.
+     */
+    public ModelEnumerator(CdclSolver solver, Formula formula) {
+        this.solver = solver;
+        this.formula = formula;
+        this.projection = IntStream.rangeClosed(1, formula.getVariableCount()).toArray();
+    }
+
+    /**
+     * Only enumerates the distinct values of the given variables.
+     */
+    public ModelEnumerator withProjection(int... variables) {
+        for (int variable : variables) {
+            if (variable <= 0 || variable > formula.getVariableCount()) {
+                throw new IllegalArgumentException("Invalid variable: " + variable);
+            }
+        }
+
+        this.projection = variables.clone();
+        return this;
+    }
+
+    public ModelEnumerator with(Blocking blocking) {
+        this.blocking = blocking;
+        return this;
+    }
+
+    public ModelEnumerator withLimit(long limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public long getModelCount() {
+        return modelCount;
+    }
+
+    /**
+     * @return true if the enumeration has ended because there's no model left, rather than by the limit or the budget.
+     */
+    public boolean isComplete() {
+        return isComplete;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextModel != null) return true;
+        if (isDone || modelCount >= limit) return false;
+
+        if (clauses == null) {
+            if (blocking == Blocking.DECISIONS && projection.length != formula.getVariableCount()) {
+                throw new IllegalStateException("Decision-based blocking cannot be combined with a projection.");
+            }
+
+            // the minimization only checks the clauses
+            if (blocking == Blocking.MINIMIZED && formula.hasConstraints()) {
+                throw new IllegalStateException("Minimized blocking cannot be used with cardinality constraints.");
+            }
+
+            clauses = new ArrayList<>();
+            formula.forEach(clauses::add);
+            solver.load(formula);
+        }
+
+        SolveResult result = solver.solve();
+        if (result.getStatus() != SolveResult.Status.SAT) {
+            isDone = true;
+            isComplete = result.getStatus() == SolveResult.Status.UNSAT;
+            return false;
+        }
+
+        // The model is only valid until the blocking clause is added, so it is copied first
+        Assignment model = result.getAssignment();
+        int[] blocked = findBlockedLiterals(model);
+        nextModel = copy(model, blocking == Blocking.DECISIONS ? null : blocked);
+
+        int[] blockingClause = IntStream.of(blocked).map(literal -> -literal).toArray();
+        solver.addClause(blockingClause);
+        if (blocking == Blocking.MINIMIZED) clauses.add(toClause(blockingClause));
+
+        modelCount++;
+        return true;
+    }
+
+    @Override
+    public Assignment next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        Assignment model = nextModel;
+        nextModel = null;
+        return model;
+    }
+
+    /**
+     * @return the models as a lazy stream, which searches for a model only when the previous one has been consumed.
+     */
+    public Stream<Assignment> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false
+        );
+    }
+
+    //region Blocking
+
+    /**
+     * @return the literals of the model that the blocking clause negates.
+     */
+    private int[] findBlockedLiterals(Assignment model) {
+        switch (blocking) {
+            case DECISIONS:
+                return IntStream.rangeClosed(1, model.getCurrentDecisionLevel())
+                        .map(model::getDecisionLiteral)
+                        .filter(literal -> literal != 0)
+                        .toArray();
+            case MINIMIZED:
+                return minimize(model);
+            default:
+                return IntStream.of(projection)
+                        .filter(model::contains)
+                        .map(v -> model.getLiteralValue(v) == Logic.TRUE ? v : -v)
+                        .toArray();
+        }
+    }
+
+    /**
+     * Greedily drops the projected literals that are not the only true literal of a clause, keeping the literals of
+     * the other variables.
+     */
+    private int[] minimize(Assignment model) {
+        // number of true literals of each clause that are still kept
+        int[] trueCounts = new int[clauses.size()];
+        Map<Integer, List<Integer>> occurrences = new HashMap<>();
+
+        for (int i = 0; i < clauses.size(); i++) {
+            for (Literal literal : clauses.get(i)) {
+                if (model.getLiteralValue(literal) != Logic.TRUE) continue;
+
+                trueCounts[i]++;
+                occurrences.computeIfAbsent(literal.toLiteralNum(), k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<Integer> kept = new ArrayList<>();
+        for (int variable : projection) {
+            if (!model.contains(variable)) continue;
+
+            int literal = model.getLiteralValue(variable) == Logic.TRUE ? variable : -variable;
+            List<Integer> clauseIndices = occurrences.getOrDefault(literal, Collections.emptyList());
+
+            if (clauseIndices.stream().allMatch(i -> trueCounts[i] > 1)) {
+                clauseIndices.forEach(i -> trueCounts[i]--);
+            } else {
+                kept.add(literal);
+            }
+        }
+
+        return kept.stream().mapToInt(i -> i).toArray();
+    }
+
+    /**
+     * Copies the model, or only the given literals of it.
+     */
+    private Assignment copy(Assignment model, int[] literals) {
+        Assignment copied = new Assignment(model.getVariableCount());
+
+        if (literals == null) {
+            model.forEach(single -> copied.add(single.variable, single.value, NIL));
+        } else {
+            for (int literal : literals) copied.add(Math.abs(literal), literal > 0, NIL);
+        }
+
+        return copied;
+    }
+
+    private Clause toClause(int[] literals) {
+        Clause clause = new Clause(formula.getVariableCount());
+        for (int literal : literals) clause.add(new Literal(literal));
+        return clause;
+    }
+
+    //endregion
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: ModelEnumerator file [--limit n] [--project v1,v2,...] "
+                    + "[--blocking model|minimized|decisions]");
+            System.exit(1);
+        }
+
+        Formula formula = FormulaHelper.parseFromFile(args[0]);
+        if (formula == null) return;
+
+        ModelEnumerator enumerator = new ModelEnumerator(formula);
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--limit":
+                    enumerator.withLimit(Long.parseLong(args[++i]));
+                    break;
+                case "--project":
+                    enumerator.withProjection(Stream.of(args[++i].split(",")).mapToInt(Integer::parseInt).toArray());
+                    break;
+                case "--blocking":
+                    enumerator.with(Blocking.valueOf(args[++i].toUpperCase()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Logger.setShowLog(false);
+        enumerator.forEachRemaining(model -> System.out.println(
+                "v " + (model.getAssignedCount() > 0 ? model.toMinisatString() : "") + "0"
+        ));
+
+        System.out.println(String.format(
+                "c %d models%s", enumerator.getModelCount(), enumerator.isComplete() ? "" : " (incomplete)"
+        ));
+    }
+}
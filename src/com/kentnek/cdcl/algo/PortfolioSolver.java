@@ -0,0 +1,177 @@
+package com.kentnek.cdcl.algo;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.HybridVsidsPicker;
+import com.kentnek.cdcl.algo.picker.VsidsPicker;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.algo.restart.GeometricRestarts;
+import com.kentnek.cdcl.algo.restart.LubyRestarts;
+import com.kentnek.cdcl.algo.sharing.ClauseExchange;
+import com.kentnek.cdcl.algo.sharing.ClauseSharing;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Formula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of {@link SatSolver} that runs several differently configured {@link CdclSolver}s in parallel, and
+ * returns the first answer.
+ * <p>
+ * Each worker solves its own {@link Formula#copy()}, so workers share the original clauses but none of the mutable
+ * state (learned clauses, listeners, assignments). When a worker finishes, the {@link Budget}s of the others are
+ * cancelled, which the {@link CdclSolver} checks at every conflict, before every decision and during propagation.
+ * <p>
+ * Workers can share short learned clauses with each other, see {@link ClauseSharing}.
+ * <p>
+ * Since the proof would refer to the winner's copy of the formula, workers are run without tracing, and no refutation
+ * proof can be generated from the result.
+ *
+ * @author kentnek
+ */
+
+public class PortfolioSolver implements SatSolver {
+
+    private final List<Supplier<CdclSolver>> configs = new ArrayList<>();
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    // Clause sharing limits, or 0 if clauses are not shared
+    private int sharedMaxSize = 0, sharedMaxLbd = 0;
+
+    // index of the config that produced the last answer
+    private int winner = -1;
+
+    /**
+     * Adds a worker configuration. A fresh solver is created for every call to {@link #solve(Formula)}, since the
+     * pickers and propagators keep per-formula state.
+     */
+    public PortfolioSolver with(Supplier<CdclSolver> config) {
+        this.configs.add(config);
+        return this;
+    }
+
+    /**
+     * Adds {@code count} default configurations, varying the picker, its seed, the random picking ratio and the
+     * restart policy.
+     */
+    public PortfolioSolver withDefaultConfigs(int count) {
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            final long seed = 1000L + i;
+
+            with(() -> {
+                CdclSolver solver = new CdclSolver()
+                        .with(new TwoWatchedLiteralPropagator())
+                        .with(new ClauseLearningWithUip());
+
+                // every other worker uses the plain VSIDS picker, the rest use increasingly random hybrids
+                if (index % 2 == 0) {
+                    solver.with(new VsidsPicker(seed));
+                } else {
+                    solver.with(new HybridVsidsPicker(0.05f * (index / 2 + 1), seed));
+                }
+
+                switch (index % 3) {
+                    case 1:
+                        solver.with(new LubyRestarts(50 + 50 * (index % 4)));
+                        break;
+                    case 2:
+                        solver.with(new GeometricRestarts(100, 1.5f));
+                        break;
+                    default:
+                        // no restarts
+                }
+
+                return solver;
+            });
+        }
+
+        return this;
+    }
+
+    public PortfolioSolver withThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    /**
+     * Lets the workers exchange learned clauses with at most {@code maxSize} literals and an LBD of at most
+     * {@code maxLbd}. Clauses are imported at restarts, so every worker restarts (by default with {@link LubyRestarts}).
+     */
+    public PortfolioSolver withClauseSharing(int maxSize, int maxLbd) {
+        this.sharedMaxSize = maxSize;
+        this.sharedMaxLbd = maxLbd;
+        return this;
+    }
+
+    public int getWinner() {
+        return winner;
+    }
+
+    @Override
+    public Assignment solve(Formula formula) {
+        if (formula == null) return null;
+        if (configs.isEmpty()) withDefaultConfigs(threadCount);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, configs.size()));
+        CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Result>> futures = new ArrayList<>();
+        List<Budget> budgets = new ArrayList<>();
+        ClauseExchange exchange = sharedMaxSize > 0 ? new ClauseExchange(configs.size()) : null;
+
+        for (int i = 0; i < configs.size(); i++) {
+            final int index = i;
+            final Budget budget = new Budget();
+            final CdclSolver solver = configs.get(i).get().withTracing(false).with(budget);
+            budgets.add(budget);
+            if (exchange != null) solver.with(new ClauseSharing(exchange, i, sharedMaxSize, sharedMaxLbd));
+            final Formula copied = formula.copy();
+
+            futures.add(completionService.submit(() -> new Result(index, solver.solveWithBudget(copied))));
+        }
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Future<Result> future = completionService.take();
+
+                try {
+                    Result result = future.get();
+                    if (result.solveResult.getStatus() == SolveResult.Status.UNKNOWN) continue;
+
+                    winner = result.index;
+                    Logger.log("Portfolio worker", winner, "finished first:", result.solveResult);
+                    return result.solveResult.getAssignment();
+                } catch (ExecutionException e) {
+                    // a failing worker does not decide the answer, as long as another one finishes
+                    Logger.log("Portfolio worker failed:", e.getCause());
+                }
+            }
+
+            throw new IllegalStateException("No portfolio worker has found an answer.");
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The portfolio solver was interrupted.");
+
+        } finally {
+            budgets.forEach(Budget::cancel);
+            futures.forEach(f -> f.cancel(false));
+            executor.shutdown();
+
+            if (exchange != null) Logger.log("Shared clauses exported:", exchange.getExportedCount());
+        }
+    }
+
+    private static class Result {
+        final int index;
+        final SolveResult solveResult;
+
+        Result(int index, SolveResult solveResult) {
+            this.index = index;
+            this.solveResult = solveResult;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.kentnek.cdcl.algo;
+
+import com.kentnek.cdcl.model.Assignment;
+
+/**
+ * The outcome of a solve within a {@link Budget}: SAT with a model, UNSAT, or UNKNOWN if the budget ran out first,
+ * together with the statistics gathered so far.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+public class SolveResult {
+
+    public enum Status {
+        SAT, UNSAT, UNKNOWN
+    }
+
+    private final Status status;
+    private final Assignment assignment;
+    private final String reason;
+
+    public final long conflicts;
+    public final long decisions;
+    public final long propagations;
+    public final long restarts;
+    public final long elapsedTimeMillis;
+
+    SolveResult(Status status, Assignment assignment, String reason,
+                long conflicts, long decisions, long propagations, long restarts, long elapsedTimeMillis) {
+        this.status = status;
+        this.assignment = assignment;
+        this.reason = reason;
+        this.conflicts = conflicts;
+        this.decisions = decisions;
+        this.propagations = propagations;
+        this.restarts = restarts;
+        this.elapsedTimeMillis = elapsedTimeMillis;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the model if the status is SAT, or null otherwise.
+     */
+    public Assignment getAssignment() {
+        return assignment;
+    }
+
+    /**
+     * @return the budget limit that has been reached if the status is UNKNOWN, or null otherwise.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s%s: %d conflicts, %d decisions, %d propagations, %d restarts, %d ms",
+                status, reason != null ? " (" + reason + ")" : "",
+                conflicts, decisions, propagations, restarts, elapsedTimeMillis
+        );
+    }
+}
@@ -0,0 +1,78 @@
+package com.kentnek.cdcl.algo;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.VsidsPicker;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Shrinks a clause-level unsatisfiable core by solving it again on its own: the core of a core is often smaller,
+ * since the solver takes other paths on fewer clauses. This repeats until the core stops shrinking, or for at most a
+ * number of rounds.
+ * <p>
+ * Each round solves a fresh formula made of the core clauses, under the same assumptions, with tracing on, see
+ * {@link CdclSolver#getUnsatCore()}.
+ *
+ * @author kentnek
+ */
+
+public class UnsatCoreShrinker {
+
+    private Supplier<CdclSolver> config = () -> new CdclSolver()
+            .with(new VsidsPicker(0))
+            .with(new TwoWatchedLiteralPropagator())
+            .with(new ClauseLearningWithUip());
+    private int maxRounds = 10;
+
+    /**
+     * Sets the solver configuration of the rounds. A fresh solver is created for every round.
+     */
+    public UnsatCoreShrinker with(Supplier<CdclSolver> config) {
+        this.config = config;
+        return this;
+    }
+
+    public UnsatCoreShrinker withMaxRounds(int maxRounds) {
+        this.maxRounds = maxRounds;
+        return this;
+    }
+
+    /**
+     * @param core        an unsatisfiable core, together with the assumptions.
+     * @param assumptions the assumptions the core has been found under, if any.
+     * @return a subset of the core clauses that is still unsatisfiable under the assumptions.
+     */
+    public List<Clause> shrink(List<Clause> core, int... assumptions) {
+        if (core.isEmpty()) return core;
+        int variableCount = core.get(0).getVariableCount();
+
+        for (int round = 0; round < maxRounds; round++) {
+            // the clauses are copied without their traces, so they are original clauses of the new formula
+            Formula formula = new Formula(variableCount);
+            for (Clause clause : core) {
+                Clause copy = new Clause(variableCount);
+                clause.forEach(copy::add);
+                formula.add(copy);
+            }
+
+            CdclSolver solver = config.get().withTracing(true).load(formula);
+            if (solver.solve(assumptions).getStatus() != SolveResult.Status.UNSAT) break;
+
+            // maps the clauses of the new core back to the given ones, since their ids are their positions
+            List<Clause> shrunk = new ArrayList<>();
+            for (Clause clause : solver.getUnsatCore()) shrunk.add(core.get(clause.getId()));
+
+            Logger.debug(String.format("Core shrinking round %d: %d => %d clauses.", round + 1, core.size(), shrunk.size()));
+            if (shrunk.size() >= core.size()) break;
+            core = shrunk;
+        }
+
+        return core;
+    }
+}
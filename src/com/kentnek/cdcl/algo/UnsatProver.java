@@ -26,7 +26,7 @@ public class UnsatProver {
         assert (bottomClause != null);
 
         Proof proof = new Proof();
-        List<Integer> neededClauses = findClausesForProof();
+        List<Integer> neededClauses = findClausesForProof(bottomClause);
 
         // Since we might have ignore clauses in the formula that are not needed in the proof,
         // we need to remap the ids (counting from 0 onwards)
@@ -57,18 +57,37 @@ public class UnsatProver {
     }
 
     /**
-     * Perform BFS from the bottom clause to find all clauses used in resolution.
+     * Finds the original clauses that a derived clause depends on, e.g. the bottom clause or the final conflict of a
+     * solve under assumptions. Together with the assumptions, they form an unsatisfiable core of the formula. The
+     * clauses must have been learned with tracing on.
+     *
+     * @return the clauses without a trace that the given clause has been derived from, ordered by id.
+     */
+    public List<Clause> findCore(Clause root) {
+        if (root.getTrace() == null) return Collections.singletonList(root);
+
+        List<Clause> core = new ArrayList<>();
+        for (int id : findClausesForProof(root)) {
+            Clause clause = formula.getClause(id);
+            if (clause != root && clause != null && clause.getTrace() == null) core.add(clause);
+        }
+
+        return core;
+    }
+
+    /**
+     * Perform BFS from the root clause to find all clauses used in resolution.
      *
      * @return a sorted list of clause id needed for the proof.
      */
-    private List<Integer> findClausesForProof() {
+    private List<Integer> findClausesForProof(Clause root) {
         Set<Integer> visited = new HashSet<>();
 
-        // The bottom clause is the last one in the proof
-        visited.add(formula.getBottomClause().getId());
+        // The root clause is the last one in the proof
+        visited.add(root.getId());
 
         LinkedList<Integer> queue = new LinkedList<>();
-        queue.addAll(formula.getBottomClause().getTrace());
+        queue.addAll(root.getTrace());
 
         while (!queue.isEmpty()) {
             int current = queue.poll();
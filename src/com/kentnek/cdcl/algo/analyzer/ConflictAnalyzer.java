@@ -3,6 +3,11 @@ package com.kentnek.cdcl.algo.analyzer;
 import com.kentnek.cdcl.model.Assignment;
 import com.kentnek.cdcl.model.Clause;
 import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Literal;
+
+import java.util.*;
+
+import static com.kentnek.cdcl.model.Assignment.NIL;
 
 /**
  * This module analyzes the most recent conflict and learns a new clause from the conflict.
@@ -22,4 +27,48 @@ public interface ConflictAnalyzer {
     Clause analyze(Formula formula, Assignment assignment);
 
     void setTracing(boolean tracing);
+
+    /**
+     * Analyzes the final conflict of a solve under assumptions, i.e. an assumption that has been implied false while
+     * only assumptions were decided. The implication graph is walked back from the failed assumption, resolving on
+     * the antecedents in reverse assignment order, until only decisions are left.
+     * <p>
+     * The trace of the returned clause lists the antecedents used, so the clauses it depends on can be found even
+     * when tracing is off; it is never learned.
+     *
+     * @param failedAssumption an assumption that is false under the assignment.
+     * @return the clause made of the failed assumption and of the assumptions it depends on, all negated.
+     */
+    default Clause analyzeFinal(Formula formula, Assignment assignment, int failedAssumption) {
+        Clause finalClause = new Clause(formula.getVariableCount());
+        finalClause.add(new Literal(-failedAssumption));
+
+        List<Integer> trace = new ArrayList<>();
+        Set<Integer> visited = new HashSet<>();
+        PriorityQueue<Assignment.SingleAssignment> queue = new PriorityQueue<>(
+                (s1, s2) -> Integer.compare(s2.order, s1.order)
+        );
+
+        Assignment.SingleAssignment failed = assignment.getSingle(new Literal(failedAssumption));
+        visited.add(failed.variable);
+        queue.add(failed);
+
+        while (!queue.isEmpty()) {
+            Assignment.SingleAssignment single = queue.poll();
+
+            if (single.antecedent == NIL) {
+                // only assumptions are decided at this point
+                finalClause.add(new Literal(-single.toLiteralNum()));
+                continue;
+            }
+
+            trace.add(single.antecedent);
+            for (Literal literal : formula.getClause(single.antecedent)) {
+                if (visited.add(literal.variable)) queue.add(assignment.getSingle(literal));
+            }
+        }
+
+        finalClause.setTrace(trace);
+        return finalClause;
+    }
 }
@@ -0,0 +1,89 @@
+package com.kentnek.cdcl.algo.analyzer;
+
+import com.kentnek.cdcl.Loggable;
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Literal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static com.kentnek.cdcl.model.Assignment.NIL;
+
+/**
+ * The "all-decision" clause learning scheme: resolution continues until every literal left in the learned clause is a
+ * decision (or was assigned without an antecedent).
+ * <p>
+ * The learned clauses are usually longer than the ones from {@link ClauseLearningWithUip}, but they only mention the
+ * decisions, which is what probing and vivification need.
+ *
+ * @author kentnek
+ */
+
+public class DecisionClauseLearning extends Loggable implements ConflictAnalyzer {
+
+    private boolean tracing = false;
+
+    @Override
+    public DecisionClauseLearning debug() {
+        return (DecisionClauseLearning) super.debug();
+    }
+
+    @Override
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    @Override
+    public Clause analyze(Formula formula, Assignment assignment) {
+        assert (assignment.getKappaAntecedent() != NIL);
+        return explain(formula, assignment, formula.getClause(assignment.getKappaAntecedent()), 0);
+    }
+
+    /**
+     * Resolves the implied literals of a clause away with their antecedents, latest assignment first.
+     *
+     * @param start        a clause whose literals are all assigned, except possibly the kept one.
+     * @param keepVariable a variable that must stay in the result (e.g. an implied literal), or 0 for none.
+     * @return a clause containing only the kept literal and literals without antecedents, or the starting clause
+     * itself if nothing could be resolved.
+     */
+    public Clause explain(Formula formula, Assignment assignment, Clause start, int keepVariable) {
+        Clause explained = new Clause(start.getVariableCount(), new LinkedHashSet<>());
+        start.forEach(explained::add);
+
+        List<Integer> trace = new ArrayList<>();
+        trace.add(start.getId());
+
+        while (true) {
+            Assignment.SingleAssignment latest = null;
+
+            for (Literal literal : explained) {
+                if (literal.variable == keepVariable) continue;
+
+                Assignment.SingleAssignment single = assignment.getSingle(literal);
+                if (single == null || single.antecedent == NIL) continue;
+
+                if (latest == null || single.order > latest.order) latest = single;
+            }
+
+            if (latest == null) break;
+
+            Clause antecedent = formula.getClause(latest.antecedent);
+            explained = explained.resolve(antecedent);
+            trace.add(antecedent.getId());
+
+            if (debug) Logger.debug(String.format(
+                    ">> Resolving with clause %d %s => %s", antecedent.getId(), antecedent, explained
+            ));
+        }
+
+        if (trace.size() == 1) return start;
+
+        if (tracing) explained.setTrace(trace);
+        return explained;
+    }
+}
@@ -0,0 +1,216 @@
+package com.kentnek.cdcl.algo.counting;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * A cache of component model counts, keyed by the variables and the clause indices of the component, and bounded by
+ * an estimate of its memory usage: once over the limit, the least recently used entries are evicted.
+ * <p>
+ * Every entry gets a sequence number when inserted. {@link #invalidateSince(long)} discards all the entries inserted
+ * after a mark, which {@link ModelCounter} needs when the counts of a branch turn out to be unreliable. The invalid
+ * ranges are kept aside and checked on lookup, rather than searching the entries; they are purged once they outnumber
+ * the entries.
+ *
+ * @author kentnek
+ */
+
+public class ComponentCache {
+
+    // Estimated size of an entry besides its key and count: the map node, the key and entry objects, and the headers
+    private static final long ENTRY_OVERHEAD = 160;
+    private static final long RANGE_OVERHEAD = 80;
+
+    private static class Key {
+        final int[] values;
+        final int hash;
+
+        Key(int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && hash == ((Key) obj).hash && Arrays.equals(values, ((Key) obj).values);
+        }
+    }
+
+    private static class Entry {
+        final BigInteger count;
+        final long sequence;
+        final long size;
+
+        Entry(BigInteger count, long sequence, long size) {
+            this.count = count;
+            this.sequence = sequence;
+            this.size = size;
+        }
+    }
+
+    private final long memoryLimit;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+
+    // start -> end (exclusive) of the invalidated sequence numbers
+    private final TreeMap<Long, Long> invalidRanges = new TreeMap<>();
+
+    private long nextSequence = 0;
+    private long memoryUsage = 0, peakMemoryUsage = 0;
+    private long hitCount = 0, missCount = 0, evictionCount = 0, invalidationCount = 0;
+
+    /**
+     * @param memoryLimit the estimated memory usage in bytes above which entries are evicted.
+     */
+    public ComponentCache(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    /**
+     * @return the cached count of the component with the given key, or null if there's none.
+     */
+    public BigInteger get(int[] key) {
+        Key wrapped = new Key(key);
+        Entry entry = entries.get(wrapped);
+
+        if (entry != null && isInvalid(entry.sequence)) {
+            remove(wrapped);
+            entry = null;
+        }
+
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+
+        hitCount++;
+        return entry.count;
+    }
+
+    public void put(int[] key, BigInteger count) {
+        Entry entry = new Entry(count, nextSequence++, ENTRY_OVERHEAD + 4L * key.length + count.bitLength() / 8);
+        Entry previous = entries.put(new Key(key), entry);
+
+        if (previous != null) memoryUsage -= previous.size;
+        memoryUsage += entry.size;
+        peakMemoryUsage = Math.max(peakMemoryUsage, memoryUsage);
+
+        // the most recent entry is always kept
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (memoryUsage > memoryLimit && entries.size() > 1) {
+            memoryUsage -= eldest.next().size;
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * @return a mark to pass to {@link #invalidateSince(long)}.
+     */
+    public long mark() {
+        return nextSequence;
+    }
+
+    /**
+     * Discards every entry inserted since the given mark.
+     */
+    public void invalidateSince(long mark) {
+        if (mark == nextSequence) return;
+        invalidationCount++;
+
+        int rangeCount = invalidRanges.size();
+
+        // the new range covers the later ones, and extends an earlier one that reaches it
+        invalidRanges.tailMap(mark, true).clear();
+        Map.Entry<Long, Long> floor = invalidRanges.floorEntry(mark);
+
+        if (floor != null && floor.getValue() >= mark) {
+            invalidRanges.put(floor.getKey(), nextSequence);
+        } else {
+            invalidRanges.put(mark, nextSequence);
+        }
+
+        // the covered ranges are refunded, so the ranges always account for RANGE_OVERHEAD each
+        memoryUsage += RANGE_OVERHEAD * (invalidRanges.size() - rangeCount);
+
+        if (invalidRanges.size() > Math.max(1024, entries.size())) purge();
+    }
+
+    private boolean isInvalid(long sequence) {
+        Map.Entry<Long, Long> floor = invalidRanges.floorEntry(sequence);
+        return floor != null && sequence < floor.getValue();
+    }
+
+    private void remove(Key key) {
+        memoryUsage -= entries.remove(key).size;
+    }
+
+    /**
+     * Removes the invalid entries, so the ranges can be dropped.
+     */
+    private void purge() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (isInvalid(entry.sequence)) {
+                memoryUsage -= entry.size;
+                iterator.remove();
+            }
+        }
+
+        memoryUsage -= RANGE_OVERHEAD * invalidRanges.size();
+        invalidRanges.clear();
+    }
+
+    //region Statistics
+
+    public int getEntryCount() {
+        return entries.size();
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * @return the estimated memory usage in bytes.
+     */
+    public long getMemoryUsage() {
+        return memoryUsage;
+    }
+
+    public long getPeakMemoryUsage() {
+        return peakMemoryUsage;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%d entries, %.1f MB (peak %.1f MB, limit %.1f MB), %d hits, %d misses, %d evictions, %d invalidations",
+                entries.size(), memoryUsage / 1e6, peakMemoryUsage / 1e6, memoryLimit / 1e6,
+                hitCount, missCount, evictionCount, invalidationCount
+        );
+    }
+
+    //endregion
+}
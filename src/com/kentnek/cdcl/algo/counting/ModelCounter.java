@@ -0,0 +1,406 @@
+package com.kentnek.cdcl.algo.counting;
+
+import com.kentnek.cdcl.FormulaHelper;
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.analyzer.ConflictAnalyzer;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.algo.propagator.UnitPropagator;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Literal;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An exact model counter (#SAT), with dynamic component decomposition and component caching, as in Cachet and
+ * sharpSAT.
+ * <p>
+ * After each decision and its propagation, the clauses that are not yet satisfied are split into components that
+ * share no variable. The count of a formula is the product of the counts of its components, times 2 for every free
+ * variable; the count of a component is the sum of the counts of its two branches on a variable. Counts are cached
+ * by component, see {@link ComponentCache}, so a component met again in another branch is counted only once.
+ * <p>
+ * The propagation and the conflict analysis are the same as {@link com.kentnek.cdcl.algo.CdclSolver}'s: every conflict
+ * ends its branch with a count of 0, and its learned clause prunes the later branches. Since learned clauses are
+ * implied by the whole formula rather than by a component, the count of a component is only reliable if the other
+ * components are satisfiable. So when a component has no model, the entries cached since its siblings started are
+ * discarded.
+ * <p>
+ * Usage: ModelCounter file [--cache-mb n]
+ *
+ * @author kentnek
+ */
+
+public class ModelCounter implements Assignment.Listener {
+
+    // The search recurses twice per decision, so it runs on a thread with a large stack
+    private static final long STACK_SIZE = 1L << 30;
+
+    private UnitPropagator unitPropagator = new TwoWatchedLiteralPropagator();
+    private ConflictAnalyzer conflictAnalyzer = new ClauseLearningWithUip();
+    private long cacheMemoryLimit = Runtime.getRuntime().maxMemory() / 4;
+
+    // A set of disjoint unsatisfied clauses, and their unassigned variables
+    private static class Component {
+        final int[] variables;
+        final int[] clauseIndices;
+        final int branchVariable;
+
+        Component(int[] variables, int[] clauseIndices, int branchVariable) {
+            this.variables = variables;
+            this.clauseIndices = clauseIndices;
+            this.branchVariable = branchVariable;
+        }
+
+        // the variables, then the clause indices as negative numbers, both sorted
+        int[] toKey() {
+            int[] key = new int[variables.length + clauseIndices.length];
+            for (int i = 0; i < variables.length; i++) key[i] = variables[i];
+            for (int i = 0; i < clauseIndices.length; i++) key[variables.length + i] = -clauseIndices[i] - 1;
+            return key;
+        }
+    }
+
+    // State of the current count
+    private Formula formula;
+    private Assignment assignment;
+    private ComponentCache cache;
+    private boolean isRefuted;
+    private long decisionCount, conflictCount;
+
+    // The original clauses, and the clauses of each variable
+    private int[][] clauses;
+    private int[][] occurrences;
+
+    // Value of each variable: 1, -1, or 0 if unassigned
+    private byte[] values;
+
+    // Marks used by the decomposition, and the occurrence count of each variable in unsatisfied clauses
+    private int[] variableMarks, clauseMarks, activeOccurrences;
+    private int currentMark = 0;
+
+    public ModelCounter with(UnitPropagator unitPropagator) {
+        this.unitPropagator = unitPropagator;
+        return this;
+    }
+
+    public ModelCounter with(ConflictAnalyzer conflictAnalyzer) {
+        this.conflictAnalyzer = conflictAnalyzer;
+        return this;
+    }
+
+    /**
+     * Caps the estimated memory usage of the component cache.
+     */
+    public ModelCounter withCacheMemoryLimit(long bytes) {
+        this.cacheMemoryLimit = bytes;
+        return this;
+    }
+
+    /**
+     * Counts the models of a formula, over all of its variables. The formula itself is not modified.
+     */
+    public BigInteger count(Formula original) {
+        if (original.hasConstraints()) {
+            // components are found from the clauses only
+            throw new IllegalArgumentException("Cardinality constraints are not supported.");
+        }
+
+        init(original.copy());
+        if (isRefuted || unitPropagator.propagate(formula, assignment)) return BigInteger.ZERO;
+
+        int[] variables = new int[formula.getVariableCount()];
+        for (int v = 1; v <= variables.length; v++) variables[v - 1] = v;
+
+        BigInteger[] count = new BigInteger[1];
+        RuntimeException[] error = new RuntimeException[1];
+
+        Thread thread = new Thread(null, () -> {
+            try {
+                count[0] = countVariables(variables);
+            } catch (RuntimeException e) {
+                error[0] = e;
+            }
+        }, "model-counter", STACK_SIZE);
+
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting.", e);
+        }
+
+        if (error[0] != null) throw error[0];
+
+        Logger.log(String.format("Model counting: %d decisions, %d conflicts.", decisionCount, conflictCount));
+        Logger.log("Component cache:", cache);
+        return isRefuted ? BigInteger.ZERO : count[0];
+    }
+
+    public ComponentCache getCache() {
+        return cache;
+    }
+
+    public long getDecisionCount() {
+        return decisionCount;
+    }
+
+    public long getConflictCount() {
+        return conflictCount;
+    }
+
+    private void init(Formula formula) {
+        this.formula = formula;
+        int variableCount = formula.getVariableCount();
+
+        assignment = new Assignment(variableCount);
+        cache = new ComponentCache(cacheMemoryLimit);
+        isRefuted = false;
+        decisionCount = conflictCount = 0;
+
+        List<int[]> clauseList = new ArrayList<>();
+        int[] occurrenceCounts = new int[variableCount + 1];
+
+        for (Clause clause : formula) {
+            if (clause.isEmpty()) isRefuted = true;
+
+            int[] literals = clause.stream().mapToInt(Literal::toLiteralNum).toArray();
+            for (int literal : literals) occurrenceCounts[Math.abs(literal)]++;
+            clauseList.add(literals);
+        }
+
+        clauses = clauseList.toArray(new int[0][]);
+        occurrences = new int[variableCount + 1][];
+        for (int v = 1; v <= variableCount; v++) occurrences[v] = new int[occurrenceCounts[v]];
+
+        Arrays.fill(occurrenceCounts, 0);
+        for (int i = 0; i < clauses.length; i++) {
+            for (int literal : clauses[i]) {
+                int variable = Math.abs(literal);
+                occurrences[variable][occurrenceCounts[variable]++] = i;
+            }
+        }
+
+        values = new byte[variableCount + 1];
+        variableMarks = new int[variableCount + 1];
+        activeOccurrences = new int[variableCount + 1];
+        clauseMarks = new int[clauses.length];
+        currentMark = 0;
+
+        // registered before the propagator, so the units it assigns in init() are seen
+        assignment.register(this);
+        formula.register(unitPropagator);
+        assignment.register(unitPropagator);
+        unitPropagator.init(formula, assignment);
+        conflictAnalyzer.setTracing(false);
+    }
+
+    @Override
+    public void add(int variable, boolean value, int antecedent) {
+        values[variable] = (byte) (value ? 1 : -1);
+    }
+
+    @Override
+    public void remove(int variable, boolean value) {
+        values[variable] = 0;
+    }
+
+    //region Search
+
+    /**
+     * @return the number of models over the unassigned ones of the given variables, which must not share an
+     * unsatisfied clause with any other unassigned variable.
+     */
+    private BigInteger countVariables(int[] variables) {
+        long mark = cache.mark();
+        int freeCount = 0;
+
+        List<Component> components = new ArrayList<>();
+        int componentMark = ++currentMark;
+
+        for (int variable : variables) {
+            if (values[variable] != 0 || variableMarks[variable] == componentMark) continue;
+
+            Component component = findComponent(variable, componentMark);
+            if (component == null) freeCount++;
+            else components.add(component);
+        }
+
+        BigInteger product = BigInteger.ONE;
+
+        for (Component component : components) {
+            BigInteger count = countComponent(component);
+
+            if (count.signum() == 0) {
+                // the counts cached for the siblings may rely on this component being satisfiable
+                cache.invalidateSince(mark);
+                return BigInteger.ZERO;
+            }
+
+            product = product.multiply(count);
+        }
+
+        return product.shiftLeft(freeCount);
+    }
+
+    /**
+     * Collects the unsatisfied clauses reachable from a variable, and the unassigned variables they contain.
+     *
+     * @return the component, or null if the variable is free, i.e. in no unsatisfied clause.
+     */
+    private Component findComponent(int start, int mark) {
+        List<Integer> variables = new ArrayList<>();
+        List<Integer> clauseIndices = new ArrayList<>();
+
+        variableMarks[start] = mark;
+        variables.add(start);
+
+        for (int i = 0; i < variables.size(); i++) {
+            int variable = variables.get(i);
+            activeOccurrences[variable] = 0;
+
+            for (int clauseIndex : occurrences[variable]) {
+                if (clauseMarks[clauseIndex] == mark) continue;
+                clauseMarks[clauseIndex] = mark;
+
+                if (isSatisfied(clauses[clauseIndex])) continue;
+                clauseIndices.add(clauseIndex);
+
+                for (int literal : clauses[clauseIndex]) {
+                    int other = Math.abs(literal);
+                    if (values[other] != 0 || variableMarks[other] == mark) continue;
+
+                    variableMarks[other] = mark;
+                    variables.add(other);
+                }
+            }
+        }
+
+        if (clauseIndices.isEmpty()) return null;
+
+        // branches on the variable with the most occurrences in the component
+        int branchVariable = start, maxOccurrences = -1;
+        for (int clauseIndex : clauseIndices) {
+            for (int literal : clauses[clauseIndex]) {
+                int variable = Math.abs(literal);
+                if (values[variable] == 0) activeOccurrences[variable]++;
+            }
+        }
+
+        for (int variable : variables) {
+            if (activeOccurrences[variable] > maxOccurrences) {
+                maxOccurrences = activeOccurrences[variable];
+                branchVariable = variable;
+            }
+        }
+
+        return new Component(
+                variables.stream().mapToInt(i -> i).sorted().toArray(),
+                clauseIndices.stream().mapToInt(i -> i).sorted().toArray(),
+                branchVariable
+        );
+    }
+
+    private boolean isSatisfied(int[] clause) {
+        for (int literal : clause) {
+            if (values[Math.abs(literal)] == (literal > 0 ? 1 : -1)) return true;
+        }
+
+        return false;
+    }
+
+    private BigInteger countComponent(Component component) {
+        int[] key = component.toKey();
+        BigInteger cached = cache.get(key);
+        if (cached != null) return cached;
+
+        int variable = component.branchVariable;
+        int level = assignment.getCurrentDecisionLevel();
+        BigInteger total = BigInteger.ZERO;
+
+        for (int literal : new int[]{variable, -variable}) {
+            BigInteger count;
+
+            if (values[variable] != 0) {
+                // assigned at level 0 by a unit learned in the other branch, so this branch is either forced or empty
+                boolean isForced = values[variable] == (literal > 0 ? 1 : -1);
+                count = isForced ? countVariables(component.variables) : BigInteger.ZERO;
+            } else {
+                assignment.decide(literal);
+                decisionCount++;
+
+                count = propagate(level) ? BigInteger.ZERO : countVariables(component.variables);
+                assignment.undoToLevel(level);
+            }
+
+            if (isRefuted) return BigInteger.ZERO;
+            total = total.add(count);
+        }
+
+        // a count of 0 is never kept, since the caller discards the entries since its siblings started anyway
+        if (total.signum() > 0) cache.put(key, total);
+        return total;
+    }
+
+    /**
+     * Propagates the latest decision. On a conflict, learns a clause and backtracks to the given level.
+     *
+     * @return true if there's a conflict.
+     */
+    private boolean propagate(int level) {
+        if (!unitPropagator.propagate(formula, assignment)) return false;
+        conflictCount++;
+
+        Clause learnedClause = conflictAnalyzer.analyze(formula, assignment);
+        boolean isKappaClause = learnedClause.equals(formula.getClause(assignment.getKappaAntecedent()));
+
+        assignment.undoToLevel(level);
+
+        if (learnedClause.isEmpty()) isRefuted = true;
+        else if (!isKappaClause) formula.learn(learnedClause);
+
+        return true;
+    }
+
+    //endregion
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: ModelCounter file [--cache-mb n]");
+            System.exit(1);
+        }
+
+        ModelCounter counter = new ModelCounter();
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--cache-mb":
+                    counter.withCacheMemoryLimit(Long.parseLong(args[++i]) << 20);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Formula formula = FormulaHelper.parseFromFile(args[0]);
+        if (formula == null) return;
+
+        Logger.setShowLog(false);
+
+        long startTime = System.currentTimeMillis();
+        BigInteger count = counter.count(formula);
+
+        System.out.println(String.format(
+                "c %d decisions, %d conflicts in %d ms",
+                counter.getDecisionCount(), counter.getConflictCount(), System.currentTimeMillis() - startTime
+        ));
+        System.out.println("c cache: " + counter.getCache());
+        System.out.println("s mc " + count);
+    }
+}
@@ -0,0 +1,160 @@
+package com.kentnek.cdcl.algo.cube;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.CdclSolver;
+import com.kentnek.cdcl.algo.SatSolver;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.VsidsPicker;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Literal;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of {@link SatSolver} using cube-and-conquer: a {@link LookaheadCubeGenerator} splits the formula into
+ * cubes, which are then solved in parallel by {@link CdclSolver}s on a work-stealing {@link ForkJoinPool}.
+ * <p>
+ * Each cube is solved on its own {@link Formula#copy()}, with the cube literals added as unit clauses. Unlike the
+ * decisions of a {@link com.kentnek.cdcl.algo.picker.BootstrapPicker}, units cannot be flipped by backtracking, so
+ * a refuted copy really refutes the cube. The formula is satisfiable as soon as one cube is, in which case the pool is
+ * shut down and the other solvers are interrupted; it is unsatisfiable when every cube has been refuted.
+ * <p>
+ * As with the {@link com.kentnek.cdcl.algo.PortfolioSolver}, cubes are solved without tracing.
+ *
+ * @author kentnek
+ */
+
+public class CubeAndConquerSolver implements SatSolver {
+
+    private LookaheadCubeGenerator cubeGenerator = new LookaheadCubeGenerator();
+    private Supplier<CdclSolver> config = () -> new CdclSolver()
+            .with(new VsidsPicker(0))
+            .with(new TwoWatchedLiteralPropagator())
+            .with(new ClauseLearningWithUip());
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    private int cubeCount, refutedCubeCount;
+
+    public CubeAndConquerSolver with(LookaheadCubeGenerator generator) {
+        this.cubeGenerator = generator;
+        return this;
+    }
+
+    /**
+     * Sets the configuration of the solvers of the cubes. A fresh solver is created for every cube.
+     */
+    public CubeAndConquerSolver with(Supplier<CdclSolver> config) {
+        this.config = config;
+        return this;
+    }
+
+    public CubeAndConquerSolver withThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public int getCubeCount() {
+        return cubeCount;
+    }
+
+    public int getRefutedCubeCount() {
+        return refutedCubeCount;
+    }
+
+    @Override
+    public Assignment solve(Formula formula) {
+        if (formula == null) return null;
+
+        List<int[]> cubes = cubeGenerator.generate(formula.copy());
+        cubeCount = cubes.size();
+        if (cubes.isEmpty()) return null;
+
+        AtomicReference<Assignment> model = new AtomicReference<>();
+        AtomicInteger refutedCount = new AtomicInteger(0);
+        ForkJoinPool pool = new ForkJoinPool(threadCount);
+
+        try {
+            pool.invoke(new CubeTask(formula, cubes, 0, cubes.size(), model, refutedCount, pool));
+        } catch (CancellationException e) {
+            // the pool has been shut down because a cube was found satisfiable
+        } finally {
+            pool.shutdownNow();
+        }
+
+        refutedCubeCount = refutedCount.get();
+        Logger.log(String.format("Cube and conquer: %d of %d cubes refuted.", refutedCubeCount, cubeCount));
+
+        if (model.get() == null && refutedCubeCount < cubeCount) {
+            throw new IllegalStateException("Some cubes have been neither solved nor refuted.");
+        }
+
+        return model.get();
+    }
+
+    // Solves a range of cubes, splitting it in halves so idle threads can steal one of them
+    private class CubeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Formula formula;
+        private final List<int[]> cubes;
+        private final int from, to;
+        private final AtomicReference<Assignment> model;
+        private final AtomicInteger refutedCount;
+        private final ForkJoinPool pool;
+
+        CubeTask(Formula formula, List<int[]> cubes, int from, int to,
+                 AtomicReference<Assignment> model, AtomicInteger refutedCount, ForkJoinPool pool) {
+            this.formula = formula;
+            this.cubes = cubes;
+            this.from = from;
+            this.to = to;
+            this.model = model;
+            this.refutedCount = refutedCount;
+            this.pool = pool;
+        }
+
+        @Override
+        protected void compute() {
+            if (model.get() != null) return;
+
+            if (to - from > 1) {
+                int middle = (from + to) / 2;
+                invokeAll(
+                        new CubeTask(formula, cubes, from, middle, model, refutedCount, pool),
+                        new CubeTask(formula, cubes, middle, to, model, refutedCount, pool)
+                );
+                return;
+            }
+
+            Formula copied = formula.copy();
+            for (int literal : cubes.get(from)) {
+                Clause unit = new Clause(formula.getVariableCount());
+                unit.add(new Literal(literal));
+                copied.add(unit);
+            }
+
+            Assignment assignment;
+            try {
+                assignment = config.get().withTracing(false).solve(copied);
+            } catch (CancellationException e) {
+                return;
+            }
+
+            if (assignment == null) {
+                refutedCount.incrementAndGet();
+            } else if (model.compareAndSet(null, assignment)) {
+                // early termination, which interrupts the solvers of the other cubes
+                pool.shutdownNow();
+            }
+        }
+    }
+}
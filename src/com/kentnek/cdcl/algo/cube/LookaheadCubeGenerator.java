@@ -0,0 +1,193 @@
+package com.kentnek.cdcl.algo.cube;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.model.*;
+
+import java.util.*;
+
+/**
+ * Splits a formula into cubes, i.e. partial assignments whose disjunction covers the whole search space (minus the parts
+ * refuted by the lookahead itself).
+ * <p>
+ * The generator builds a binary decision tree. At every node, each candidate variable is looked ahead: both polarities
+ * are assigned and propagated, and the variable is scored by the product of the number of implied assignments on both
+ * sides, so balanced, strongly propagating variables are preferred. If one polarity fails, its negation is implied at
+ * that node; if both fail, the node is refuted and yields no cube.
+ * <p>
+ * The tree is split until the given depth, so there are at most 2^depth cubes. Only the branching decisions end up in a
+ * cube; the implied literals are found again by propagation when the cube is solved.
+ *
+ * @author kentnek
+ * @see <a href="https://doi.org/10.1007/978-3-642-34188-5_8">Heule et al., Cube and Conquer</a>
+ */
+
+public class LookaheadCubeGenerator {
+
+    private static final int DEFAULT_DEPTH = 6;
+    private static final int DEFAULT_MAX_CANDIDATES = 40;
+
+    // Results of the lookahead at a node, besides a literal to branch on
+    private static final int NO_CANDIDATE = 0;
+    private static final int REFUTED = Integer.MIN_VALUE;
+    private static final int FAILED_LITERAL = Integer.MIN_VALUE + 1;
+
+    private final int depth;
+    private final int maxCandidates;
+
+    private Formula formula;
+    private Assignment assignment;
+    private TwoWatchedLiteralPropagator propagator;
+
+    // Variables ordered by number of occurrences, from which the candidates of every node are taken
+    private List<Integer> variableOrder;
+
+    private List<int[]> cubes;
+    private int refutedCount;
+
+    public LookaheadCubeGenerator() {
+        this(DEFAULT_DEPTH, DEFAULT_MAX_CANDIDATES);
+    }
+
+    /**
+     * @param depth         the maximum number of decisions in a cube.
+     * @param maxCandidates the number of variables looked ahead at every node.
+     */
+    public LookaheadCubeGenerator(int depth, int maxCandidates) {
+        this.depth = depth;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * @return the cubes as arrays of literals. An empty list means the formula has been refuted.
+     */
+    public List<int[]> generate(Formula formula) {
+        this.formula = formula;
+        this.assignment = new Assignment(formula.getVariableCount());
+        this.propagator = new TwoWatchedLiteralPropagator();
+        assignment.register(propagator);
+        propagator.init(formula, assignment);
+
+        cubes = new ArrayList<>();
+        refutedCount = 0;
+        variableOrder = orderByOccurrences();
+
+        if (!propagator.propagate(formula, assignment)) split(new ArrayDeque<>());
+
+        Logger.log(String.format(
+                "Lookahead generated %d cubes, %d branches refuted.", cubes.size(), refutedCount
+        ));
+
+        return cubes;
+    }
+
+    private List<Integer> orderByOccurrences() {
+        int[] occurrences = new int[formula.getVariableCount() + 1];
+        for (Clause clause : formula) clause.forEach(l -> occurrences[l.variable]++);
+
+        List<Integer> order = new ArrayList<>();
+        for (int v = 1; v <= formula.getVariableCount(); v++) {
+            if (occurrences[v] > 0 && !formula.isEliminated(v)) order.add(v);
+        }
+
+        order.sort(Comparator.comparingInt((Integer v) -> -occurrences[v]).thenComparingInt(v -> v));
+        return order;
+    }
+
+    /**
+     * Splits the current node, whose decisions are on the given stack. The assignments made at this node are undone by
+     * the caller.
+     */
+    private void split(Deque<Integer> decisions) {
+        int level = assignment.getCurrentDecisionLevel();
+
+        if (decisions.size() >= depth) {
+            cubes.add(decisions.stream().mapToInt(Integer::intValue).toArray());
+            return;
+        }
+
+        // after a failed literal is asserted at this node, the candidates are looked ahead again
+        int branch;
+        do {
+            branch = selectBranch();
+        } while (branch == FAILED_LITERAL);
+
+        if (branch == REFUTED) {
+            refutedCount++;
+            return;
+        }
+
+        if (branch == NO_CANDIDATE) {
+            cubes.add(decisions.stream().mapToInt(Integer::intValue).toArray());
+            return;
+        }
+
+        for (int literal : new int[]{branch, -branch}) {
+            assignment.decide(literal);
+            decisions.addLast(literal);
+
+            if (propagator.propagate(formula, assignment)) {
+                refutedCount++;
+            } else {
+                split(decisions);
+            }
+
+            decisions.removeLast();
+            assignment.undoToLevel(level);
+        }
+    }
+
+    /**
+     * Looks ahead on the unassigned candidates.
+     *
+     * @return the literal to branch on first, or {@link #NO_CANDIDATE}, or {@link #FAILED_LITERAL} if a failed literal
+     * has been found and its negation asserted, or {@link #REFUTED} if the node has no solution.
+     */
+    private int selectBranch() {
+        long bestScore = -1;
+        int bestLiteral = 0;
+        int candidateCount = 0;
+
+        for (int variable : variableOrder) {
+            if (candidateCount >= maxCandidates) break;
+            if (assignment.contains(variable)) continue;
+            candidateCount++;
+
+            int positive = lookahead(variable);
+            int negative = lookahead(-variable);
+
+            if (positive < 0 || negative < 0) {
+                if (positive < 0 && negative < 0) return REFUTED;
+
+                // asserts the literal that did not fail at the current level, then propagates it
+                int implied = positive < 0 ? -variable : variable;
+                assignment.add(Math.abs(implied), implied > 0, Assignment.NIL);
+                return propagator.propagate(formula, assignment) ? REFUTED : FAILED_LITERAL;
+            }
+
+            long score = (long) (positive + 1) * (negative + 1);
+            if (score > bestScore) {
+                bestScore = score;
+                // the side that propagates more is tried first
+                bestLiteral = positive >= negative ? variable : -variable;
+            }
+        }
+
+        return bestLiteral;
+    }
+
+    /**
+     * @return the number of assignments implied by the literal, or -1 if it leads to a conflict.
+     */
+    private int lookahead(int literal) {
+        int level = assignment.getCurrentDecisionLevel();
+        int assignedBefore = assignment.getAssignedCount();
+
+        assignment.decide(literal);
+        boolean hasConflict = propagator.propagate(formula, assignment);
+        int implied = assignment.getAssignedCount() - assignedBefore - 1;
+
+        assignment.undoToLevel(level);
+        return hasConflict ? -1 : implied;
+    }
+}
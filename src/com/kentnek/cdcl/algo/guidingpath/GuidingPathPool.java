@@ -0,0 +1,134 @@
+package com.kentnek.cdcl.algo.guidingpath;
+
+import com.kentnek.cdcl.model.Assignment;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The guiding paths waiting to be solved, shared by all workers of a {@link GuidingPathSolver}.
+ * <p>
+ * It also implements the termination protocol: the search is over when a worker finds a model, when a worker fails, or
+ * when all workers are idle while no path is left, i.e. every path has been refuted. Workers only become idle after
+ * finishing their path, and paths are only handed over by busy workers, so the last case cannot be reached while some
+ * part of the search space is still open.
+ *
+ * @author kentnek
+ */
+
+public class GuidingPathPool {
+
+    private final int workerCount;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private final Deque<int[]> paths = new ArrayDeque<>();
+
+    // Read without the lock by busy workers, to decide whether to split
+    private volatile int idleCount = 0;
+    private volatile int pathCount = 0;
+
+    private boolean isDone = false;
+    private Assignment model = null;
+    private Throwable failure = null;
+
+    public GuidingPathPool(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Adds a path to be solved, and wakes up an idle worker.
+     */
+    public void offer(int[] path) {
+        lock.lock();
+        try {
+            paths.addLast(path);
+            pathCount = paths.size();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a path to solve.
+     *
+     * @return the path, or null if the search is over.
+     */
+    public int[] take() throws InterruptedException {
+        lock.lock();
+        try {
+            idleCount++;
+
+            while (paths.isEmpty() && !isDone) {
+                if (idleCount == workerCount) {
+                    // nobody is left to hand over a path, so every path has been refuted
+                    isDone = true;
+                    changed.signalAll();
+                    break;
+                }
+
+                changed.await();
+            }
+
+            if (isDone) return null;
+
+            idleCount--;
+            int[] path = paths.pollFirst();
+            pathCount = paths.size();
+            return path;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if a worker is waiting for work and no path is available.
+     */
+    public boolean isHungry() {
+        return idleCount > 0 && pathCount == 0;
+    }
+
+    public void finish(Assignment model) {
+        lock.lock();
+        try {
+            if (isDone) return;
+            this.model = model;
+            this.isDone = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void fail(Throwable failure) {
+        lock.lock();
+        try {
+            if (isDone) return;
+            this.failure = failure;
+            this.isDone = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the search is over.
+     *
+     * @return the model, or null if every path has been refuted.
+     */
+    public Assignment awaitResult() throws InterruptedException {
+        lock.lock();
+        try {
+            while (!isDone) changed.await();
+            if (failure != null) throw new IllegalStateException("A guiding path worker has failed.", failure);
+            return model;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
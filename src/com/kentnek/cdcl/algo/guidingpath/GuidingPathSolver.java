@@ -0,0 +1,143 @@
+package com.kentnek.cdcl.algo.guidingpath;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.CdclSolver;
+import com.kentnek.cdcl.algo.SatSolver;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.VsidsPicker;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Literal;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of {@link SatSolver} using divide-and-conquer with dynamic work stealing.
+ * <p>
+ * The search space is described by guiding paths, i.e. lists of literals. Initially, a single worker solves the empty
+ * path while the others are idle. Whenever a worker is idle and no path is waiting, a busy worker splits on the decision
+ * d of its level 1: it hands over its path extended with ¬d through the {@link GuidingPathPool}, and continues with d
+ * added to its own path. So the load is balanced while solving, rather than by cubes fixed in advance.
+ * <p>
+ * Each path is solved on a {@link Formula#copy()} with the path literals added as unit clauses. The formula is
+ * satisfiable as soon as one path is, and unsatisfiable when all paths have been refuted. As with the other parallel
+ * solvers, workers run without tracing.
+ *
+ * @author kentnek
+ */
+
+public class GuidingPathSolver implements SatSolver {
+
+    private Supplier<CdclSolver> config = () -> new CdclSolver()
+            .with(new VsidsPicker(0))
+            .with(new TwoWatchedLiteralPropagator())
+            .with(new ClauseLearningWithUip());
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    private final AtomicInteger splitCount = new AtomicInteger(0);
+    private final AtomicInteger solvedPathCount = new AtomicInteger(0);
+
+    /**
+     * Sets the configuration of the workers. A fresh solver is created for every path.
+     */
+    public GuidingPathSolver with(Supplier<CdclSolver> config) {
+        this.config = config;
+        return this;
+    }
+
+    public GuidingPathSolver withThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public int getSplitCount() {
+        return splitCount.get();
+    }
+
+    public int getSolvedPathCount() {
+        return solvedPathCount.get();
+    }
+
+    @Override
+    public Assignment solve(Formula formula) {
+        if (formula == null) return null;
+        splitCount.set(0);
+        solvedPathCount.set(0);
+
+        GuidingPathPool pool = new GuidingPathPool(threadCount);
+        pool.offer(new int[0]);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        for (int i = 0; i < threadCount; i++) executor.submit(() -> work(formula, pool));
+
+        try {
+            Assignment model = pool.awaitResult();
+            Logger.log(String.format(
+                    "Guiding paths: %d splits, %d paths solved.", splitCount.get(), solvedPathCount.get()
+            ));
+            return model;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The guiding path solver was interrupted.");
+
+        } finally {
+            // interrupts the workers that are still solving
+            executor.shutdownNow();
+        }
+    }
+
+    private void work(Formula formula, GuidingPathPool pool) {
+        try {
+            int[] path;
+            while ((path = pool.take()) != null) {
+                Assignment model = solvePath(formula, path, pool);
+                solvedPathCount.incrementAndGet();
+                if (model != null) pool.finish(model);
+            }
+        } catch (InterruptedException | CancellationException e) {
+            // the search is over
+        } catch (Throwable e) {
+            // the path of this worker is lost, so the formula cannot be declared unsatisfiable anymore
+            pool.fail(e);
+        }
+    }
+
+    private Assignment solvePath(Formula formula, int[] path, GuidingPathPool pool) {
+        Formula copied = formula.copy();
+        for (int literal : path) {
+            Clause unit = new Clause(formula.getVariableCount());
+            unit.add(new Literal(literal));
+            copied.add(unit);
+        }
+
+        CdclSolver solver = config.get().withTracing(false).with(new WorkSplitter() {
+            private int[] ownPath = path;
+
+            @Override
+            public boolean shouldSplit() {
+                return pool.isHungry();
+            }
+
+            @Override
+            public void split(int decisionLiteral) {
+                int[] givenPath = Arrays.copyOf(ownPath, ownPath.length + 1);
+                givenPath[ownPath.length] = -decisionLiteral;
+                pool.offer(givenPath);
+
+                ownPath = Arrays.copyOf(ownPath, ownPath.length + 1);
+                ownPath[ownPath.length - 1] = decisionLiteral;
+                splitCount.incrementAndGet();
+            }
+        });
+
+        return solver.solve(copied);
+    }
+}
@@ -0,0 +1,23 @@
+package com.kentnek.cdcl.algo.guidingpath;
+
+/**
+ * Lets a {@link com.kentnek.cdcl.algo.CdclSolver} give away part of its search space to another solver.
+ * <p>
+ * Before every decision, the solver asks whether it should split. If so, it takes the decision d of level 1, i.e. the
+ * oldest open decision on its trail, hands the branch ¬d over with {@link #split(int)}, and commits itself to d.
+ *
+ * @author kentnek
+ */
+
+public interface WorkSplitter {
+
+    /**
+     * Called before every decision, so it must be cheap.
+     */
+    boolean shouldSplit();
+
+    /**
+     * Hands over the branch where the given decision literal is negated.
+     */
+    void split(int decisionLiteral);
+}
@@ -0,0 +1,27 @@
+package com.kentnek.cdcl.algo.inprocessor;
+
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.GenericListener;
+import com.kentnek.cdcl.algo.propagator.UnitPropagator;
+
+/**
+ * Simplifies the formula during the search. Inprocessors are invoked at restart boundaries, when the assignment is at
+ * decision level 0, and decide themselves whether they are due to run.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+public interface Inprocessor extends GenericListener {
+
+    /**
+     * Performs inprocessing. The assignment must be back at decision level 0 when this returns.
+     *
+     * @param propagator the solver's propagator, which may be used with temporary decisions.
+     * @return true if a conflict has been found at level 0 ({@link Assignment#getKappaAntecedent()} is set).
+     */
+    boolean inprocess(Formula formula, Assignment assignment, UnitPropagator propagator);
+
+    void setTracing(boolean tracing);
+}
@@ -0,0 +1,182 @@
+package com.kentnek.cdcl.algo.inprocessor;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.analyzer.DecisionClauseLearning;
+import com.kentnek.cdcl.algo.propagator.UnitPropagator;
+import com.kentnek.cdcl.model.*;
+
+import java.util.*;
+
+/**
+ * Vivifies learned clauses: for a learned clause (l1 v l2 v ... v ln), the negations ¬l1, ¬l2, ... are assigned one at
+ * a time as temporary decisions and propagated.
+ * <p>
+ * - If this leads to a conflict, the clause can be shortened to the literals that were decided so far.
+ * <p>
+ * - If a later literal li becomes true, the clause can be shortened to the decided literals and li.
+ * <p>
+ * - Literals that are false at level 0 are removed.
+ * <p>
+ * The shortened clause is derived by resolution ({@link DecisionClauseLearning}), so it carries a trace when tracing is
+ * enabled. It is learned, and the original clause is forgotten, which also removes it from the watch lists.
+ * <p>
+ * A round is run at the first restart after every {@link #conflictInterval} conflicts, and vivifies the shortest learned
+ * clauses that have not been vivified yet.
+ *
+ * @author kentnek
+ */
+
+public class LearnedClauseVivification implements Inprocessor, Formula.Listener {
+
+    private final int conflictInterval;
+    private final int clausesPerRound;
+
+    private final DecisionClauseLearning explainer = new DecisionClauseLearning();
+
+    private Set<Integer> learnedClauseIds;
+    private Set<Integer> vivifiedClauseIds;
+    private int conflictCount;
+
+    // set while a round is running, so that the clauses learned by the vivification itself are not candidates
+    private boolean isVivifying = false;
+
+    private int shortenedCount = 0, removedLiteralCount = 0;
+
+    public LearnedClauseVivification() {
+        this(2000, 200);
+    }
+
+    public LearnedClauseVivification(int conflictInterval, int clausesPerRound) {
+        this.conflictInterval = conflictInterval;
+        this.clausesPerRound = clausesPerRound;
+    }
+
+    @Override
+    public void setTracing(boolean tracing) {
+        explainer.setTracing(tracing);
+    }
+
+    @Override
+    public void init(Formula formula, Assignment assignment) {
+        learnedClauseIds = new LinkedHashSet<>();
+        vivifiedClauseIds = new HashSet<>();
+        conflictCount = 0;
+    }
+
+    @Override
+    public void learn(Clause clause) {
+        if (isVivifying) {
+            vivifiedClauseIds.add(clause.getId());
+        } else {
+            conflictCount++;
+        }
+
+        learnedClauseIds.add(clause.getId());
+    }
+
+    @Override
+    public void forget(Clause clause) {
+        learnedClauseIds.remove(clause.getId());
+    }
+
+    @Override
+    public boolean inprocess(Formula formula, Assignment assignment, UnitPropagator propagator) {
+        if (conflictCount < conflictInterval) return false;
+        conflictCount = 0;
+
+        assert (assignment.getCurrentDecisionLevel() == 0);
+        if (propagator.propagate(formula, assignment)) return true;
+
+        // the best candidates are the shortest clauses
+        List<Clause> candidates = new ArrayList<>();
+        for (int id : learnedClauseIds) {
+            Clause clause = formula.getClause(id);
+            if (!vivifiedClauseIds.contains(id) && clause.getLiteralSize() > 2) candidates.add(clause);
+        }
+
+        candidates.sort(Comparator.comparingInt(Clause::getLiteralSize));
+        if (candidates.size() > clausesPerRound) candidates = candidates.subList(0, clausesPerRound);
+
+        isVivifying = true;
+        boolean hasConflict = false;
+
+        for (Clause clause : candidates) {
+            vivifiedClauseIds.add(clause.getId());
+
+            Clause vivified = vivify(formula, assignment, propagator, clause);
+            if (vivified == clause) continue;
+
+            shortenedCount++;
+            removedLiteralCount += clause.getLiteralSize() - vivified.getLiteralSize();
+            Logger.debug("Vivified", clause, "=>", vivified);
+
+            formula.forget(clause);
+
+            // the clause may be subsumed by an existing one, which then needs not be learned again
+            if (vivified.getId() < 0) formula.learn(vivified);
+
+            if (propagator.propagate(formula, assignment)) {
+                hasConflict = true;
+                break;
+            }
+        }
+
+        isVivifying = false;
+
+        Logger.debug(String.format(
+                "Vivification: %d clauses shortened, %d literals removed so far.", shortenedCount, removedLiteralCount
+        ));
+
+        return hasConflict;
+    }
+
+    /**
+     * @return a shorter clause subsuming the given one, or the clause itself if it could not be shortened.
+     */
+    private Clause vivify(Formula formula, Assignment assignment, UnitPropagator propagator, Clause clause) {
+        boolean hasFalseLiteral = false;
+
+        for (Literal literal : clause) {
+            Logic value = assignment.getLiteralValue(literal);
+            if (value == Logic.TRUE) return clause; // satisfied at level 0
+            if (value == Logic.FALSE) hasFalseLiteral = true;
+        }
+
+        Clause vivified = clause;
+        List<Literal> literals = new ArrayList<>();
+        clause.forEach(literals::add);
+
+        for (int i = 0; i < literals.size(); i++) {
+            Literal literal = literals.get(i);
+            Logic value = assignment.getLiteralValue(literal);
+            if (value == Logic.FALSE) continue; // implied false, so it is not needed
+
+            if (value == Logic.TRUE) {
+                // implied true by the decisions, unless the clause itself propagated it
+                Assignment.SingleAssignment single = assignment.getSingle(literal);
+                if (single.antecedent != clause.getId()) {
+                    Clause antecedent = formula.getClause(single.antecedent);
+                    vivified = explainer.explain(formula, assignment, antecedent, literal.variable);
+                }
+                break;
+            }
+
+            // deciding the last literal would only falsify the clause
+            if (i == literals.size() - 1) break;
+
+            assignment.decide(literal.negate().toLiteralNum());
+
+            if (propagator.propagate(formula, assignment)) {
+                vivified = explainer.analyze(formula, assignment);
+                break;
+            }
+        }
+
+        assignment.undoToLevel(0);
+
+        // Without strengthening, only removes the literals that are false at level 0
+        if (vivified == clause && hasFalseLiteral) vivified = explainer.explain(formula, assignment, clause, 0);
+
+        return vivified.getLiteralSize() < clause.getLiteralSize() ? vivified : clause;
+    }
+}
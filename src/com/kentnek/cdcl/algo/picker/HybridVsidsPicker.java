@@ -13,15 +13,23 @@ import com.kentnek.cdcl.model.Formula;
  */
 
 public class HybridVsidsPicker extends RandomPicker implements Formula.Listener {
-    private VsidsPicker vsidsPicker = new VsidsPicker();
+    private final VsidsPicker vsidsPicker;
 
     // Default probability for random choices: 10%.
     private float randomPickingRatio = 0.1f;
 
     public HybridVsidsPicker() {
+        this.vsidsPicker = new VsidsPicker();
     }
 
     public HybridVsidsPicker(float randomPickingRatio) {
+        this();
+        this.randomPickingRatio = randomPickingRatio;
+    }
+
+    public HybridVsidsPicker(float randomPickingRatio, long seed) {
+        super(seed);
+        this.vsidsPicker = new VsidsPicker(seed);
         this.randomPickingRatio = randomPickingRatio;
     }
 
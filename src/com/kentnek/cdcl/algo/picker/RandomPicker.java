@@ -15,7 +15,11 @@ public class RandomPicker extends TrackingUnassignedVariablesPicker {
     protected final Random rand = new Random();
 
     public RandomPicker() {
-        rand.setSeed(System.currentTimeMillis());
+        this(System.currentTimeMillis());
+    }
+
+    public RandomPicker(long seed) {
+        rand.setSeed(seed);
     }
 
     @Override
@@ -24,7 +24,7 @@ public abstract class TrackingUnassignedVariablesPicker implements BranchPicker,
 
         unassignedVariables.clear();
         for (int i = 1; i <= variableCount; i++) {
-            if (!assignment.contains(i)) unassignedVariables.add(i);
+            if (!assignment.contains(i) && !formula.isEliminated(i)) unassignedVariables.add(i);
         }
     }
 
@@ -17,6 +17,10 @@ public class VariableValue {
         this.value = value;
     }
 
+    public int toLiteralNum() {
+        return variable * (value ? 1 : -1);
+    }
+
     @Override
     public String toString() {
         return "x" + String.valueOf(variable) + " -> " + String.valueOf(value);
@@ -39,11 +39,19 @@ public class VsidsPicker extends Loggable implements BranchPicker, Formula.Liste
     private float findNextHighestScoreProb = 0.3f;
 
     public VsidsPicker() {
-        rand.setSeed(System.currentTimeMillis());
+        this(System.currentTimeMillis());
+    }
+
+    public VsidsPicker(long seed) {
+        rand.setSeed(seed);
     }
 
     public VsidsPicker(float findNextHighestScoreProb) {
-        this();
+        this(System.currentTimeMillis(), findNextHighestScoreProb);
+    }
+
+    public VsidsPicker(long seed, float findNextHighestScoreProb) {
+        this(seed);
         this.findNextHighestScoreProb = findNextHighestScoreProb;
     }
 
@@ -51,10 +59,11 @@ public class VsidsPicker extends Loggable implements BranchPicker, Formula.Liste
     public void init(Formula formula, Assignment assignment) {
         learningCount = 0;
 
-        scores = new LinkedHashMap<>();
+        if (scores == null) scores = new LinkedHashMap<>();
+        else scores.clear();
 
         for (int v = 1; v <= formula.getVariableCount(); v++) {
-            if (assignment.contains(v)) continue;
+            if (assignment.contains(v) || formula.isEliminated(v)) continue;
             scores.put(v, 0);
             scores.put(-v, 0);
         }
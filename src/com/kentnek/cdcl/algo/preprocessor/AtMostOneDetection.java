@@ -0,0 +1,148 @@
+package com.kentnek.cdcl.algo.preprocessor;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.model.*;
+
+import java.util.*;
+
+/**
+ * This preprocessor replaces pairwise at-most-one encodings by native {@link AtMostConstraint}s.
+ * <p>
+ * A binary clause (a v b) states that at most one of ¬a and ¬b is true, i.e. it is an edge between ¬a and ¬b. A clique
+ * of n literals in this graph is an at-most-one constraint, encoded by n(n-1)/2 binary clauses. Cliques are grown
+ * greedily from the literals with the most edges, by adding the candidate with the most edges to the other candidates.
+ * Each binary clause is replaced at most once, so the cliques found never overlap on an edge.
+ * <p>
+ * The formula stays equivalent, so no reconstruction is needed. However, the propagations of the constraints are not
+ * part of refutation proofs, so this preprocessor must not be used with tracing on.
+ *
+ * @author kentnek
+ */
+
+public class AtMostOneDetection implements FormulaPreprocessor {
+
+    private static final int DEFAULT_MIN_SIZE = 3;
+
+    private final int minSize;
+
+    // Literal -> literals it cannot be true together with
+    private Map<Integer, Set<Integer>> edges;
+
+    // Edge -> binary clauses encoding it
+    private Map<Long, List<Clause>> edgeClauses;
+
+    public AtMostOneDetection() {
+        this(DEFAULT_MIN_SIZE);
+    }
+
+    /**
+     * @param minSize the minimum number of literals of a replaced clique. A clique of 2 literals is a single clause.
+     */
+    public AtMostOneDetection(int minSize) {
+        this.minSize = Math.max(3, minSize);
+    }
+
+    @Override
+    public boolean supportsConstraints() {
+        return true;
+    }
+
+    @Override
+    public void preprocess(Formula formula, Assignment assignment) {
+        edges = new HashMap<>();
+        edgeClauses = new HashMap<>();
+
+        for (Clause clause : formula) {
+            if (clause.getLiteralSize() != 2) continue;
+
+            int first = -clause.get(0).toLiteralNum(), second = -clause.get(1).toLiteralNum();
+            if (first == -second) continue; // tautology
+
+            edges.computeIfAbsent(first, k -> new HashSet<>()).add(second);
+            edges.computeIfAbsent(second, k -> new HashSet<>()).add(first);
+            edgeClauses.computeIfAbsent(toEdgeKey(first, second), k -> new ArrayList<>()).add(clause);
+        }
+
+        List<Integer> literals = new ArrayList<>(edges.keySet());
+        literals.sort((l1, l2) -> Integer.compare(edges.get(l2).size(), edges.get(l1).size()));
+
+        int constraintCount = 0, removedCount = 0;
+
+        for (int literal : literals) {
+            while (edges.get(literal).size() >= minSize - 1) {
+                List<Integer> clique = growClique(literal);
+                if (clique.size() < minSize) break;
+
+                removedCount += replace(formula, clique);
+                constraintCount++;
+            }
+        }
+
+        if (constraintCount > 0) {
+            Logger.log(String.format(
+                    "Replaced %d binary clauses by %d at-most-one constraints.", removedCount, constraintCount
+            ));
+        }
+
+        edges = null;
+        edgeClauses = null;
+    }
+
+    private List<Integer> growClique(int literal) {
+        List<Integer> clique = new ArrayList<>();
+        clique.add(literal);
+
+        Set<Integer> candidates = new HashSet<>(edges.get(literal));
+
+        while (!candidates.isEmpty()) {
+            int best = 0, bestDegree = -1;
+
+            for (int candidate : candidates) {
+                int degree = 0;
+                for (int other : edges.get(candidate)) {
+                    if (candidates.contains(other)) degree++;
+                }
+
+                if (degree > bestDegree) {
+                    best = candidate;
+                    bestDegree = degree;
+                }
+            }
+
+            clique.add(best);
+            candidates.remove(best);
+            candidates.retainAll(edges.get(best));
+        }
+
+        return clique;
+    }
+
+    /**
+     * Removes the binary clauses between the literals of the clique, and adds the constraint instead.
+     *
+     * @return the number of removed clauses.
+     */
+    private int replace(Formula formula, List<Integer> clique) {
+        int removedCount = 0;
+
+        for (int i = 0; i < clique.size(); i++) {
+            for (int j = i + 1; j < clique.size(); j++) {
+                int first = clique.get(i), second = clique.get(j);
+                edges.get(first).remove(second);
+                edges.get(second).remove(first);
+
+                for (Clause clause : edgeClauses.remove(toEdgeKey(first, second))) {
+                    formula.remove(clause);
+                    removedCount++;
+                }
+            }
+        }
+
+        formula.add(new AtMostConstraint(clique.stream().mapToInt(l -> l).toArray(), 1));
+        return removedCount;
+    }
+
+    private static long toEdgeKey(int first, int second) {
+        return ((long) Math.min(first, second) << 32) | (Math.max(first, second) & 0xFFFFFFFFL);
+    }
+}
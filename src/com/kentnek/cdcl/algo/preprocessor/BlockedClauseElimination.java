@@ -0,0 +1,129 @@
+package com.kentnek.cdcl.algo.preprocessor;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.model.*;
+
+import java.util.*;
+
+/**
+ * This preprocessor removes blocked clauses. A clause C is blocked on one of its literals l if every resolvent of C on
+ * l, i.e. with a clause containing ¬l, is a tautology. Removing a blocked clause preserves satisfiability.
+ * <p>
+ * This generalises {@link PureLiteralElimination}: a clause containing a pure literal has no resolvents on it, so it is
+ * trivially blocked.
+ * <p>
+ * Literals are processed from a priority queue ordered by the number of occurrences of their negation, i.e. the number
+ * of resolvents to check. Removed clauses are pushed on the formula's {@link ReconstructionStack} with the blocking
+ * literal as witness. Since only clauses are removed, refutation proofs remain valid.
+ *
+ * @author kentnek
+ * @see <a href="https://doi.org/10.1007/978-3-642-12002-2_10">Järvisalo et al., Blocked Clause Elimination</a>
+ */
+
+public class BlockedClauseElimination extends BudgetedPreprocessor {
+
+    private static final long DEFAULT_TICK_BUDGET = 1_000_000;
+
+    private Formula formula;
+
+    // Map of literal -> ids of the clauses containing that literal
+    private Map<Integer, Set<Integer>> occurrences;
+
+    public BlockedClauseElimination() {
+        this(DEFAULT_TICK_BUDGET);
+    }
+
+    public BlockedClauseElimination(long tickBudget) {
+        super(tickBudget);
+    }
+
+    @Override
+    public void preprocess(Formula formula, Assignment assignment) {
+        startBudget();
+        this.formula = formula;
+        occurrences = new HashMap<>();
+
+        for (Clause clause : formula) {
+            // clauses with fixed literals are left alone, so the witnesses are always free variables
+            if (clause.stream().anyMatch(l -> assignment.contains(l.variable))) continue;
+            clause.forEach(l -> getOccurrences(l.toLiteralNum()).add(clause.getId()));
+        }
+
+        // Queue of literals to check, fewest resolution candidates first
+        PriorityQueue<Integer> queue = new PriorityQueue<>(
+                Comparator.comparingInt((Integer l) -> getOccurrences(-l).size()).thenComparingInt(l -> l)
+        );
+        Set<Integer> queued = new HashSet<>(occurrences.keySet());
+        queue.addAll(queued);
+
+        ReconstructionStack stack = formula.getReconstructionStack();
+        Set<Integer> touchedVariables = new HashSet<>();
+        int removedCount = 0;
+
+        while (!queue.isEmpty()) {
+            if (isBudgetExhausted()) {
+                Logger.log("Blocked clause elimination budget exhausted.");
+                break;
+            }
+
+            int literal = queue.poll();
+            queued.remove(literal);
+
+            for (int clauseId : new ArrayList<>(getOccurrences(literal))) {
+                Clause clause = formula.getClause(clauseId);
+                if (!isBlocked(clause, literal)) continue;
+
+                Logger.debug("Blocked clause on", literal, ":", clause);
+                formula.remove(clause);
+                stack.push(clause, new Literal(literal));
+                removedCount++;
+
+                for (Literal other : clause) {
+                    int otherNum = other.toLiteralNum();
+                    getOccurrences(otherNum).remove(clauseId);
+                    touchedVariables.add(other.variable);
+
+                    // clauses containing ¬other have lost a resolution candidate, so they might be blocked now
+                    if (queued.add(-otherNum)) queue.add(-otherNum);
+                }
+            }
+        }
+
+        // variables whose clauses have all been removed are left to the reconstruction
+        for (int variable : touchedVariables) {
+            if (getOccurrences(variable).isEmpty() && getOccurrences(-variable).isEmpty()) stack.eliminate(variable);
+        }
+
+        Logger.log(String.format(
+                "Removed %d blocked clauses, %d clauses left.", removedCount, formula.getClauseSize()
+        ));
+    }
+
+    private Set<Integer> getOccurrences(int literal) {
+        return occurrences.computeIfAbsent(literal, k -> new LinkedHashSet<>());
+    }
+
+    /**
+     * Checks whether all resolvents of the clause on the given literal are tautologies, i.e. every clause containing
+     * the negated literal also contains the negation of another literal of the clause.
+     */
+    private boolean isBlocked(Clause clause, int literal) {
+        for (int candidateId : getOccurrences(-literal)) {
+            Clause candidate = formula.getClause(candidateId);
+            ticks += candidate.getLiteralSize();
+            boolean isTautology = false;
+
+            for (Literal other : candidate) {
+                int otherNum = other.toLiteralNum();
+                if (otherNum != -literal && clause.contains(other.negate())) {
+                    isTautology = true;
+                    break;
+                }
+            }
+
+            if (!isTautology) return false;
+        }
+
+        return true;
+    }
+}
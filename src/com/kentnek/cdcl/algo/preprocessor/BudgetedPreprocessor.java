@@ -0,0 +1,41 @@
+package com.kentnek.cdcl.algo.preprocessor;
+
+/**
+ * An abstract {@link FormulaPreprocessor} that stops once it has spent its budget, so simplification never dominates the
+ * running time on formulas where it does not pay off.
+ * <p>
+ * The budget is counted in ticks (a rough measure of the work done, defined by each subclass) and optionally in
+ * wall-clock time.
+ *
+ * @author kentnek
+ */
+
+public abstract class BudgetedPreprocessor implements FormulaPreprocessor {
+
+    private final long tickBudget;
+    protected long ticks;
+
+    private long timeLimitMillis = 0;
+    private long deadline;
+
+    protected BudgetedPreprocessor(long tickBudget) {
+        this.tickBudget = tickBudget;
+    }
+
+    @Override
+    public void setTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * Resets the budget, must be called at the beginning of {@link #preprocess}.
+     */
+    protected void startBudget() {
+        ticks = 0;
+        deadline = timeLimitMillis > 0 ? System.currentTimeMillis() + timeLimitMillis : Long.MAX_VALUE;
+    }
+
+    protected boolean isBudgetExhausted() {
+        return ticks > tickBudget || System.currentTimeMillis() > deadline;
+    }
+}
@@ -0,0 +1,243 @@
+package com.kentnek.cdcl.algo.preprocessor;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.model.*;
+
+import java.util.*;
+
+/**
+ * This preprocessor finds equivalent literals and substitutes each equivalence class by a single representative.
+ * <p>
+ * Binary clauses form an implication graph over literals: (a v b) gives the edges ¬a -> b and ¬b -> a. All literals in
+ * a strongly connected component of this graph are equivalent. If x and ¬x share a component, the formula is
+ * unsatisfiable.
+ * <p>
+ * Substituted variables are eliminated from the formula, and their equivalences are recorded on the formula's
+ * {@link ReconstructionStack} so models can be extended afterwards. Rewritten clauses carry no resolution trace, so this
+ * preprocessor should not be used when a refutation proof is needed.
+ *
+ * @author kentnek
+ * @see <a href="https://doi.org/10.1137/0201010">Tarjan, Depth-first search and linear graph algorithms</a>
+ */
+
+public class EquivalentLiteralSubstitution implements FormulaPreprocessor {
+
+    private int variableCount;
+
+    // Adjacency lists of the implication graph, indexed by literal index
+    private List<List<Integer>> edges;
+
+    // Representative literal of each literal index, or 0 if the literal is not equivalent to any other
+    private int[] representatives;
+
+    @Override
+    public void preprocess(Formula formula, Assignment assignment) {
+        variableCount = formula.getVariableCount();
+        representatives = new int[2 * variableCount];
+
+        buildImplicationGraph(formula, assignment);
+
+        if (!findEquivalences(formula.getReconstructionStack())) {
+            Logger.log("Found a literal equivalent to its negation, the formula is unsatisfiable.");
+            formula.setBottomClause(new Clause(variableCount));
+            return;
+        }
+
+        int substitutedCount = substitute(formula);
+        Logger.log(String.format(
+                "Substituted %d equivalent variables, %d clauses left.",
+                formula.getReconstructionStack().getEliminatedCount(), formula.getClauseSize()
+        ));
+        Logger.debug("Rewritten clauses:", substitutedCount);
+    }
+
+    //region Literal indices
+
+    private int toIndex(int literal) {
+        return 2 * (Math.abs(literal) - 1) + (literal < 0 ? 1 : 0);
+    }
+
+    private int toLiteral(int index) {
+        int variable = index / 2 + 1;
+        return (index % 2 == 0) ? variable : -variable;
+    }
+
+    //endregion
+
+    private void buildImplicationGraph(Formula formula, Assignment assignment) {
+        edges = new ArrayList<>(2 * variableCount);
+        for (int i = 0; i < 2 * variableCount; i++) edges.add(new ArrayList<>());
+
+        for (Clause clause : formula) {
+            if (clause.getLiteralSize() != 2) continue;
+
+            int a = clause.get(0).toLiteralNum();
+            int b = clause.get(1).toLiteralNum();
+
+            // variables fixed by earlier preprocessing are not substituted
+            if (assignment.contains(Math.abs(a)) || assignment.contains(Math.abs(b))) continue;
+
+            edges.get(toIndex(-a)).add(toIndex(b));
+            edges.get(toIndex(-b)).add(toIndex(a));
+        }
+    }
+
+    /**
+     * Runs an iterative version of Tarjan's algorithm, so long equivalence chains cannot overflow the call stack, and
+     * picks a representative for every component.
+     *
+     * @return false if a literal and its negation are in the same component.
+     */
+    private boolean findEquivalences(ReconstructionStack stack) {
+        int nodeCount = 2 * variableCount;
+
+        int[] index = new int[nodeCount];
+        int[] lowLink = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+        Arrays.fill(index, -1);
+
+        Deque<Integer> componentStack = new ArrayDeque<>();
+
+        // The DFS call stack: node and position in its adjacency list
+        int[] callNode = new int[nodeCount];
+        int[] callEdge = new int[nodeCount];
+
+        int nextIndex = 0;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (index[root] != -1 || edges.get(root).isEmpty()) continue;
+
+            int depth = 0;
+            callNode[0] = root;
+            callEdge[0] = 0;
+            index[root] = lowLink[root] = nextIndex++;
+            componentStack.push(root);
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int node = callNode[depth];
+                List<Integer> successors = edges.get(node);
+
+                if (callEdge[depth] < successors.size()) {
+                    int next = successors.get(callEdge[depth]++);
+
+                    if (index[next] == -1) {
+                        // "recursive call" on the successor
+                        depth++;
+                        callNode[depth] = next;
+                        callEdge[depth] = 0;
+                        index[next] = lowLink[next] = nextIndex++;
+                        componentStack.push(next);
+                        onStack[next] = true;
+                    } else if (onStack[next]) {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+
+                    continue;
+                }
+
+                // all successors visited, "return" from this node
+                if (lowLink[node] == index[node]) {
+                    List<Integer> component = new ArrayList<>();
+                    int member;
+
+                    do {
+                        member = componentStack.pop();
+                        onStack[member] = false;
+                        component.add(member);
+                    } while (member != node);
+
+                    if (component.size() > 1 && !substituteComponent(component, stack)) return false;
+                }
+
+                depth--;
+                if (depth >= 0) {
+                    int parent = callNode[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Chooses the literal with the smallest variable as the representative of a component. The mirrored component
+     * (with all literals negated) gets the negated representative, so it is skipped when it is found.
+     *
+     * @return false if the component contains both a literal and its negation.
+     */
+    private boolean substituteComponent(List<Integer> component, ReconstructionStack stack) {
+        Set<Integer> literals = new HashSet<>();
+        int representative = 0;
+
+        for (int member : component) {
+            int literal = toLiteral(member);
+            if (literals.contains(-literal)) return false;
+
+            literals.add(literal);
+            if (representative == 0 || Math.abs(literal) < Math.abs(representative)) representative = literal;
+        }
+
+        if (representatives[toIndex(representative)] != 0) return true; // mirror already processed
+
+        for (int literal : literals) {
+            representatives[toIndex(literal)] = representative;
+            representatives[toIndex(-literal)] = -representative;
+
+            if (literal == representative) continue;
+
+            // literal <-> representative, restored as (literal v ¬rep) and (¬literal v rep)
+            stack.push(makeClause(literal, -representative), new Literal(literal));
+            stack.push(makeClause(-literal, representative), new Literal(-literal));
+            stack.eliminate(Math.abs(literal));
+        }
+
+        return true;
+    }
+
+    private Clause makeClause(int... literals) {
+        Clause clause = new Clause(variableCount);
+        for (int literal : literals) clause.add(new Literal(literal));
+        return clause;
+    }
+
+    /**
+     * Replaces every literal by its representative, and removes the clauses that become tautologies.
+     *
+     * @return the number of clauses that have been rewritten.
+     */
+    private int substitute(Formula formula) {
+        List<Clause> tautologies = new ArrayList<>();
+        Map<Integer, Clause> rewritten = new LinkedHashMap<>();
+
+        for (Clause clause : formula) {
+            List<Literal> replaced = new ArrayList<>();
+
+            for (Literal literal : clause) {
+                if (representatives[toIndex(literal.toLiteralNum())] != 0) replaced.add(literal);
+            }
+
+            if (replaced.isEmpty()) continue;
+
+            // Clauses are never modified in place, since they may be shared with copies of the formula
+            Clause substituted = new Clause(variableCount);
+            boolean isTautology = false;
+
+            for (Literal literal : clause) {
+                int representative = representatives[toIndex(literal.toLiteralNum())];
+                Literal replacement = representative != 0 ? new Literal(representative) : literal;
+
+                if (substituted.contains(replacement.negate())) isTautology = true;
+                substituted.add(replacement);
+            }
+
+            if (isTautology) tautologies.add(clause);
+            else rewritten.put(clause.getId(), substituted);
+        }
+
+        tautologies.forEach(formula::remove);
+        rewritten.forEach((id, substituted) -> formula.replace(formula.getClause(id), substituted));
+        return tautologies.size() + rewritten.size();
+    }
+}
@@ -0,0 +1,255 @@
+package com.kentnek.cdcl.algo.preprocessor;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.analyzer.DecisionClauseLearning;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.model.*;
+
+import java.util.*;
+
+/**
+ * This preprocessor probes the roots of the binary implication graph: each candidate literal is assigned at a temporary
+ * decision level and propagated.
+ * <p>
+ * - If the probe leads to a conflict, the literal has failed and its negation is asserted at level 0.
+ * <p>
+ * - A literal implied through a non-binary clause yields a hyper-binary resolvent (¬probe v implied), which is learned.
+ * <p>
+ * - A literal implied by both polarities of a variable is a necessary assignment, and is asserted at level 0.
+ * <p>
+ * Every derived clause is added to the formula with its resolution trace, so refutation proofs remain valid. Probing
+ * stops once its budget runs out, where ticks count the assignments made and the clauses resolved.
+ *
+ * @author kentnek
+ */
+
+public class FailedLiteralProbing extends BudgetedPreprocessor {
+
+    private static final long DEFAULT_TICK_BUDGET = 200_000;
+
+    private Formula formula;
+    private Assignment probeAssignment;
+    private TwoWatchedLiteralPropagator propagator;
+    private DecisionClauseLearning explainer;
+
+    private int failedCount, hyperBinaryCount, necessaryCount;
+
+    // Binary clauses already in the formula, so running the probing again does not learn the same resolvents
+    private Set<Clause> binaryClauses;
+
+    public FailedLiteralProbing() {
+        this(DEFAULT_TICK_BUDGET);
+    }
+
+    public FailedLiteralProbing(long tickBudget) {
+        super(tickBudget);
+    }
+
+    @Override
+    public void preprocess(Formula formula, Assignment assignment) {
+        this.formula = formula;
+        startBudget();
+        this.failedCount = this.hyperBinaryCount = this.necessaryCount = 0;
+
+        // Probing works on its own assignment and propagator, so the search state is left untouched. Everything it
+        // finds is recorded as clauses in the formula.
+        probeAssignment = new Assignment(formula.getVariableCount());
+        assignment.forEach(single -> probeAssignment.add(single.variable, single.value, single.antecedent, 0));
+
+        propagator = new TwoWatchedLiteralPropagator();
+        probeAssignment.register(propagator);
+        propagator.init(formula, probeAssignment);
+
+        explainer = new DecisionClauseLearning();
+        explainer.setTracing(true);
+
+        if (propagate() && refute()) return;
+
+        for (int literal : findCandidates()) {
+            if (isBudgetExhausted()) {
+                Logger.log("Probing budget exhausted.");
+                break;
+            }
+
+            if (probeAssignment.contains(Math.abs(literal))) continue;
+            if (probeVariable(literal)) return; // refuted
+        }
+
+        Logger.log(String.format(
+                "Probing found %d failed literals, %d necessary assignments and %d hyper-binary resolvents.",
+                failedCount, necessaryCount, hyperBinaryCount
+        ));
+    }
+
+    /**
+     * The roots of the binary implication graph are the literals l such that ¬l occurs in some binary clause (so l has
+     * outgoing edges), but l does not (so it has no incoming edges). If the graph has no roots, e.g. because it
+     * consists of cycles only, every literal with an outgoing edge is a candidate.
+     */
+    private List<Integer> findCandidates() {
+        Set<Integer> inBinary = new LinkedHashSet<>();
+        binaryClauses = new HashSet<>();
+
+        for (Clause clause : formula) {
+            if (clause.getLiteralSize() != 2) continue;
+            clause.forEach(l -> inBinary.add(l.toLiteralNum()));
+            binaryClauses.add(clause);
+        }
+
+        List<Integer> roots = new ArrayList<>();
+        List<Integer> all = new ArrayList<>();
+
+        for (int literal : inBinary) {
+            all.add(-literal);
+            if (!inBinary.contains(-literal)) roots.add(-literal);
+        }
+
+        return roots.isEmpty() ? all : roots;
+    }
+
+    /**
+     * Probes both polarities of a variable, starting with the given literal.
+     *
+     * @return true if the formula has been refuted.
+     */
+    private boolean probeVariable(int literal) {
+        Set<Integer> implied = probe(literal, null);
+        if (implied == null) return assertFailed(literal);
+        if (formula.getBottomClause() != null) return true;
+
+        if (probe(-literal, implied) == null) return assertFailed(-literal);
+        return formula.getBottomClause() != null;
+    }
+
+    /**
+     * Assigns a literal at decision level 1 and propagates it, learning hyper-binary resolvents on the way.
+     *
+     * @param oppositeImplied literals implied by the opposite polarity, to detect necessary assignments, or null.
+     * @return the literals implied by the probe, or null if it led to a conflict. In the latter case, the decision
+     * level is left open so the conflict can be analyzed.
+     */
+    private Set<Integer> probe(int literal, Set<Integer> oppositeImplied) {
+        probeAssignment.decide(literal);
+        if (propagate()) return null;
+
+        Set<Integer> implied = new HashSet<>();
+        List<Clause> resolvents = new ArrayList<>();
+        List<Integer> necessary = new ArrayList<>();
+
+        for (Assignment.SingleAssignment single : probeAssignment) {
+            if (single.decisionLevel == 0 || single.antecedent == Assignment.NIL) continue;
+
+            int impliedLiteral = single.toLiteralNum();
+            implied.add(impliedLiteral);
+
+            if (oppositeImplied != null && oppositeImplied.contains(impliedLiteral)) {
+                necessary.add(impliedLiteral);
+            } else if (formula.getClause(single.antecedent).getLiteralSize() > 2) {
+                Clause resolvent = explain(single);
+                if (resolvent.getLiteralSize() == 2 && binaryClauses.add(resolvent)) resolvents.add(resolvent);
+            }
+        }
+
+        ticks += implied.size();
+
+        // The necessary assignments are implied by this polarity...
+        List<Clause> reasons = new ArrayList<>();
+        necessary.forEach(l -> reasons.add(explain(probeAssignment.getSingle(new Literal(l)))));
+
+        probeAssignment.undoToLevel(0);
+        resolvents.forEach(this::learn);
+        hyperBinaryCount += resolvents.size();
+
+        if (necessary.isEmpty()) return implied;
+
+        // ...and by the opposite one, which has to be probed again to explain them.
+        List<Clause> oppositeReasons = new ArrayList<>();
+        probeAssignment.decide(-literal);
+        propagate();
+        necessary.forEach(l -> oppositeReasons.add(explain(probeAssignment.getSingle(new Literal(l)))));
+        ticks += probeAssignment.getAssignedCount();
+        probeAssignment.undoToLevel(0);
+
+        for (int i = 0; i < necessary.size(); i++) {
+            int necessaryLiteral = necessary.get(i);
+            if (probeAssignment.contains(Math.abs(necessaryLiteral))) continue;
+
+            Clause reason = reasons.get(i);
+            Clause oppositeReason = oppositeReasons.get(i);
+            if (reason.getId() < 0) formula.add(reason);
+            if (oppositeReason.getId() < 0) formula.add(oppositeReason);
+
+            // (¬l v x) and (l v x) resolve to the unit clause (x)
+            Clause unit = new Clause(formula.getVariableCount());
+            unit.add(new Literal(necessaryLiteral));
+            unit.setTrace(Arrays.asList(oppositeReason.getId(), reason.getId()));
+            learn(unit);
+            necessaryCount++;
+
+            if (propagate()) {
+                refute();
+                break;
+            }
+        }
+
+        return implied;
+    }
+
+    /**
+     * The probe of the given literal has failed: learns the clause explaining the conflict, which asserts the negation
+     * of the literal at level 0.
+     *
+     * @return true if the formula has been refuted.
+     */
+    private boolean assertFailed(int literal) {
+        Logger.debug("Failed literal:", literal);
+
+        Clause failed = explainer.analyze(formula, probeAssignment);
+        if (failed.getTrace() != null) ticks += failed.getTrace().size();
+
+        probeAssignment.undoToLevel(0);
+        learn(failed);
+        failedCount++;
+
+        return propagate() && refute();
+    }
+
+    /**
+     * Derives the empty clause from a conflict at level 0, and sets it as the bottom clause of the formula.
+     *
+     * @return always true.
+     */
+    private boolean refute() {
+        ClauseLearningWithUip analyzer = new ClauseLearningWithUip();
+        analyzer.setTracing(true);
+
+        Clause bottom = analyzer.analyze(formula, probeAssignment);
+        if (!bottom.isEmpty() || bottom.getTrace().size() < 2) {
+            // cannot happen with a conflict at level 0, but never set a bogus bottom clause
+            Logger.log("Probing found a conflict at level 0 but failed to derive the empty clause.");
+            return false;
+        }
+
+        Logger.log("Probing refuted the formula.");
+        formula.setBottomClause(bottom);
+        return true;
+    }
+
+    // Explains an implied assignment by a clause containing only the implied literal and the decision
+    private Clause explain(Assignment.SingleAssignment implied) {
+        Clause antecedent = formula.getClause(implied.antecedent);
+        Clause ret = explainer.explain(formula, probeAssignment, antecedent, implied.variable);
+        if (ret.getTrace() != null) ticks += ret.getTrace().size();
+        return ret;
+    }
+
+    private void learn(Clause clause) {
+        if (clause.getId() < 0) formula.add(clause);
+        propagator.learn(clause);
+    }
+
+    private boolean propagate() {
+        return propagator.propagate(formula, probeAssignment);
+    }
+}
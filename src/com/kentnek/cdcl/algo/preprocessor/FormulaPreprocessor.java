@@ -6,10 +6,29 @@ import com.kentnek.cdcl.model.Formula;
 /**
  * Performs initial processing on the formula.
  * <p>
+ * Preprocessors only simplify the formula. Removed clauses and eliminated variables are recorded on the formula's
+ * {@link com.kentnek.cdcl.model.ReconstructionStack}, so the given assignment is only read, never written.
  *
  * @author kentnek
  */
 
 public interface FormulaPreprocessor {
     void preprocess(Formula formula, Assignment assignment);
+
+    /**
+     * Limits the wall-clock time of each {@link #preprocess} call. Preprocessors that are cheap enough may ignore it.
+     *
+     * @param timeLimitMillis the time limit in milliseconds, or 0 for no limit.
+     */
+    default void setTimeLimit(long timeLimitMillis) {
+    }
+
+    /**
+     * @return true if this preprocessor stays sound on a formula with {@link com.kentnek.cdcl.model.AtMostConstraint}s.
+     * Most preprocessors only look at the clauses, so e.g. a literal that is pure in the clauses may still occur in a
+     * constraint; they are skipped on such formulas.
+     */
+    default boolean supportsConstraints() {
+        return false;
+    }
 }
@@ -0,0 +1,164 @@
+package com.kentnek.cdcl.algo.preprocessor;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs an ordered list of preprocessors, round after round, until none of them changes the formula anymore or the
+ * maximum number of rounds is reached.
+ * <p>
+ * All stages share the formula's {@link com.kentnek.cdcl.model.ReconstructionStack}, so the model is extended once
+ * after solving, whichever stages removed clauses. Each stage can be given its own time limit, and the pipeline keeps
+ * per-stage statistics.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+public class PreprocessorPipeline implements FormulaPreprocessor {
+
+    private static final int DEFAULT_MAX_ROUNDS = 3;
+
+    public static class Stats {
+        public final String name;
+        public int runs = 0;
+        public int clausesAdded = 0; // e.g. the binary resolvents learned by probing
+        public int clausesRemoved = 0;
+        public int variablesRemoved = 0;
+        public long elapsedTimeMillis = 0;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s: %d runs, %d clauses added, %d clauses removed, %d variables removed, %d ms",
+                    name, runs, clausesAdded, clausesRemoved, variablesRemoved, elapsedTimeMillis
+            );
+        }
+    }
+
+    private final List<FormulaPreprocessor> stages = new ArrayList<>();
+    private final List<Stats> stats = new ArrayList<>();
+
+    private int maxRounds = DEFAULT_MAX_ROUNDS;
+
+    public PreprocessorPipeline(FormulaPreprocessor... stages) {
+        for (FormulaPreprocessor stage : stages) add(stage);
+    }
+
+    public PreprocessorPipeline add(FormulaPreprocessor stage) {
+        stages.add(stage);
+        stats.add(new Stats(stage.getClass().getSimpleName()));
+        return this;
+    }
+
+    /**
+     * Adds a stage whose every run is limited to the given time.
+     */
+    public PreprocessorPipeline add(FormulaPreprocessor stage, long timeLimitMillis) {
+        stage.setTimeLimit(timeLimitMillis);
+        return add(stage);
+    }
+
+    public PreprocessorPipeline withMaxRounds(int maxRounds) {
+        this.maxRounds = maxRounds;
+        return this;
+    }
+
+    public List<Stats> getStats() {
+        return stats;
+    }
+
+    @Override
+    public void setTimeLimit(long timeLimitMillis) {
+        stages.forEach(s -> s.setTimeLimit(timeLimitMillis));
+    }
+
+    @Override
+    public boolean supportsConstraints() {
+        // checked stage by stage
+        return true;
+    }
+
+    @Override
+    public void preprocess(Formula formula, Assignment assignment) {
+        boolean hasChanged = true;
+
+        for (int round = 1; round <= maxRounds && hasChanged; round++) {
+            hasChanged = false;
+
+            for (int i = 0; i < stages.size(); i++) {
+                if (formula.hasConstraints() && !stages.get(i).supportsConstraints()) continue;
+
+                long signature = computeSignature(formula);
+                int clauseCount = formula.getClauseSize();
+                int lastClauseId = getLastClauseId(formula);
+                int eliminatedCount = formula.getReconstructionStack().getEliminatedCount();
+
+                long startTime = System.currentTimeMillis();
+                stages.get(i).preprocess(formula, assignment);
+
+                Stats stageStats = stats.get(i);
+                stageStats.runs++;
+                stageStats.elapsedTimeMillis += System.currentTimeMillis() - startTime;
+                int addedCount = countClausesAfter(formula, lastClauseId);
+                stageStats.clausesAdded += addedCount;
+                stageStats.clausesRemoved += clauseCount + addedCount - formula.getClauseSize();
+                stageStats.variablesRemoved += formula.getReconstructionStack().getEliminatedCount() - eliminatedCount;
+
+                if (formula.getBottomClause() != null) {
+                    Logger.log("Preprocessing refuted the formula in round", round, "by", stageStats.name);
+                    logStats();
+                    return;
+                }
+
+                if (computeSignature(formula) != signature) hasChanged = true;
+            }
+        }
+
+        logStats();
+    }
+
+    /**
+     * A cheap summary of the formula, which changes whenever a stage removes, adds or shrinks a clause, or eliminates
+     * a variable.
+     */
+    private long computeSignature(Formula formula) {
+        long literalCount = 0;
+        for (Clause clause : formula) literalCount += clause.getLiteralSize();
+
+        return ((long) formula.getClauseSize() << 40)
+                ^ ((long) formula.getReconstructionStack().getEliminatedCount() << 20)
+                ^ literalCount;
+    }
+
+    private static int getLastClauseId(Formula formula) {
+        int lastId = -1;
+        for (Clause clause : formula) lastId = Math.max(lastId, clause.getId());
+        return lastId;
+    }
+
+    /**
+     * Counts the clauses added after the given id, since ids are given in increasing order.
+     */
+    private static int countClausesAfter(Formula formula, int clauseId) {
+        int count = 0;
+        for (Clause clause : formula) {
+            if (clause.getId() > clauseId) count++;
+        }
+        return count;
+    }
+
+    private void logStats() {
+        Logger.log("Preprocessing statistics:");
+        stats.forEach(s -> Logger.log("  " + s));
+    }
+}
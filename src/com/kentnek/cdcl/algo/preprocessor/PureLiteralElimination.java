@@ -5,6 +5,7 @@ import com.kentnek.cdcl.model.Assignment;
 import com.kentnek.cdcl.model.Clause;
 import com.kentnek.cdcl.model.Formula;
 import com.kentnek.cdcl.model.Literal;
+import com.kentnek.cdcl.model.ReconstructionStack;
 
 import java.util.*;
 
@@ -51,14 +52,14 @@ public class PureLiteralElimination implements FormulaPreprocessor {
 
         Set<Literal> pureLiterals = new HashSet<>();
 
-        // assign values to pure literals
+        // find the pure literals, ignoring variables that are already assigned
         for (int v : types.keySet()) {
+            if (assignment.contains(v)) continue;
+
             LiteralType type = types.get(v);
             if (type == LiteralType.POSITIVE) {
-                assignment.add(v, true, Assignment.NIL);
                 pureLiterals.add(new Literal(v));
             } else if (type == LiteralType.NEGATIVE) {
-                assignment.add(v, false, Assignment.NIL);
                 pureLiterals.add(new Literal(-v));
             }
         }
@@ -68,12 +69,21 @@ public class PureLiteralElimination implements FormulaPreprocessor {
 
         if (pureLiterals.size() == 0) return;
 
-        // remove clauses that contain pure literals
+        // remove clauses that contain pure literals, the reconstruction will set the pure literals to true if needed
+        ReconstructionStack stack = formula.getReconstructionStack();
         Iterator<Clause> iterator = formula.iterator();
         while (iterator.hasNext()) {
-            if (pureLiterals.stream().anyMatch(iterator.next()::contains)) iterator.remove();
+            Clause clause = iterator.next();
+            Optional<Literal> pure = pureLiterals.stream().filter(clause::contains).findFirst();
+
+            if (pure.isPresent()) {
+                stack.push(clause, pure.get());
+                iterator.remove();
+            }
         }
 
+        pureLiterals.forEach(l -> stack.eliminate(l.variable));
+
         Logger.log("Preprocessed clause count =", formula.getClauseSize());
     }
 
@@ -0,0 +1,103 @@
+package com.kentnek.cdcl.algo.preprocessor;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.model.*;
+
+import java.util.*;
+
+/**
+ * This preprocessor replaces CNF encodings of XORs by native {@link XorConstraint}s.
+ * <p>
+ * An XOR over k variables is encoded by the 2^(k-1) clauses over these variables whose number of negated literals has
+ * the same parity: each of them forbids one assignment of the wrong parity. Clauses are grouped by their set of
+ * variables, and a group that contains all the clauses of one parity is replaced by its XOR.
+ * <p>
+ * The formula stays equivalent, so no reconstruction is needed. However, the propagations of the XORs are not part of
+ * refutation proofs, so this preprocessor must not be used with tracing on.
+ *
+ * @author kentnek
+ */
+
+public class XorDetection implements FormulaPreprocessor {
+
+    private static final int DEFAULT_MAX_SIZE = 6;
+
+    private final int maxSize;
+
+    public XorDetection() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of variables of a detected XOR, which needs 2^(maxSize-1) clauses.
+     */
+    public XorDetection(int maxSize) {
+        this.maxSize = Math.min(maxSize, 16);
+    }
+
+    @Override
+    public boolean supportsConstraints() {
+        return true;
+    }
+
+    @Override
+    public void preprocess(Formula formula, Assignment assignment) {
+        // sorted variables -> (negation mask -> clauses), where bit i of the mask is set if the i-th variable is negated
+        Map<List<Integer>, Map<Integer, List<Clause>>> groups = new HashMap<>();
+
+        for (Clause clause : formula) {
+            int size = clause.getLiteralSize();
+            if (size < 3 || size > maxSize) continue;
+
+            List<Integer> variables = new ArrayList<>();
+            clause.forEach(literal -> variables.add(literal.variable));
+            Collections.sort(variables);
+
+            // a tautology contains a variable twice
+            if (new HashSet<>(variables).size() != size) continue;
+
+            int mask = 0;
+            for (Literal literal : clause) {
+                if (literal.isNegated) mask |= 1 << variables.indexOf(literal.variable);
+            }
+
+            groups.computeIfAbsent(variables, k -> new HashMap<>())
+                    .computeIfAbsent(mask, k -> new ArrayList<>())
+                    .add(clause);
+        }
+
+        int xorCount = 0, removedCount = 0;
+
+        for (Map.Entry<List<Integer>, Map<Integer, List<Clause>>> group : groups.entrySet()) {
+            List<Integer> variables = group.getKey();
+            Map<Integer, List<Clause>> clausesByMask = group.getValue();
+            int requiredCount = 1 << (variables.size() - 1);
+            if (clausesByMask.size() < requiredCount) continue;
+
+            for (int parity = 0; parity <= 1; parity++) {
+                int count = 0;
+                for (int mask : clausesByMask.keySet()) {
+                    if ((Integer.bitCount(mask) & 1) == parity) count++;
+                }
+                if (count < requiredCount) continue;
+
+                // the forbidden assignments set the negated variables to true, so their parity is the wrong one
+                formula.add(new XorConstraint(variables.stream().mapToInt(v -> v).toArray(), parity == 0));
+                xorCount++;
+
+                for (Map.Entry<Integer, List<Clause>> entry : clausesByMask.entrySet()) {
+                    if ((Integer.bitCount(entry.getKey()) & 1) != parity) continue;
+
+                    for (Clause clause : entry.getValue()) {
+                        formula.remove(clause);
+                        removedCount++;
+                    }
+                }
+            }
+        }
+
+        if (xorCount > 0) {
+            Logger.log(String.format("Replaced %d clauses by %d XOR constraints.", removedCount, xorCount));
+        }
+    }
+}
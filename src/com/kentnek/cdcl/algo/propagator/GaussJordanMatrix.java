@@ -0,0 +1,381 @@
+package com.kentnek.cdcl.algo.propagator;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.model.*;
+
+import java.util.*;
+
+/**
+ * Propagates the {@link XorConstraint}s of a formula together, as a system of linear equations over GF(2).
+ * <p>
+ * Each row is packed into 64-bit words, one bit per variable occurring in an XOR. The matrix is first brought into
+ * reduced row-echelon form, so every row has a pivot column that occurs in no other row. During the search, the pivot
+ * of every row is kept unassigned whenever the row has an unassigned variable: when a pivot is assigned, another
+ * unassigned variable of its row becomes the pivot, and is eliminated from the other rows. Then:
+ * <p>
+ * - a row with a single unassigned variable implies its value,
+ * <p>
+ * - a row with no unassigned variable and the wrong parity is a conflict.
+ * <p>
+ * Rows are only combined, never reset, so backtracking keeps the matrix as it is; the rows that lose an assigned
+ * variable are checked again, since their pivot may be assigned, or they may imply a value again. The reason of an
+ * implication is the row at that time: it is copied, and only turned into a clause if the conflict analysis asks for
+ * it, see {@link Formula#addLazyReason}.
+ *
+ * @author kentnek
+ * @see <a href="https://doi.org/10.1007/978-3-642-31612-8_19">Han and Jiang, Gauss-Jordan Elimination in CDCL</a>
+ */
+
+public class GaussJordanMatrix {
+
+    private final Formula formula;
+    private final Assignment assignment;
+
+    // variable -> column, or -1 if the variable is in no XOR; and column -> variable
+    private final int[] columns;
+    private final int[] variables;
+    private final int wordCount;
+
+    private long[][] rows;
+    private boolean[] rhs;
+    private int[] pivots;
+    private int rowCount;
+
+    // column -> the row it is the pivot of, or -1
+    private int[] pivotRows;
+
+    // Assigned columns and their values, as packed rows
+    private final long[] assignedMask;
+    private final long[] valueMask;
+
+    // Rows to check again, as a queue without duplicates
+    private boolean[] isDirty;
+    private int[] dirtyRows;
+    private int dirtyHead, dirtyTail;
+
+    // Rows changed by the last pivot update
+    private int[] changedRows;
+
+    // variable -> id of the lazy reason of its implication, or NIL
+    private final int[] lazyReasonIds;
+
+    // The id of an empty reason clause if the XORs are inconsistent on their own
+    private int initialConflict = Assignment.NIL;
+
+    GaussJordanMatrix(Formula formula, Assignment assignment) {
+        this.formula = formula;
+        this.assignment = assignment;
+
+        columns = new int[formula.getVariableCount() + 1];
+        Arrays.fill(columns, -1);
+        lazyReasonIds = new int[formula.getVariableCount() + 1];
+        Arrays.fill(lazyReasonIds, Assignment.NIL);
+
+        List<Integer> variableList = new ArrayList<>();
+        for (XorConstraint constraint : formula.getXorConstraints()) {
+            for (int variable : constraint.getVariables()) {
+                if (columns[variable] >= 0) continue;
+                columns[variable] = variableList.size();
+                variableList.add(variable);
+            }
+        }
+
+        variables = variableList.stream().mapToInt(v -> v).toArray();
+        wordCount = (variables.length + 63) / 64;
+        assignedMask = new long[wordCount];
+        valueMask = new long[wordCount];
+
+        for (int column = 0; column < variables.length; column++) {
+            Logic value = assignment.getLiteralValue(variables[column]);
+            if (value != Logic.UNDEFINED) setAssigned(column, value == Logic.TRUE);
+        }
+
+        buildRows(formula.getXorConstraints());
+        eliminate();
+    }
+
+    //region Setup
+
+    private void buildRows(List<XorConstraint> constraints) {
+        rowCount = constraints.size();
+        rows = new long[rowCount][wordCount];
+        rhs = new boolean[rowCount];
+        pivots = new int[rowCount];
+
+        for (int i = 0; i < rowCount; i++) {
+            for (int variable : constraints.get(i).getVariables()) flip(rows[i], columns[variable]);
+            rhs[i] = constraints.get(i).getRhs();
+        }
+    }
+
+    /**
+     * Brings the matrix into reduced row-echelon form, and drops the empty rows.
+     */
+    private void eliminate() {
+        int rank = 0;
+
+        for (int column = 0; column < variables.length && rank < rowCount; column++) {
+            int pivotRow = -1;
+            for (int i = rank; i < rowCount && pivotRow < 0; i++) {
+                if (get(rows[i], column)) pivotRow = i;
+            }
+            if (pivotRow < 0) continue;
+
+            swapRows(rank, pivotRow);
+            for (int i = 0; i < rowCount; i++) {
+                if (i != rank && get(rows[i], column)) addRow(i, rank);
+            }
+
+            pivots[rank++] = column;
+        }
+
+        // the remaining rows are empty: 0 = 1 means the XORs have no solution
+        for (int i = rank; i < rowCount; i++) {
+            if (rhs[i]) {
+                Clause empty = new Clause(formula.getVariableCount());
+                formula.addReason(empty);
+                initialConflict = empty.getId();
+            }
+        }
+
+        Logger.debug(String.format("Gauss-Jordan: %d XORs over %d variables, rank %d.", rowCount, variables.length, rank));
+
+        rowCount = rank;
+        pivotRows = new int[variables.length];
+        Arrays.fill(pivotRows, -1);
+        for (int i = 0; i < rowCount; i++) pivotRows[pivots[i]] = i;
+
+        isDirty = new boolean[rowCount];
+        dirtyRows = new int[rowCount + 1];
+        changedRows = new int[rowCount];
+        for (int i = 0; i < rowCount; i++) markDirty(i);
+    }
+
+    private void swapRows(int first, int second) {
+        long[] row = rows[first];
+        rows[first] = rows[second];
+        rows[second] = row;
+
+        boolean value = rhs[first];
+        rhs[first] = rhs[second];
+        rhs[second] = value;
+    }
+
+    // rows[target] ^= rows[source]
+    private void addRow(int target, int source) {
+        for (int w = 0; w < wordCount; w++) rows[target][w] ^= rows[source][w];
+        rhs[target] ^= rhs[source];
+    }
+
+    int getInitialConflict() {
+        return initialConflict;
+    }
+
+    //endregion
+
+    //region Assignment events
+
+    void onAssigned(int variable, boolean value) {
+        if (columns[variable] >= 0) setAssigned(columns[variable], value);
+    }
+
+    void onUnassigned(int variable) {
+        if (lazyReasonIds[variable] != Assignment.NIL) {
+            formula.removeLazyReason(lazyReasonIds[variable]);
+            lazyReasonIds[variable] = Assignment.NIL;
+        }
+
+        int column = columns[variable];
+        if (column < 0) return;
+
+        assignedMask[column >> 6] &= ~(1L << column);
+        valueMask[column >> 6] &= ~(1L << column);
+
+        for (int i = 0; i < rowCount; i++) {
+            if (get(rows[i], column)) markDirty(i);
+        }
+    }
+
+    private void setAssigned(int column, boolean value) {
+        assignedMask[column >> 6] |= 1L << column;
+        if (value) valueMask[column >> 6] |= 1L << column;
+        else valueMask[column >> 6] &= ~(1L << column);
+    }
+
+    boolean contains(int variable) {
+        return columns[variable] >= 0;
+    }
+
+    //endregion
+
+    //region Propagation
+
+    /**
+     * Checks the rows left dirty by backtracking.
+     *
+     * @return true if there's a conflict.
+     */
+    boolean propagateDirtyRows() {
+        while (dirtyHead != dirtyTail) {
+            int row = dirtyRows[dirtyHead];
+            dirtyHead = (dirtyHead + 1) % dirtyRows.length;
+            isDirty[row] = false;
+
+            if (updatePivot(row) || checkRow(row)) {
+                while (dirtyHead != dirtyTail) {
+                    isDirty[dirtyRows[dirtyHead]] = false;
+                    dirtyHead = (dirtyHead + 1) % dirtyRows.length;
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void markDirty(int row) {
+        if (isDirty[row]) return;
+
+        isDirty[row] = true;
+        dirtyRows[dirtyTail] = row;
+        dirtyTail = (dirtyTail + 1) % dirtyRows.length;
+    }
+
+    /**
+     * Updates the matrix after a variable has been assigned, and checks the rows containing it.
+     *
+     * @return true if there's a conflict.
+     */
+    boolean propagate(int variable) {
+        int column = columns[variable];
+        if (column < 0) return false;
+
+        if (pivotRows[column] >= 0 && updatePivot(pivotRows[column])) return true;
+
+        for (int i = 0; i < rowCount; i++) {
+            if (get(rows[i], column) && checkRow(i)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Moves the pivot of a row to one of its unassigned variables, if its pivot is assigned.
+     *
+     * @return true if there's a conflict in a row changed by the elimination.
+     */
+    private boolean updatePivot(int row) {
+        if (!isAssigned(pivots[row])) return false;
+
+        int column = findUnassigned(rows[row]);
+        if (column < 0) return false;
+
+        int changedCount = 0;
+        for (int i = 0; i < rowCount; i++) {
+            if (i != row && get(rows[i], column)) {
+                addRow(i, row);
+                changedRows[changedCount++] = i;
+            }
+        }
+
+        pivotRows[pivots[row]] = -1;
+        pivotRows[column] = row;
+        pivots[row] = column;
+
+        for (int i = 0; i < changedCount; i++) {
+            if (checkRow(changedRows[i])) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Propagates the only unassigned variable of a row, or reports a conflict if the row is fully assigned and
+     * falsified.
+     *
+     * @return true if there's a conflict.
+     */
+    private boolean checkRow(int row) {
+        long[] bits = rows[row];
+        int unassignedCount = 0, unassigned = -1;
+        boolean parity = rhs[row];
+
+        for (int w = 0; w < wordCount; w++) {
+            long free = bits[w] & ~assignedMask[w];
+            unassignedCount += Long.bitCount(free);
+            if (unassignedCount > 1) return false;
+            if (free != 0) unassigned = (w << 6) + Long.numberOfTrailingZeros(free);
+
+            if ((Long.bitCount(bits[w] & valueMask[w]) & 1) == 1) parity = !parity;
+        }
+
+        // parity is now the value the unassigned variable must take, or false if the row holds
+        if (unassignedCount == 0) {
+            if (!parity) return false;
+
+            Clause conflict = buildReason(bits, 0);
+            formula.addReason(conflict);
+            Logger.debug("Conflict at XOR row", row);
+            assignment.setKappaAntecedent(conflict.getId());
+            return true;
+        }
+
+        int variable = variables[unassigned];
+        int literal = parity ? variable : -variable;
+        long[] snapshot = bits.clone();
+
+        int reasonId = formula.addLazyReason(() -> buildReason(snapshot, literal));
+        Logger.debug("Propagate:", literal, "from XOR row", row);
+        assignment.add(variable, parity, reasonId);
+        lazyReasonIds[variable] = reasonId;
+        return false;
+    }
+
+    /**
+     * Builds the clause made of the given literal, and of the other variables of the row, each with the literal that
+     * is false under the assignment.
+     *
+     * @param implied the literal implied by the row, or 0 for a conflict.
+     */
+    private Clause buildReason(long[] row, int implied) {
+        Clause reason = new Clause(formula.getVariableCount());
+        if (implied != 0) reason.add(new Literal(implied));
+
+        for (int column = 0; column < variables.length; column++) {
+            int variable = variables[column];
+            if (!get(row, column) || variable == Math.abs(implied)) continue;
+
+            boolean value = assignment.getLiteralValue(variable) == Logic.TRUE;
+            reason.add(new Literal(value ? -variable : variable));
+        }
+
+        return reason;
+    }
+
+    //endregion
+
+    //region Bits
+
+    private boolean isAssigned(int column) {
+        return (assignedMask[column >> 6] & (1L << column)) != 0;
+    }
+
+    private int findUnassigned(long[] row) {
+        for (int w = 0; w < wordCount; w++) {
+            long free = row[w] & ~assignedMask[w];
+            if (free != 0) return (w << 6) + Long.numberOfTrailingZeros(free);
+        }
+
+        return -1;
+    }
+
+    private static boolean get(long[] row, int column) {
+        return (row[column >> 6] & (1L << column)) != 0;
+    }
+
+    private static void flip(long[] row, int column) {
+        row[column >> 6] ^= 1L << column;
+    }
+
+    //endregion
+}
@@ -12,6 +12,13 @@ import com.kentnek.cdcl.model.*;
 
 public class NaiveUnitPropagator implements UnitPropagator {
 
+    @Override
+    public void init(Formula formula, Assignment assignment) {
+        if (formula.hasConstraints()) {
+            throw new UnsupportedOperationException("Cardinality constraints need the TwoWatchedLiteralPropagator.");
+        }
+    }
+
     @Override
     public boolean propagate(Formula formula, Assignment assignment) {
         boolean hasUnitClause;
@@ -2,6 +2,7 @@ package com.kentnek.cdcl.algo.propagator;
 
 import com.kentnek.cdcl.Loggable;
 import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.Budget;
 import com.kentnek.cdcl.model.*;
 
 import java.util.*;
@@ -9,7 +10,13 @@ import java.util.*;
 /**
  * An implementation of the 2-watched-literal heuristic for unit propagation.
  * <p>
- * This propagator listens to the "add" event of the {@link Assignment} and "learn" event of the {@link Formula}.
+ * This propagator listens to the "add" event of the {@link Assignment} and "learn"/"forget" events of the
+ * {@link Formula}.
+ * <p>
+ * The {@link AtMostConstraint}s of the formula are propagated with a counter of true literals each: once a constraint
+ * has k true literals, its other literals are set to false, with a reason clause that is only built if the conflict
+ * analysis needs it, see {@link Formula#addLazyReason}. The {@link XorConstraint}s are propagated together by a
+ * {@link GaussJordanMatrix}.
  *
  * @author kentnek
  * @see <a href="http://people.mpi-inf.mpg.de/~mfleury/sat_twl.pdf"/>
@@ -18,6 +25,9 @@ import java.util.*;
 public class TwoWatchedLiteralPropagator extends Loggable
         implements UnitPropagator, Assignment.Listener, Formula.Listener {
 
+    // The budget is checked every that many propagations
+    private static final int BUDGET_CHECK_INTERVAL = 4096;
+
     // Stores the two literals being watched of a clause
     private class LiteralPair {
         int first;
@@ -49,17 +59,62 @@ public class TwoWatchedLiteralPropagator extends Loggable
     // Queue of literals to propagate that have recently been set to FALSE
     private LinkedList<Integer> literalsToPropagate;
 
-    // Mark the learned clause to be analyzed in propagate()
-    private Clause recentlyLearnedClause = null;
+    // Learned clauses to be processed in propagate()
+    private LinkedList<Clause> recentlyLearnedClauses = new LinkedList<>();
+
+    // A conflict found during init(), i.e. an empty clause or two contradicting unit clauses, reported by propagate()
+    private int initialConflict = Assignment.NIL;
+
+    // Constraint index -> number of true literals, and literal -> constraints containing it
+    private List<AtMostConstraint> constraints = Collections.emptyList();
+    private int[] trueCounts;
+    private Map<Integer, List<Integer>> constraintLists = new HashMap<>();
+
+    // Constraints that may propagate, e.g. after backtracking left them with k true literals
+    private final LinkedHashSet<Integer> constraintsToCheck = new LinkedHashSet<>();
+
+    // Variable -> id of its lazy reason, if it has been propagated by a constraint
+    private final Map<Integer, Integer> lazyReasonIds = new HashMap<>();
+
+    // The XOR constraints, or null if there's none
+    private GaussJordanMatrix xorMatrix;
+
+    private Formula formula;
+    private Assignment assignment;
+
+    private Budget budget;
+    private int propagationsSinceCheck = 0;
+
+    @Override
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
 
     @Override
     public void init(Formula formula, Assignment assignment) {
         // decision level must be zero at the beginning
         assert (assignment.getCurrentDecisionLevel() == 0);
 
-        watchLists = new HashMap<>();
-        watchedPairs = new HashMap<>();
-        literalsToPropagate = new LinkedList<>();
+        // The watch lists are kept between formulas, so a propagator reused for many formulas does not reallocate them
+        if (watchLists == null) {
+            watchLists = new HashMap<>();
+            watchedPairs = new HashMap<>();
+            literalsToPropagate = new LinkedList<>();
+        } else {
+            watchLists.values().forEach(List::clear);
+            watchedPairs.clear();
+            literalsToPropagate.clear();
+        }
+
+        recentlyLearnedClauses.clear();
+        initialConflict = Assignment.NIL;
+
+        this.formula = formula;
+        this.assignment = assignment;
+        initConstraints(formula, assignment);
+
+        // Variables assigned before init (e.g. by a preprocessor) still need to be propagated
+        assignment.forEach(single -> literalsToPropagate.push(-single.toLiteralNum()));
 
         // First, we watch all clauses with >= 2 literals
         formula.forEach(clause -> {
@@ -75,15 +130,41 @@ public class TwoWatchedLiteralPropagator extends Loggable
 
         // Then, attempt to find and assign all unit clause.
         formula.forEach(clause -> {
-            if (clause.getLiteralSize() == 1) {
+            if (clause.isEmpty()) {
+                initialConflict = clause.getId();
+            } else if (clause.getLiteralSize() == 1) {
                 Literal unit = clause.get(0);
-                assignment.add(unit.variable, !unit.isNegated, clause.getId());
+                Logic value = assignment.getLiteralValue(unit);
+
+                if (value == Logic.UNDEFINED) assignment.add(unit.variable, !unit.isNegated, clause.getId());
+                else if (value == Logic.FALSE) initialConflict = clause.getId();
             }
         });
 
         if (debug) Logger.debug("Initial watched pairs: ", watchedPairs);
     }
 
+    private void initConstraints(Formula formula, Assignment assignment) {
+        constraints = formula.getConstraints();
+        trueCounts = new int[constraints.size()];
+        constraintLists.clear();
+        constraintsToCheck.clear();
+        lazyReasonIds.clear();
+
+        for (int i = 0; i < constraints.size(); i++) {
+            for (int literal : constraints.get(i).getLiterals()) {
+                constraintLists.computeIfAbsent(literal, k -> new ArrayList<>()).add(i);
+                if (assignment.getLiteralValue(literal) == Logic.TRUE) trueCounts[i]++;
+            }
+
+            // e.g. at-most-0 constraints, which propagate right away
+            if (trueCounts[i] >= constraints.get(i).getBound()) constraintsToCheck.add(i);
+        }
+
+        xorMatrix = formula.getXorConstraints().isEmpty() ? null : new GaussJordanMatrix(formula, assignment);
+        if (xorMatrix != null) initialConflict = xorMatrix.getInitialConflict();
+    }
+
     private List<Integer> getWatchList(int literal) {
         return watchLists.computeIfAbsent(literal, k -> new ArrayList<>());
     }
@@ -106,18 +187,122 @@ public class TwoWatchedLiteralPropagator extends Loggable
 
     @Override
     public void learn(Clause clause) {
-        // a new clause is added to the formula. We'll just set the first two literals to be watched, regardless of
-        // their values.
+        // a new clause is added to the formula. Its watched literals are chosen in propagate(), under the assignment
+        // at that time.
 
-        recentlyLearnedClause = clause;
+        recentlyLearnedClauses.add(clause);
         if (debug) Logger.debug("New watched pairs after learning:", watchedPairs);
     }
 
+    @Override
+    public void forget(Clause clause) {
+        // stops watching the clause
+        recentlyLearnedClauses.removeIf(c -> c == clause);
+
+        LiteralPair pair = watchedPairs.remove(clause.getId());
+        if (pair == null) return;
+
+        getWatchList(pair.first).remove(Integer.valueOf(clause.getId()));
+        getWatchList(pair.second).remove(Integer.valueOf(clause.getId()));
+    }
+
     @Override
     public void add(int variable, boolean value, int antecedent) {
         // When a literal L becomes true, the solver needs to iterate only through the watch list for −L.
         // adds -L to our literal queue to be propagated later in propagate().
         literalsToPropagate.push(value ? -variable : variable);
+
+        List<Integer> constraintIndices = constraintLists.get(value ? variable : -variable);
+        if (constraintIndices != null) constraintIndices.forEach(i -> trueCounts[i]++);
+
+        if (xorMatrix != null) xorMatrix.onAssigned(variable, value);
+    }
+
+    @Override
+    public void remove(int variable, boolean value) {
+        // The queue is empty after a complete propagation, but not after one cut short by the budget. A literal that
+        // is no longer false must not be propagated by a later solve.
+        if (!literalsToPropagate.isEmpty()) literalsToPropagate.remove(Integer.valueOf(value ? -variable : variable));
+
+        Integer reasonId = lazyReasonIds.remove(variable);
+        if (reasonId != null) formula.removeLazyReason(reasonId);
+        if (xorMatrix != null) xorMatrix.onUnassigned(variable);
+
+        if (constraints.isEmpty()) return;
+
+        // A constraint may still have k true literals after backtracking, while the literals it had set to false are
+        // now unassigned. It must propagate them again, although none of its literals will become true.
+        for (int literal : new int[]{variable, -variable}) {
+            List<Integer> constraintIndices = constraintLists.get(literal);
+            if (constraintIndices == null) continue;
+
+            for (int i : constraintIndices) {
+                if (literal == (value ? variable : -variable)) trueCounts[i]--;
+                if (trueCounts[i] >= constraints.get(i).getBound()) constraintsToCheck.add(i);
+            }
+        }
+    }
+
+    /**
+     * Sets the unassigned literals of a constraint to false if it has k true literals, or reports a conflict if it
+     * has more.
+     *
+     * @return true if there's a conflict.
+     */
+    private boolean propagateConstraint(int index) {
+        AtMostConstraint constraint = constraints.get(index);
+        if (trueCounts[index] < constraint.getBound()) return false;
+
+        if (trueCounts[index] > constraint.getBound()) {
+            // any k + 1 true literals cannot all hold, and the latest ones are at the conflicting level
+            Clause reason = buildReason(constraint, 0, constraint.getBound() + 1);
+            formula.addReason(reason);
+
+            Logger.debug("Conflict at constraint", constraint);
+            assignment.setKappaAntecedent(reason.getId());
+            literalsToPropagate.clear();
+            constraintsToCheck.clear();
+            return true;
+        }
+
+        for (int literal : constraint.getLiterals()) {
+            if (assignment.getLiteralValue(literal) != Logic.UNDEFINED) continue;
+
+            int reasonId = formula.addLazyReason(() -> buildReason(constraint, literal, constraint.getBound()));
+            Logger.debug("Propagate:", -literal, "from constraint", constraint);
+            assignment.add(Math.abs(literal), literal < 0, reasonId);
+            lazyReasonIds.put(Math.abs(literal), reasonId);
+            if (budget != null) budget.addPropagations(1);
+        }
+
+        return false;
+    }
+
+    /**
+     * Builds a clause made of the given literal, negated, and of the latest true literals of the constraint that were
+     * assigned before it, negated too.
+     *
+     * @param propagated the literal set to false by the constraint, or 0 for a conflict.
+     */
+    private Clause buildReason(AtMostConstraint constraint, int propagated, int trueCount) {
+        int maxOrder = propagated == 0
+                ? Integer.MAX_VALUE
+                : assignment.getSingle(new Literal(propagated)).order;
+
+        List<Assignment.SingleAssignment> trueSingles = new ArrayList<>();
+        for (int literal : constraint.getLiterals()) {
+            if (assignment.getLiteralValue(literal) != Logic.TRUE) continue;
+
+            Assignment.SingleAssignment single = assignment.getSingle(new Literal(literal));
+            if (single.order < maxOrder) trueSingles.add(single);
+        }
+
+        trueSingles.sort((s1, s2) -> Integer.compare(s2.order, s1.order));
+
+        Clause reason = new Clause(formula.getVariableCount());
+        if (propagated != 0) reason.add(new Literal(-propagated));
+        trueSingles.stream().limit(trueCount).forEach(single -> reason.add(new Literal(-single.toLiteralNum())));
+        return reason;
     }
 
     /**
@@ -126,44 +311,117 @@ public class TwoWatchedLiteralPropagator extends Loggable
      * - If it's an unit clause, propagate the literal immediately.
      * <p>
      * If it's non-unit, watch two of its literals.
+     *
+     * @return true if the clause is a unit clause that is already false.
      */
-    private void processLearnedClause(Clause learnedClause, Assignment assignment) {
+    private boolean processLearnedClause(Clause learnedClause, Assignment assignment) {
 
         // we check if there is any recently learned clause
-        if (learnedClause == null) return;
+        if (learnedClause == null) return false;
 
         // if it's a unit clause, just assign it right away.
         if (learnedClause.getLiteralSize() == 1) {
             Literal unitLiteral = learnedClause.get(0);
-            assignment.add(
-                    unitLiteral.variable, !unitLiteral.isNegated, learnedClause.getId(), 0
-            );
+            Logic value = assignment.getLiteralValue(unitLiteral);
+
+            if (value == Logic.UNDEFINED) {
+                assignment.add(
+                        unitLiteral.variable, !unitLiteral.isNegated, learnedClause.getId(), 0
+                );
+            }
 
-            return;
+            return value == Logic.FALSE;
         }
 
-        int firstLiteral = learnedClause.get(0).toLiteralNum();
-        int secondLiteral = learnedClause.get(1).toLiteralNum();
+        // Watches the two best literals under the current assignment. This matters for clauses that are not learned
+        // from the latest conflict, e.g. imported from another solver.
+        int firstLiteral = 0, secondLiteral = 0;
+        for (Literal literal : learnedClause) {
+            int literalNum = literal.toLiteralNum();
+
+            if (firstLiteral == 0 || isBetterWatch(literal, new Literal(firstLiteral), assignment)) {
+                secondLiteral = firstLiteral;
+                firstLiteral = literalNum;
+            } else if (secondLiteral == 0 || isBetterWatch(literal, new Literal(secondLiteral), assignment)) {
+                secondLiteral = literalNum;
+            }
+        }
 
         watchNewClause(learnedClause.getId(), firstLiteral, secondLiteral);
 
         if (assignment.getLiteralValue(firstLiteral) == Logic.FALSE) literalsToPropagate.add(firstLiteral);
         if (assignment.getLiteralValue(secondLiteral) == Logic.FALSE) literalsToPropagate.add(secondLiteral);
+        return false;
+    }
+
+    /**
+     * A literal is a better watch if it's not false, or if both are false and it was assigned at a higher level.
+     */
+    private boolean isBetterWatch(Literal literal, Literal other, Assignment assignment) {
+        boolean isFalse = assignment.getLiteralValue(literal) == Logic.FALSE;
+        boolean isOtherFalse = assignment.getLiteralValue(other) == Logic.FALSE;
+
+        if (isFalse != isOtherFalse) return isOtherFalse;
+        if (!isFalse) return false;
+
+        return assignment.getSingle(literal).decisionLevel > assignment.getSingle(other).decisionLevel;
     }
 
     @Override
     public boolean propagate(Formula formula, Assignment assignment) {
 
+        if (initialConflict != Assignment.NIL) {
+            Logger.debug("Conflict at clause", initialConflict);
+            assignment.setKappaAntecedent(initialConflict);
+            initialConflict = Assignment.NIL;
+            literalsToPropagate.clear();
+            return true;
+        }
+
         // we check if there is any recently learned clause
-        if (recentlyLearnedClause != null) {
-            processLearnedClause(recentlyLearnedClause, assignment);
-            recentlyLearnedClause = null;
+        while (!recentlyLearnedClauses.isEmpty()) {
+            Clause learnedClause = recentlyLearnedClauses.poll();
+
+            if (processLearnedClause(learnedClause, assignment)) {
+                Logger.debug("Conflict at unit clause", learnedClause.getId());
+                assignment.setKappaAntecedent(learnedClause.getId());
+                literalsToPropagate.clear();
+                return true;
+            }
+        }
+
+        while (!constraintsToCheck.isEmpty()) {
+            Iterator<Integer> iterator = constraintsToCheck.iterator();
+            int index = iterator.next();
+            iterator.remove();
+
+            if (propagateConstraint(index)) return true;
+        }
+
+        if (xorMatrix != null && xorMatrix.propagateDirtyRows()) {
+            literalsToPropagate.clear();
+            return true;
         }
 
         // Loop until our queue is empty
         while (!literalsToPropagate.isEmpty()) {
             int falseLiteral = literalsToPropagate.pop();
 
+            // the negation of a false literal has just become true, which the constraints containing it count
+            List<Integer> constraintIndices = constraintLists.get(-falseLiteral);
+            boolean isAssigned = assignment.getLiteralValue(falseLiteral) == Logic.FALSE;
+
+            if (constraintIndices != null && isAssigned) {
+                for (int index : constraintIndices) {
+                    if (propagateConstraint(index)) return true;
+                }
+            }
+
+            if (xorMatrix != null && isAssigned && xorMatrix.propagate(Math.abs(falseLiteral))) {
+                literalsToPropagate.clear();
+                return true;
+            }
+
             if (!watchLists.containsKey(falseLiteral)) continue;
 
             List<Integer> watchList = watchLists.get(falseLiteral);
@@ -226,6 +484,14 @@ public class TwoWatchedLiteralPropagator extends Loggable
                         // 3.1. If it is not set, propagate L′
                         Logger.debug("Propagate:", otherLiteral, "from clause", clauseId);
                         assignment.add(otherLiteral.variable, !otherLiteral.isNegated, clauseId);
+
+                        if (budget != null) {
+                            budget.addPropagations(1);
+                            if (++propagationsSinceCheck >= BUDGET_CHECK_INTERVAL) {
+                                propagationsSinceCheck = 0;
+                                if (budget.isExhausted()) return false; // the solver stops right after
+                            }
+                        }
                     } else {
                         // 3.2. Otherwise, L' is false, and we have found a conflict.
                         Logger.debug("Conflict at clause", clauseId);
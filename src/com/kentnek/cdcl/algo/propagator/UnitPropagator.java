@@ -1,5 +1,6 @@
 package com.kentnek.cdcl.algo.propagator;
 
+import com.kentnek.cdcl.algo.Budget;
 import com.kentnek.cdcl.model.Assignment;
 import com.kentnek.cdcl.model.Formula;
 import com.kentnek.cdcl.model.GenericListener;
@@ -13,6 +14,13 @@ import com.kentnek.cdcl.model.GenericListener;
 
 public interface UnitPropagator extends GenericListener{
 
+    /**
+     * Lets the propagator count its propagations in the budget, and stop early once it is exhausted. After an early
+     * stop, the assignment is not fully propagated, so the search must not go on.
+     */
+    default void setBudget(Budget budget) {
+    }
+
     /**
      * Performs unit propagation and assigns values to unit literals if any.
      *
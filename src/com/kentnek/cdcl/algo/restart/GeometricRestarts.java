@@ -0,0 +1,41 @@
+package com.kentnek.cdcl.algo.restart;
+
+/**
+ * Restarts after a number of conflicts that grows geometrically after each restart.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+public class GeometricRestarts implements RestartPolicy {
+    private final float growth;
+
+    private float limit;
+    private int conflictCount = 0;
+
+    public GeometricRestarts() {
+        this(100, 1.5f);
+    }
+
+    public GeometricRestarts(int firstLimit, float growth) {
+        assert (firstLimit > 0 && growth >= 1);
+        this.limit = firstLimit;
+        this.growth = growth;
+    }
+
+    @Override
+    public void onConflict() {
+        conflictCount++;
+    }
+
+    @Override
+    public boolean shouldRestart() {
+        return conflictCount >= limit;
+    }
+
+    @Override
+    public void onRestart() {
+        limit *= growth;
+        conflictCount = 0;
+    }
+}
@@ -0,0 +1,51 @@
+package com.kentnek.cdcl.algo.restart;
+
+/**
+ * Restarts after a number of conflicts following the Luby sequence (1, 1, 2, 1, 1, 2, 4, 1, ...), multiplied by a unit.
+ * <p>
+ *
+ * @author kentnek
+ * @see <a href="https://doi.org/10.1016/0020-0190(93)90029-9">Luby et al., Optimal speedup of Las Vegas algorithms</a>
+ */
+
+public class LubyRestarts implements RestartPolicy {
+    private final int unit;
+
+    private int restartCount = 0;
+    private int conflictCount = 0;
+
+    public LubyRestarts() {
+        this(100);
+    }
+
+    public LubyRestarts(int unit) {
+        this.unit = unit;
+    }
+
+    @Override
+    public void onConflict() {
+        conflictCount++;
+    }
+
+    @Override
+    public boolean shouldRestart() {
+        return conflictCount >= unit * luby(restartCount + 1);
+    }
+
+    @Override
+    public void onRestart() {
+        restartCount++;
+        conflictCount = 0;
+    }
+
+    /**
+     * @return the i-th element (1-based) of the Luby sequence.
+     */
+    static int luby(int i) {
+        int power = 1;
+        while (power * 2 - 1 < i) power *= 2;
+
+        // i = 2^k - 1 gives 2^(k-1), otherwise the sequence repeats itself
+        return (power * 2 - 1 == i) ? power : luby(i - power + 1);
+    }
+}
@@ -0,0 +1,25 @@
+package com.kentnek.cdcl.algo.restart;
+
+/**
+ * Decides when the solver should restart, i.e. backtrack to decision level 0 while keeping its learned clauses.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+public interface RestartPolicy {
+    /**
+     * Called by the solver after each conflict.
+     */
+    void onConflict();
+
+    /**
+     * @return true if the solver should restart now.
+     */
+    boolean shouldRestart();
+
+    /**
+     * Called by the solver after each restart.
+     */
+    void onRestart();
+}
@@ -0,0 +1,54 @@
+package com.kentnek.cdcl.algo.sharing;
+
+import java.util.function.Consumer;
+
+/**
+ * Shared storage for clauses exchanged between parallel workers, with one {@link ClauseRingBuffer} per producer.
+ * <p>
+ * Every worker only writes to its own buffer, so no locks or compare-and-swap loops are needed. Importing reads the
+ * buffers of all other workers.
+ *
+ * @author kentnek
+ */
+
+public class ClauseExchange {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final ClauseRingBuffer[] buffers;
+
+    public ClauseExchange(int workerCount) {
+        this(workerCount, DEFAULT_CAPACITY);
+    }
+
+    public ClauseExchange(int workerCount, int capacityPerWorker) {
+        buffers = new ClauseRingBuffer[workerCount];
+        for (int i = 0; i < workerCount; i++) buffers[i] = new ClauseRingBuffer(capacityPerWorker);
+    }
+
+    public int getWorkerCount() {
+        return buffers.length;
+    }
+
+    public void export(int worker, int[] literals) {
+        buffers[worker].write(literals);
+    }
+
+    /**
+     * Reads the clauses published by all other workers since the given cursors, which are updated.
+     *
+     * @param cursors one cursor per worker, owned by the importing worker.
+     */
+    public void importInto(int worker, long[] cursors, Consumer<int[]> consumer) {
+        for (int producer = 0; producer < buffers.length; producer++) {
+            if (producer == worker) continue;
+            cursors[producer] = buffers[producer].read(cursors[producer], consumer);
+        }
+    }
+
+    public long getExportedCount() {
+        long total = 0;
+        for (ClauseRingBuffer buffer : buffers) total += buffer.getWrittenCount();
+        return total;
+    }
+}
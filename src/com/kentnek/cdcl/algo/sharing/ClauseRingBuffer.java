@@ -0,0 +1,72 @@
+package com.kentnek.cdcl.algo.sharing;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lock-free ring buffer of clauses with a single writer and any number of readers.
+ * <p>
+ * The writer stores a clause in the next slot, then publishes it by advancing {@link #head}. It never waits for the
+ * readers: when the buffer is full, the oldest clauses are overwritten. Each reader keeps its own cursor, and skips
+ * the clauses it has missed.
+ * <p>
+ * A slot holds a reference to an immutable literal array, so a reader racing with the writer reads either the old or
+ * the new clause, never a mix of both. Since every shared clause is implied by the formula, importing the wrong one is
+ * harmless, but such reads are discarded anyway.
+ *
+ * @author kentnek
+ */
+
+public class ClauseRingBuffer {
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<int[]> slots;
+
+    // Sequence number of the next clause to be written
+    private final AtomicLong head = new AtomicLong(0);
+
+    /**
+     * @param capacity the number of slots, rounded up to a power of two.
+     */
+    public ClauseRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Publishes a clause. Must only be called by the owner of this buffer.
+     */
+    public void write(int[] literals) {
+        long sequence = head.get();
+        slots.set((int) (sequence & mask), literals);
+        head.lazySet(sequence + 1);
+    }
+
+    /**
+     * Passes the clauses published since the given cursor to the consumer.
+     *
+     * @return the new cursor of the reader.
+     */
+    public long read(long cursor, Consumer<int[]> consumer) {
+        long end = head.get();
+        long start = Math.max(cursor, end - capacity);
+
+        for (long sequence = start; sequence < end; sequence++) {
+            int[] literals = slots.get((int) (sequence & mask));
+
+            // the writer may have wrapped around while we were reading
+            if (head.get() - sequence >= capacity) continue;
+            consumer.accept(literals);
+        }
+
+        return end;
+    }
+
+    public long getWrittenCount() {
+        return head.get();
+    }
+}
@@ -0,0 +1,162 @@
+package com.kentnek.cdcl.algo.sharing;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.Metrics;
+import com.kentnek.cdcl.algo.inprocessor.Inprocessor;
+import com.kentnek.cdcl.algo.propagator.UnitPropagator;
+import com.kentnek.cdcl.model.*;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static com.kentnek.cdcl.Metrics.Key.CLAUSE_EXPORT;
+import static com.kentnek.cdcl.Metrics.Key.CLAUSE_IMPORT;
+
+/**
+ * Shares learned clauses of one worker with the other workers of a parallel solver, through a {@link ClauseExchange}.
+ * <p>
+ * - Every learned clause whose size and LBD (number of distinct decision levels among its literals) are within the
+ * limits is exported right away. Unit clauses are always exported.
+ * <p>
+ * - Clauses from the other workers are imported at restarts, i.e. at decision level 0. Clauses satisfied at level 0,
+ * or mentioning variables eliminated by this worker's preprocessing, are skipped. The others are learned, so the
+ * propagator attaches them and propagates them if they are unit or conflicting under the current assignment.
+ * <p>
+ * Imported clauses have no resolution trace, so clause sharing cannot be used when a refutation proof is needed.
+ *
+ * @author kentnek
+ */
+
+public class ClauseSharing implements Inprocessor, Formula.Listener {
+
+    private static final int DEFAULT_MAX_SIZE = 8;
+    private static final int DEFAULT_MAX_LBD = 4;
+
+    private final ClauseExchange exchange;
+    private final int worker;
+    private final int maxSize;
+    private final int maxLbd;
+
+    private final long[] cursors;
+
+    private Formula formula;
+    private Assignment assignment;
+
+    // set while importing, so that imported clauses are not exported again
+    private boolean isImporting = false;
+
+    private int exportedCount = 0, importedCount = 0, filteredCount = 0;
+
+    public ClauseSharing(ClauseExchange exchange, int worker) {
+        this(exchange, worker, DEFAULT_MAX_SIZE, DEFAULT_MAX_LBD);
+    }
+
+    public ClauseSharing(ClauseExchange exchange, int worker, int maxSize, int maxLbd) {
+        this.exchange = exchange;
+        this.worker = worker;
+        this.maxSize = maxSize;
+        this.maxLbd = maxLbd;
+        this.cursors = new long[exchange.getWorkerCount()];
+    }
+
+    @Override
+    public void setTracing(boolean tracing) {
+        if (tracing) Logger.log("WARNING: shared clauses have no resolution trace.");
+    }
+
+    @Override
+    public void init(Formula formula, Assignment assignment) {
+        this.formula = formula;
+        this.assignment = assignment;
+    }
+
+    //region Export
+
+    @Override
+    public void learn(Clause clause) {
+        if (isImporting) return;
+
+        int size = clause.getLiteralSize();
+        if (size > 1 && (size > maxSize || computeLbd(clause) > maxLbd)) {
+            filteredCount++;
+            return;
+        }
+
+        int[] literals = new int[size];
+        int i = 0;
+        for (Literal literal : clause) literals[i++] = literal.toLiteralNum();
+
+        exchange.export(worker, literals);
+        exportedCount++;
+        Metrics.incrementCounter(CLAUSE_EXPORT);
+    }
+
+    /**
+     * Counts the distinct decision levels of the literals. The clause is learned after backtracking, so its asserting
+     * literal is unassigned, and is counted as a level of its own.
+     */
+    private int computeLbd(Clause clause) {
+        Set<Integer> levels = new HashSet<>();
+
+        for (Literal literal : clause) {
+            Assignment.SingleAssignment single = assignment.getSingle(literal);
+            levels.add(single != null ? single.decisionLevel : -1);
+        }
+
+        return levels.size();
+    }
+
+    //endregion
+
+    //region Import
+
+    @Override
+    public boolean inprocess(Formula formula, Assignment assignment, UnitPropagator propagator) {
+        assert (assignment.getCurrentDecisionLevel() == 0);
+
+        int before = importedCount;
+        isImporting = true;
+        exchange.importInto(worker, cursors, this::importClause);
+        isImporting = false;
+
+        if (importedCount > before) {
+            Logger.debug(String.format(
+                    "Worker %d: %d clauses imported, %d exported, %d filtered so far.",
+                    worker, importedCount, exportedCount, filteredCount
+            ));
+        }
+
+        return propagator.propagate(formula, assignment);
+    }
+
+    private void importClause(int[] literals) {
+        LinkedHashSet<Literal> kept = new LinkedHashSet<>();
+
+        for (int literalNum : literals) {
+            if (formula.isEliminated(Math.abs(literalNum))) return;
+
+            Logic value = assignment.getLiteralValue(literalNum);
+            if (value == Logic.TRUE) return; // satisfied at level 0
+            kept.add(new Literal(literalNum));
+        }
+
+        formula.learn(new Clause(formula.getVariableCount(), kept));
+        importedCount++;
+        Metrics.incrementCounter(CLAUSE_IMPORT);
+    }
+
+    //endregion
+
+    public int getExportedCount() {
+        return exportedCount;
+    }
+
+    public int getImportedCount() {
+        return importedCount;
+    }
+
+    public int getFilteredCount() {
+        return filteredCount;
+    }
+}
@@ -0,0 +1,99 @@
+package com.kentnek.cdcl.batch;
+
+import com.kentnek.cdcl.algo.SolveResult;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Logic;
+
+import java.nio.file.Path;
+
+/**
+ * A CNF file going through the stages of a {@link BatchRunner}: parse, solve, proof writing, and output as a JSON line.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+class BatchJob {
+    final Path path;
+
+    Formula formula;
+    long parseTimeMillis;
+
+    SolveResult result;
+    Path proofPath;
+    String error;
+
+    BatchJob(Path path) {
+        this.path = path;
+    }
+
+    String getStatus() {
+        if (error != null) return "ERROR";
+        return result.getStatus().toString();
+    }
+
+    /**
+     * @param includeModel whether to include the model of a satisfiable formula, as a list of literals.
+     */
+    String toJson(boolean includeModel) {
+        StringBuilder builder = new StringBuilder("{");
+        appendString(builder, "file", path.toString()).append(',');
+        appendString(builder, "status", getStatus());
+        builder.append(",\"parseTimeMs\":").append(parseTimeMillis);
+
+        if (result != null) {
+            builder.append(",\"timeMs\":").append(result.elapsedTimeMillis)
+                    .append(",\"conflicts\":").append(result.conflicts)
+                    .append(",\"decisions\":").append(result.decisions)
+                    .append(",\"propagations\":").append(result.propagations);
+
+            if (result.getReason() != null) appendString(builder.append(','), "reason", result.getReason());
+
+            Assignment model = result.getAssignment();
+            if (includeModel && model != null) {
+                builder.append(",\"model\":[");
+                for (int v = 1; v <= model.getVariableCount(); v++) {
+                    if (v > 1) builder.append(',');
+                    // unassigned variables can take any value, they are reported as false
+                    builder.append(model.getLiteralValue(v) == Logic.TRUE ? v : -v);
+                }
+                builder.append(']');
+            }
+        }
+
+        if (proofPath != null) appendString(builder.append(','), "proof", proofPath.toString());
+        if (error != null) appendString(builder.append(','), "error", error);
+
+        return builder.append('}').toString();
+    }
+
+    private static StringBuilder appendString(StringBuilder builder, String key, String value) {
+        builder.append('"').append(key).append("\":\"");
+
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) builder.append(String.format("\\u%04x", (int) c));
+                    else builder.append(c);
+            }
+        }
+
+        return builder.append('"');
+    }
+}
@@ -0,0 +1,314 @@
+package com.kentnek.cdcl.batch;
+
+import com.kentnek.cdcl.FormulaHelper;
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.Budget;
+import com.kentnek.cdcl.algo.CdclSolver;
+import com.kentnek.cdcl.algo.SolveResult;
+import com.kentnek.cdcl.algo.UnsatProver;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.HybridVsidsPicker;
+import com.kentnek.cdcl.algo.preprocessor.BlockedClauseElimination;
+import com.kentnek.cdcl.algo.preprocessor.FailedLiteralProbing;
+import com.kentnek.cdcl.algo.preprocessor.PreprocessorPipeline;
+import com.kentnek.cdcl.algo.preprocessor.PureLiteralElimination;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Solves many CNF files in one JVM, and streams one JSON line per file.
+ * <p>
+ * Every file goes through a pipeline of stages, each with its own executor, so that parsing, solving and proof writing
+ * of different files overlap:
+ * <p>
+ * - parse: reads and parses the file, on a small pool.
+ * <p>
+ * - solve: runs a {@link CdclSolver} within a per-job {@link Budget}, on a bounded pool.
+ * <p>
+ * - write: builds and writes the refutation proof of an unsatisfiable formula if proofs are enabled, on a pool of the
+ * same size as the parse stage.
+ * <p>
+ * - output: prints the JSON line, on a single thread so lines are never interleaved.
+ * <p>
+ * At most a few jobs per solver thread are in flight at once, so the parsed formulas waiting to be solved stay bounded.
+ * <p>
+ * Usage: BatchRunner (directory | manifest) [--threads n] [--parse-threads n] [--time-limit ms] [--conflict-limit n]
+ * [--proofs directory] [--models] [--output file]
+ * <p>
+ * A manifest is a text file with one CNF path per line, relative to the manifest; lines starting with '#' are ignored.
+ *
+ * @author kentnek
+ */
+
+public class BatchRunner {
+
+    private static final int JOBS_IN_FLIGHT_PER_THREAD = 2;
+
+    // The inputs picked from a directory, plain or compressed, see Compression
+    private static final String[] CNF_EXTENSIONS = {".cnf", ".cnf.gz", ".cnf.xz"};
+
+    private int solverThreads = Runtime.getRuntime().availableProcessors();
+    private int parseThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+    private long timeLimitMillis = Long.MAX_VALUE;
+    private long conflictLimit = Long.MAX_VALUE;
+    private Path proofDirectory = null;
+    private boolean includeModels = false;
+
+    // The deepest directory containing all inputs, which proof paths are relative to
+    private Path inputRoot;
+
+    public BatchRunner withSolverThreads(int solverThreads) {
+        this.solverThreads = solverThreads;
+        return this;
+    }
+
+    public BatchRunner withParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+        return this;
+    }
+
+    public BatchRunner withTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+        return this;
+    }
+
+    public BatchRunner withConflictLimit(long conflictLimit) {
+        this.conflictLimit = conflictLimit;
+        return this;
+    }
+
+    /**
+     * Enables proof generation, with the proofs of unsatisfiable formulas written to the given directory, in the same
+     * subdirectories as their inputs.
+     */
+    public BatchRunner withProofs(Path proofDirectory) {
+        this.proofDirectory = proofDirectory;
+        return this;
+    }
+
+    public BatchRunner withModels(boolean includeModels) {
+        this.includeModels = includeModels;
+        return this;
+    }
+
+    /**
+     * Lists the CNF files of a directory, compressed or not (recursively, sorted by name), or the files of a
+     * manifest.
+     */
+    public static List<Path> listInputs(Path input) throws IOException {
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.walk(input)) {
+                return files.filter(p -> getCnfExtension(p) != null).sorted().collect(Collectors.toList());
+            }
+        }
+
+        Path base = input.toAbsolutePath().getParent();
+        List<Path> paths = new ArrayList<>();
+
+        for (String line : Files.readAllLines(input, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            paths.add(base.resolve(line).normalize());
+        }
+
+        return paths;
+    }
+
+    /**
+     * Runs all files through the pipeline, and writes their JSON lines to the output as they complete.
+     */
+    public void run(List<Path> inputs, PrintStream output) throws InterruptedException, IOException {
+        if (proofDirectory != null) Files.createDirectories(proofDirectory);
+        inputRoot = getCommonDirectory(inputs);
+
+        ExecutorService parsePool = Executors.newFixedThreadPool(parseThreads);
+        ExecutorService solvePool = Executors.newFixedThreadPool(solverThreads);
+        ExecutorService writePool = Executors.newFixedThreadPool(parseThreads);
+        ExecutorService outputPool = Executors.newSingleThreadExecutor();
+
+        Semaphore inFlight = new Semaphore(solverThreads * JOBS_IN_FLIGHT_PER_THREAD);
+        List<CompletableFuture<Void>> jobs = new ArrayList<>();
+
+        try {
+            for (Path input : inputs) {
+                inFlight.acquire();
+
+                BatchJob job = new BatchJob(input);
+                CompletableFuture<Void> future = CompletableFuture
+                        .runAsync(() -> parse(job), parsePool)
+                        .thenRunAsync(() -> solve(job), solvePool)
+                        .thenRunAsync(() -> writeProof(job), writePool)
+                        .exceptionally(e -> {
+                            job.error = String.valueOf(e.getCause() != null ? e.getCause() : e);
+                            return null;
+                        })
+                        .thenRunAsync(() -> {
+                            output.println(job.toJson(includeModels));
+                            output.flush();
+                            job.formula = null;
+                            inFlight.release();
+                        }, outputPool);
+
+                jobs.add(future);
+            }
+
+            CompletableFuture.allOf(jobs.toArray(new CompletableFuture<?>[0])).join();
+
+        } finally {
+            parsePool.shutdown();
+            solvePool.shutdown();
+            writePool.shutdown();
+            outputPool.shutdown();
+        }
+    }
+
+    //region Stages
+
+    private void parse(BatchJob job) {
+        long startTime = System.currentTimeMillis();
+        job.formula = FormulaHelper.parseFromFile(job.path.toString());
+        job.parseTimeMillis = System.currentTimeMillis() - startTime;
+
+        if (job.formula == null) throw new IllegalArgumentException("Unable to parse " + job.path);
+    }
+
+    private void solve(BatchJob job) {
+        Budget budget = new Budget().withTimeLimit(timeLimitMillis).withConflictLimit(conflictLimit);
+
+        CdclSolver solver = new CdclSolver()
+                .with(new PreprocessorPipeline()
+                        .add(new PureLiteralElimination())
+                        .add(new BlockedClauseElimination(), 500)
+                        .add(new FailedLiteralProbing(), 500))
+                .with(new HybridVsidsPicker(0.1f))
+                .with(new TwoWatchedLiteralPropagator())
+                .with(new ClauseLearningWithUip())
+                .with(budget)
+                .withTracing(proofDirectory != null);
+
+        job.result = solver.solveWithBudget(job.formula);
+    }
+
+    private void writeProof(BatchJob job) {
+        if (proofDirectory == null || job.result.getStatus() != SolveResult.Status.UNSAT) return;
+
+        Path proofPath = getProofPath(job.path);
+
+        try {
+            Files.createDirectories(proofPath.getParent());
+            new UnsatProver(job.formula).prove()
+                    .expandResolutions()
+                    .renumberClauses()
+                    .writeToFile(proofPath);
+            job.proofPath = proofPath;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Mirrors the path of the input relative to the input root, so inputs with the same name in different directories
+     * get different proofs, e.g. "a/x.cnf.gz" becomes "a/x.txt" in the proof directory.
+     */
+    private Path getProofPath(Path input) {
+        Path relative = inputRoot.relativize(input.toAbsolutePath().normalize());
+        String name = relative.getFileName().toString();
+
+        String extension = getCnfExtension(relative);
+        if (extension != null) name = name.substring(0, name.length() - extension.length());
+
+        return proofDirectory.resolve(relative.resolveSibling(name + ".txt"));
+    }
+
+    /**
+     * @return the CNF extension the file name ends with, or null if there is none.
+     */
+    private static String getCnfExtension(Path path) {
+        String name = path.getFileName().toString();
+
+        for (String extension : CNF_EXTENSIONS) {
+            if (name.endsWith(extension)) return extension;
+        }
+
+        return null;
+    }
+
+    private static Path getCommonDirectory(List<Path> inputs) {
+        Path common = null;
+
+        for (Path input : inputs) {
+            Path directory = input.toAbsolutePath().normalize().getParent();
+            if (common == null) {
+                common = directory;
+                continue;
+            }
+
+            while (!directory.startsWith(common)) common = common.getParent();
+        }
+
+        return common;
+    }
+
+    //endregion
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: BatchRunner (directory | manifest) [--threads n] [--parse-threads n] "
+                    + "[--time-limit ms] [--conflict-limit n] [--proofs directory] [--models] [--output file]");
+            System.exit(1);
+        }
+
+        BatchRunner runner = new BatchRunner();
+        Path outputPath = null;
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    runner.withSolverThreads(Integer.parseInt(args[++i]));
+                    break;
+                case "--parse-threads":
+                    runner.withParseThreads(Integer.parseInt(args[++i]));
+                    break;
+                case "--time-limit":
+                    runner.withTimeLimit(Long.parseLong(args[++i]));
+                    break;
+                case "--conflict-limit":
+                    runner.withConflictLimit(Long.parseLong(args[++i]));
+                    break;
+                case "--proofs":
+                    runner.withProofs(Paths.get(args[++i]));
+                    break;
+                case "--models":
+                    runner.withModels(true);
+                    break;
+                case "--output":
+                    outputPath = Paths.get(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        List<Path> inputs = listInputs(Paths.get(args[0]));
+
+        if (outputPath == null) {
+            // the standard output is reserved for the JSON lines
+            Logger.setShowLog(false);
+            runner.run(inputs, System.out);
+        } else {
+            try (PrintStream output = new PrintStream(Files.newOutputStream(outputPath), false, "UTF-8")) {
+                runner.run(inputs, output);
+            }
+        }
+    }
+}
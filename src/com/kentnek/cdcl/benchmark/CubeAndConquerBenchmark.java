@@ -0,0 +1,68 @@
+package com.kentnek.cdcl.benchmark;
+
+import com.kentnek.cdcl.FormulaHelper;
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.cube.CubeAndConquerSolver;
+import com.kentnek.cdcl.algo.cube.LookaheadCubeGenerator;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Formula;
+
+import java.nio.file.Paths;
+
+/**
+ * Measures the speedup of {@link CubeAndConquerSolver} with 1, 2, 4, 8 and 16 threads, relative to one thread.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+public class CubeAndConquerBenchmark {
+
+    // relative to "/inputs"
+    private static final String[] INPUT_FILE_PATHS = {
+            "others/par16.cnf",
+            "others/pigeon_hole.cnf",
+            "others/60var_unsat_hard.cnf"
+    };
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+    private static final int CUBE_DEPTH = 6;
+    private static final int REPETITIONS = 3;
+
+    public static void main(String[] args) {
+        String[] paths = args.length > 0 ? args : INPUT_FILE_PATHS;
+
+        for (String path : paths) {
+            String fullPath = args.length > 0 ? path : Paths.get("inputs", path).toString();
+            Logger.log("\nFile:", fullPath);
+            Logger.log(String.format("%8s %12s %8s  %s", "threads", "time (ms)", "speedup", "result"));
+
+            long baseline = -1;
+
+            for (int threadCount : THREAD_COUNTS) {
+                long bestTime = Long.MAX_VALUE;
+                String result = "";
+
+                // takes the best of a few runs, to smooth out JIT warm-up and scheduling noise
+                for (int i = 0; i < REPETITIONS; i++) {
+                    Formula formula = FormulaHelper.parseFromFile(fullPath);
+                    if (formula == null) return;
+
+                    CubeAndConquerSolver solver = new CubeAndConquerSolver()
+                            .with(new LookaheadCubeGenerator(CUBE_DEPTH, 40))
+                            .withThreadCount(threadCount);
+
+                    long startTime = System.currentTimeMillis();
+                    Assignment assignment = solver.solve(formula);
+                    bestTime = Math.min(bestTime, System.currentTimeMillis() - startTime);
+                    result = assignment != null ? "SAT" : "UNSAT";
+                }
+
+                if (baseline < 0) baseline = bestTime;
+                Logger.log(String.format(
+                        "%8d %12d %8.2f  %s", threadCount, bestTime, (double) baseline / Math.max(1, bestTime), result
+                ));
+            }
+        }
+    }
+}
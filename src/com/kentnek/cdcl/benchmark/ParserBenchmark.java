@@ -0,0 +1,157 @@
+package com.kentnek.cdcl.benchmark;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Literal;
+import com.kentnek.cdcl.model.XorConstraint;
+import com.kentnek.cdcl.parser.ClauseArena;
+import com.kentnek.cdcl.parser.Compression;
+import com.kentnek.cdcl.parser.DimacsParser;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares a line-based parser, the one this project used before, against {@link DimacsParser}, in MB/s.
+ * <p>
+ * Without arguments, a random 3-SAT file of about 100 MB is generated in the temporary directory. Compressed files are
+ * decompressed by both parsers, and the speeds are in decompressed MB/s.
+ *
+ * @author kentnek
+ */
+
+public class ParserBenchmark {
+
+    private static final int VARIABLES = 1_000_000;
+    private static final int CLAUSES = 4_000_000;
+    private static final int REPETITIONS = 3;
+
+    public static void main(String[] args) throws IOException {
+        Path path = args.length > 0 ? Paths.get(args[0]) : generate();
+        Compression compression = Compression.detect(path);
+        DimacsParser parser = new DimacsParser();
+
+        parser.parseFile(path);
+        double megabytes = parser.getByteCount() / 1e6;
+        Logger.log(String.format("File: %s (%.1f MB, %s)", path, megabytes, compression));
+        long lineTime = Long.MAX_VALUE, arenaTime = Long.MAX_VALUE, formulaTime = Long.MAX_VALUE;
+
+        // takes the best of a few runs, to smooth out JIT warm-up and page cache misses
+        for (int i = 0; i < REPETITIONS; i++) {
+            long startTime = System.nanoTime();
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(compression.open(path)))) {
+                parseLines(br);
+            }
+            lineTime = Math.min(lineTime, System.nanoTime() - startTime);
+
+            startTime = System.nanoTime();
+            ClauseArena arena = parser.parseFile(path);
+            arenaTime = Math.min(arenaTime, System.nanoTime() - startTime);
+
+            startTime = System.nanoTime();
+            arena.toFormula();
+            formulaTime = Math.min(formulaTime, System.nanoTime() - startTime);
+        }
+
+        Logger.log(String.format("%-28s %10s %10s", "parser", "time (ms)", "MB/s"));
+        log("BufferedReader.readLine", lineTime, megabytes);
+        log("DimacsParser (arena)", arenaTime, megabytes);
+        log("DimacsParser (formula)", arenaTime + formulaTime, megabytes);
+
+        if (args.length == 0) Files.delete(path);
+    }
+
+    /**
+     * The line-based parser that {@link DimacsParser} replaced, kept as the baseline: one String per line, split by a
+     * regex, and one clause per line at most.
+     *
+     * @return the formula, or null if the clause count does not match the header.
+     */
+    private static Formula parseLines(BufferedReader br) throws IOException {
+        Formula formula = null;
+        int variableNum = 0;
+        int clauseNum = 0;
+        Clause clause = null;
+        int xorCount = 0;
+
+        for (String line; (line = br.readLine()) != null; ) {
+            if (line.startsWith("c") || line.isEmpty()) continue; // Comment line
+
+            if (line.startsWith("x") && formula != null) { // XOR line, e.g. "x1 -2 3 0" for x1 ⊕ ¬x2 ⊕ x3
+                int[] literals = Arrays.stream(line.substring(1).trim().split("\\s+"))
+                        .mapToInt(Integer::parseInt)
+                        .filter(literal -> literal != 0)
+                        .toArray();
+
+                formula.add(XorConstraint.fromLiterals(literals));
+                xorCount++;
+                continue;
+            }
+
+            String[] tokens = line.trim().split("\\s+");
+
+            if (line.startsWith("p cnf")) { // literals definition line
+                variableNum = Integer.parseInt(tokens[2]);
+                clauseNum = Integer.parseInt(tokens[3]);
+                formula = new Formula(variableNum);
+                continue;
+            } else if (formula == null) continue;
+
+            if (clause == null) { // Clause line
+                clause = new Clause(variableNum);
+            }
+
+            for (String token : tokens) {
+                int literalNum = Integer.parseInt(token);
+
+                if (literalNum == 0) {
+                    formula.add(clause);
+                    clause = null;
+                    break;
+                }
+
+                clause.add(new Literal(literalNum));
+            }
+
+        }
+
+        if (formula != null && formula.getClauseSize() + xorCount != clauseNum) {
+            Logger.log(String.format(
+                    "Clause number defined to be %d, but found %d instead.",
+                    clauseNum, formula.getClauseSize() + xorCount
+            ));
+
+            return null;
+        }
+
+        return formula;
+    }
+
+    private static void log(String name, long nanos, double megabytes) {
+        Logger.log(String.format("%-28s %10d %10.1f", name, nanos / 1_000_000, megabytes / (nanos / 1e9)));
+    }
+
+    private static Path generate() throws IOException {
+        Path path = Files.createTempFile("parser_benchmark", ".cnf");
+        Random random = new Random(0);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write(String.format("p cnf %d %d\n", VARIABLES, CLAUSES));
+
+            for (int i = 0; i < CLAUSES; i++) {
+                for (int j = 0; j < 3; j++) {
+                    int variable = random.nextInt(VARIABLES) + 1;
+                    writer.write((random.nextBoolean() ? variable : -variable) + " ");
+                }
+                writer.write("0\n");
+            }
+        }
+
+        return path;
+    }
+}
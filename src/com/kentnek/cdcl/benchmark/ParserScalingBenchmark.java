@@ -0,0 +1,87 @@
+package com.kentnek.cdcl.benchmark;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.generator.CnfWriter;
+import com.kentnek.cdcl.generator.RandomKSatGenerator;
+import com.kentnek.cdcl.parser.ClauseArena;
+import com.kentnek.cdcl.parser.DimacsParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Measures the speedup of {@link DimacsParser} with 1, 2, 4, 8 and 16 threads, relative to one thread, and checks that
+ * every thread count yields the same clauses in the same order.
+ * <p>
+ * Without arguments, a random 3-SAT file of about 200 MB, always the same, is generated by {@link CnfWriter}, and
+ * deleted afterwards.
+ *
+ * @author kentnek
+ */
+
+public class ParserScalingBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+    private static final int REPETITIONS = 3;
+
+    public static void main(String[] args) throws IOException {
+        Path path;
+
+        if (args.length > 0) {
+            path = Paths.get(args[0]);
+        } else {
+            path = Files.createTempFile("scaling", ".cnf");
+            new CnfWriter().write(new RandomKSatGenerator(2_000_000, 3, 8_000_000, 1), path);
+        }
+
+        Logger.log(String.format("File: %s (%.1f MB)", path, Files.size(path) / 1e6));
+        Logger.log(String.format("%8s %12s %10s %8s  %s", "threads", "time (ms)", "MB/s", "speedup", "checksum"));
+
+        long baseline = -1, baselineChecksum = 0;
+
+        for (int threadCount : THREAD_COUNTS) {
+            DimacsParser parser = new DimacsParser().withThreadCount(threadCount);
+            long bestTime = Long.MAX_VALUE;
+            double bestThroughput = 0;
+            long checksum = 0;
+
+            // takes the best of a few runs, to smooth out JIT warm-up and page cache misses
+            for (int i = 0; i < REPETITIONS; i++) {
+                ClauseArena arena = parser.parseFile(path);
+                bestTime = Math.min(bestTime, parser.getElapsedMillis());
+                bestThroughput = Math.max(bestThroughput, parser.getThroughput());
+                checksum = checksum(arena);
+            }
+
+            if (baseline < 0) {
+                baseline = bestTime;
+                baselineChecksum = checksum;
+            }
+
+            Logger.log(String.format(
+                    "%8d %12d %10.1f %8.2f  %016x%s", threadCount, bestTime, bestThroughput,
+                    (double) baseline / Math.max(1, bestTime), checksum, checksum == baselineChecksum ? "" : " MISMATCH"
+            ));
+        }
+
+        if (args.length == 0) Files.delete(path);
+    }
+
+    /**
+     * Hashes the clauses in order, so any difference in clause order or content shows up.
+     */
+    private static long checksum(ClauseArena arena) {
+        long hash = arena.getClauseCount();
+
+        for (int clause = 0; clause < arena.getClauseCount(); clause++) {
+            for (int i = arena.getClauseStart(clause); i < arena.getClauseEnd(clause); i++) {
+                hash = hash * 1_000_003 + arena.getLiteral(i);
+            }
+            hash = hash * 31 + (arena.isXor(clause) ? 2 : 1);
+        }
+
+        return hash;
+    }
+}
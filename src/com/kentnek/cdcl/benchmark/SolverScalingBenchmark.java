@@ -0,0 +1,120 @@
+package com.kentnek.cdcl.benchmark;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.Budget;
+import com.kentnek.cdcl.algo.CdclSolver;
+import com.kentnek.cdcl.algo.SolveResult;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.HybridVsidsPicker;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.generator.*;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Solves generated instances of growing size, to draw the scaling curve of the solver on each family: random 3-SAT at
+ * the threshold, planted 3-SAT past it, pigeonhole, unsatisfiable parity chains and random 3-colouring.
+ * <p>
+ * Every size is solved for a few seeds, within a time limit, and the median time is reported, with the outcome of each
+ * seed: S, U, or ? if the time ran out. The instances only depend on their seeds, so runs before and after a change
+ * are comparable.
+ * <p>
+ * Usage: SolverScalingBenchmark [family...] [--seeds n] [--time-limit ms]
+ *
+ * @author kentnek
+ */
+
+public class SolverScalingBenchmark {
+
+    private static final String[] FAMILIES = {"ksat", "planted", "php", "parity", "colouring"};
+
+    public static void main(String[] args) {
+        int seedCount = 3;
+        long timeLimitMillis = 60_000;
+        StringBuilder families = new StringBuilder();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seeds":
+                    seedCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--time-limit":
+                    timeLimitMillis = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    families.append(args[i]).append(' ');
+            }
+        }
+
+        for (String family : families.length() > 0 ? families.toString().trim().split(" ") : FAMILIES) {
+            Logger.log("\nFamily:", family);
+            Logger.log(String.format(
+                    "%8s %10s %10s %12s %12s  %s", "size", "variables", "clauses", "median (ms)", "conflicts", "results"
+            ));
+
+            for (int size : getSizes(family)) {
+                long[] times = new long[seedCount];
+                long conflicts = 0;
+                StringBuilder results = new StringBuilder();
+                CnfGenerator generator = null;
+
+                for (int seed = 0; seed < seedCount; seed++) {
+                    generator = getGenerator(family, seed).apply(size);
+
+                    SolveResult result = new CdclSolver()
+                            .with(new HybridVsidsPicker(0.1f))
+                            .with(new TwoWatchedLiteralPropagator())
+                            .with(new ClauseLearningWithUip())
+                            .with(new Budget().withTimeLimit(timeLimitMillis))
+                            .solveWithBudget(generator.toFormula());
+
+                    times[seed] = result.elapsedTimeMillis;
+                    conflicts += result.conflicts;
+                    SolveResult.Status status = result.getStatus();
+                    results.append(status == SolveResult.Status.UNKNOWN ? '?' : status.name().charAt(0));
+                }
+
+                Arrays.sort(times);
+                Logger.log(String.format(
+                        "%8d %10d %10d %12d %12d  %s", size, generator.getVariableCount(), generator.getClauseCount(),
+                        times[seedCount / 2], conflicts / seedCount, results
+                ));
+            }
+        }
+    }
+
+    private static int[] getSizes(String family) {
+        switch (family) {
+            case "ksat":
+                return new int[]{50, 100, 150, 200, 250};
+            case "planted":
+                return new int[]{1_000, 10_000, 100_000, 1_000_000};
+            case "php":
+                return new int[]{5, 6, 7, 8, 9};
+            case "parity":
+                return new int[]{8, 12, 16, 20, 24};
+            case "colouring":
+                return new int[]{50, 100, 150, 200, 250};
+            default:
+                throw new IllegalArgumentException("Unknown family: " + family);
+        }
+    }
+
+    private static IntFunction<CnfGenerator> getGenerator(String family, long seed) {
+        switch (family) {
+            case "ksat":
+                return n -> RandomKSatGenerator.atRatio(n, 3, 4.26, seed);
+            case "planted":
+                return n -> PlantedKSatGenerator.atRatio(n, 3, 5.0, seed);
+            case "php":
+                return PigeonholeGenerator::new;
+            case "parity":
+                return n -> new ParityGenerator(n, false, seed);
+            case "colouring":
+                return n -> new ColouringGenerator(n, Math.round(2.3 * n), 3, seed);
+            default:
+                throw new IllegalArgumentException("Unknown family: " + family);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.kentnek.cdcl.benchmark;
+
+import com.kentnek.cdcl.FormulaHelper;
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.CdclSolver;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.HybridVsidsPicker;
+import com.kentnek.cdcl.algo.preprocessor.XorDetection;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Formula;
+
+import java.nio.file.Paths;
+
+/**
+ * Compares the plain clausal search against the search with {@link XorDetection}, where the detected XORs are
+ * propagated by Gauss-Jordan elimination.
+ *
+ * @author kentnek
+ */
+
+public class XorBenchmark {
+
+    // relative to "/inputs"
+    private static final String[] INPUT_FILE_PATHS = {
+            "others/par16.cnf"
+    };
+
+    private static final int REPETITIONS = 3;
+
+    public static void main(String[] args) {
+        String[] paths = args.length > 0 ? args : INPUT_FILE_PATHS;
+
+        for (String path : paths) {
+            String fullPath = args.length > 0 ? path : Paths.get("inputs", path).toString();
+            Logger.log("\nFile:", fullPath);
+            Logger.log(String.format("%10s %12s %8s  %s", "mode", "time (ms)", "xors", "result"));
+
+            for (boolean detect : new boolean[]{false, true}) {
+                long bestTime = Long.MAX_VALUE;
+                String result = "";
+                Formula formula = null;
+
+                // takes the best of a few runs, to smooth out JIT warm-up
+                for (int i = 0; i < REPETITIONS; i++) {
+                    formula = FormulaHelper.parseFromFile(fullPath);
+                    if (formula == null) return;
+
+                    CdclSolver solver = new CdclSolver()
+                            .with(new HybridVsidsPicker(0.1f))
+                            .with(new TwoWatchedLiteralPropagator())
+                            .with(new ClauseLearningWithUip());
+
+                    if (detect) solver.with(new XorDetection());
+
+                    long startTime = System.currentTimeMillis();
+                    Assignment assignment = solver.solve(formula);
+                    bestTime = Math.min(bestTime, System.currentTimeMillis() - startTime);
+                    result = assignment != null ? "SAT" : "UNSAT";
+                }
+
+                Logger.log(String.format(
+                        "%10s %12d %8d  %s", detect ? "xor" : "clauses", bestTime,
+                        formula.getXorConstraints().size(), result
+                ));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.kentnek.cdcl.generator;
+
+/**
+ * A SplitMix64 random stream that is restarted for every clause, or any other unit of an instance, from the seed of the
+ * instance and the index of the unit.
+ * <p>
+ * Each unit is thus a pure function of the seed and its index: instances can be generated in any order, by any number
+ * of threads, and still come out the same. Restarting allocates nothing.
+ *
+ * @author kentnek
+ */
+
+public final class ClauseRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private long state;
+
+    /**
+     * Restarts the stream of the given unit.
+     */
+    public ClauseRandom reset(long seed, long index) {
+        state = mix(seed + index * GOLDEN_GAMMA);
+        return this;
+    }
+
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix(state);
+    }
+
+    /**
+     * @return a uniform int in [0, bound), by Lemire's multiply-shift, without the tiny rejection step.
+     */
+    public int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    /**
+     * @return a uniform long in [0, bound).
+     */
+    public long nextLong(long bound) {
+        return (nextLong() >>> 1) % bound;
+    }
+
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+
+    /**
+     * @return a random bit that depends only on the seed and the key, e.g. the planted value of a variable.
+     */
+    static boolean bit(long seed, long key) {
+        return mix(seed ^ mix(key + GOLDEN_GAMMA)) < 0;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,115 @@
+package com.kentnek.cdcl.generator;
+
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Literal;
+
+/**
+ * A family of CNF instances, whose clauses can be generated one by one, in any order, from their index.
+ * <p>
+ * Random choices are drawn from a {@link ClauseRandom} restarted from the seed and the index of the clause, or of
+ * whatever unit the clause belongs to, so an instance depends only on its parameters and seed. This is what lets
+ * {@link CnfWriter} generate blocks of clauses on several threads.
+ *
+ * @author kentnek
+ */
+
+public abstract class CnfGenerator {
+
+    protected final long seed;
+
+    protected CnfGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return a short description of the family and its parameters, e.g. for file names and comments.
+     */
+    public abstract String getName();
+
+    public abstract int getVariableCount();
+
+    public abstract long getClauseCount();
+
+    /**
+     * @return an upper bound on the length of the clauses, to size buffers.
+     */
+    public abstract int getMaxClauseLength();
+
+    /**
+     * Writes the literals of a clause.
+     *
+     * @param index   the clause index, in [0, {@link #getClauseCount()}).
+     * @param random  a stream to restart as needed, see {@link ClauseRandom#reset(long, long)}.
+     * @param literals an array of at least {@link #getMaxClauseLength()} literals.
+     * @return the length of the clause.
+     */
+    public abstract int getClause(long index, ClauseRandom random, int[] literals);
+
+    /**
+     * Builds the whole instance in memory, for instances small enough to be solved.
+     */
+    public Formula toFormula() {
+        int variableCount = getVariableCount();
+        Formula formula = new Formula(variableCount);
+        Literal[] literalTable = new Literal[2 * variableCount + 1];
+
+        ClauseRandom random = new ClauseRandom();
+        int[] literals = new int[getMaxClauseLength()];
+
+        for (long index = 0; index < getClauseCount(); index++) {
+            int length = getClause(index, random, literals);
+            Clause clause = new Clause(variableCount);
+
+            for (int i = 0; i < length; i++) {
+                int position = literals[i] + variableCount;
+                if (literalTable[position] == null) literalTable[position] = new Literal(literals[i]);
+                clause.add(literalTable[position]);
+            }
+
+            formula.add(clause);
+        }
+
+        return formula;
+    }
+
+    //region Pairs
+
+    // Pairs i < j are numbered j(j-1)/2 + i, so the pairs of {0, ..., n-1} are numbered from 0 to n(n-1)/2 - 1
+
+    protected static long pairCount(long n) {
+        return n * (n - 1) / 2;
+    }
+
+    /**
+     * @return the larger element j of the pair numbered q.
+     */
+    protected static int pairHigh(long q) {
+        int j = (int) ((1 + Math.sqrt(1 + 8.0 * q)) / 2);
+
+        // fixes the rounding of the square root
+        while (pairCount(j) > q) j--;
+        while (pairCount(j + 1) <= q) j++;
+        return j;
+    }
+
+    /**
+     * @return the smaller element i of the pair numbered q, whose larger element is j.
+     */
+    protected static int pairLow(long q, int j) {
+        return (int) (q - pairCount(j));
+    }
+
+    //endregion
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: %d variables, %d clauses, seed %d", getName(), getVariableCount(), getClauseCount(), seed
+        );
+    }
+}
@@ -0,0 +1,299 @@
+package com.kentnek.cdcl.generator;
+
+import com.kentnek.cdcl.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes the instances of a {@link CnfGenerator} in DIMACS format, fast enough for instances of 10^7 clauses and more.
+ * <p>
+ * Clauses are generated and formatted in blocks, on several threads, each block into its own direct buffer of about
+ * 4 MB, which goes to the file channel without any copy. Blocks are written in order, as soon as they are ready, and
+ * their buffers are then reused, so at most two blocks per thread are in memory at any time. Since the clauses only
+ * depend on the seed, the file is the same for any thread count.
+ * <p>
+ * Usage: CnfWriter family parameters... [--seed n] [--threads n] [--out path], where the family is one of
+ * <p>
+ * - ksat variables k ratio
+ * <p>
+ * - planted variables k ratio
+ * <p>
+ * - php holes
+ * <p>
+ * - parity variables sat|unsat
+ * <p>
+ * - colouring vertices edges colours
+ *
+ * @author kentnek
+ */
+
+public class CnfWriter {
+
+    private static final int BUFFER_SIZE = 1 << 22;
+
+    // "-2147483648 " is the longest literal
+    private static final int MAX_LITERAL_LENGTH = 12;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    private long byteCount;
+    private long elapsedNanos;
+
+    /**
+     * Sets the number of threads generating clauses. Defaults to the number of processors.
+     */
+    public CnfWriter withThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        return this;
+    }
+
+    public void write(CnfGenerator generator, Path path) throws IOException {
+        long startTime = System.nanoTime();
+
+        long clauseCount = generator.getClauseCount();
+        int maxClauseSize = (generator.getMaxClauseLength() + 1) * MAX_LITERAL_LENGTH;
+        long blockLength = Math.max(1, BUFFER_SIZE / maxClauseSize);
+        long blockCount = (clauseCount + blockLength - 1) / blockLength;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+        Deque<Future<ByteBuffer>> pendingBlocks = new ArrayDeque<>();
+
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            byteCount = writeFully(channel, ByteBuffer.wrap(header(generator).getBytes(StandardCharsets.US_ASCII)));
+
+            for (long block = 0; block < blockCount || !pendingBlocks.isEmpty(); ) {
+                if (block < blockCount && pendingBlocks.size() < 2 * threadCount) {
+                    ByteBuffer buffer = freeBuffers.isEmpty()
+                            ? ByteBuffer.allocateDirect((int) (blockLength * maxClauseSize))
+                            : freeBuffers.pop();
+
+                    long from = block * blockLength, to = Math.min(from + blockLength, clauseCount);
+                    pendingBlocks.add(executor.submit(() -> format(generator, from, to, buffer)));
+                    block++;
+                    continue;
+                }
+
+                ByteBuffer buffer = getBlock(pendingBlocks.poll());
+                byteCount += writeFully(channel, buffer);
+                freeBuffers.push(buffer);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        elapsedNanos = System.nanoTime() - startTime;
+    }
+
+    private static String header(CnfGenerator generator) {
+        return String.format(
+                "c %s\nc Generated by CnfWriter with seed %d.\np cnf %d %d\n",
+                generator.getName(), generator.getSeed(), generator.getVariableCount(), generator.getClauseCount()
+        );
+    }
+
+    //region Formatting
+
+    /**
+     * Generates the clauses [from, to) into the buffer, flipped for writing.
+     */
+    private static ByteBuffer format(CnfGenerator generator, long from, long to, ByteBuffer buffer) {
+        ClauseRandom random = new ClauseRandom();
+        int[] literals = new int[generator.getMaxClauseLength()];
+
+        // clauses are formatted into an array first, since a bulk put is much faster than putting byte by byte
+        byte[] line = new byte[(generator.getMaxClauseLength() + 1) * MAX_LITERAL_LENGTH];
+
+        buffer.clear();
+
+        for (long index = from; index < to; index++) {
+            int length = generator.getClause(index, random, literals);
+            int position = 0;
+
+            for (int i = 0; i < length; i++) {
+                position = formatInt(literals[i], line, position);
+                line[position++] = ' ';
+            }
+
+            line[position++] = '0';
+            line[position++] = '\n';
+            buffer.put(line, 0, position);
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @return the position after the number.
+     */
+    private static int formatInt(int value, byte[] bytes, int position) {
+        if (value < 0) {
+            bytes[position++] = '-';
+            value = -value;
+        }
+
+        int end = position + digitCount(value);
+        for (int i = end - 1; i >= position; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+
+        return end;
+    }
+
+    private static int digitCount(int value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    //endregion
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long count = buffer.remaining();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        return count;
+    }
+
+    private static ByteBuffer getBlock(Future<ByteBuffer> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while generating.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    //region Statistics
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * @return the write speed, in MB/s.
+     */
+    public double getThroughput() {
+        return byteCount / 1e6 / Math.max(elapsedNanos / 1e9, 1e-9);
+    }
+
+    //endregion
+
+    /**
+     * @return the generator described by the first arguments.
+     * @throws IllegalArgumentException if the family is unknown, or a parameter is missing or invalid.
+     */
+    private static CnfGenerator parseGenerator(String[] args, long seed) {
+        String family = args[0];
+
+        try {
+            switch (family) {
+                case "ksat":
+                    return RandomKSatGenerator.atRatio(
+                            Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                            Double.parseDouble(args[3]), seed
+                    );
+
+                case "planted":
+                    return PlantedKSatGenerator.atRatio(
+                            Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                            Double.parseDouble(args[3]), seed
+                    );
+
+                case "php":
+                    return new PigeonholeGenerator(Integer.parseInt(args[1]));
+
+                case "parity":
+                    return new ParityGenerator(Integer.parseInt(args[1]), args[2].equals("sat"), seed);
+
+                case "colouring":
+                    return new ColouringGenerator(
+                            Integer.parseInt(args[1]), Long.parseLong(args[2]),
+                            Integer.parseInt(args[3]), seed
+                    );
+
+                default:
+                    throw new IllegalArgumentException("Unknown family: " + family);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Missing parameters for " + family + ".");
+        }
+    }
+
+    /**
+     * @return the number of parameters of a family, including its name.
+     */
+    private static int getArgumentCount(String family) {
+        switch (family) {
+            case "php":
+                return 2;
+            case "parity":
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            Logger.log("Usage: CnfWriter family parameters... [--seed n] [--threads n] [--out path]");
+            return;
+        }
+
+        long seed = 1;
+        String output = null;
+        CnfWriter writer = new CnfWriter();
+
+        for (int i = getArgumentCount(args[0]); i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    writer.withThreadCount(Integer.parseInt(args[++i]));
+                    break;
+                case "--out":
+                    output = args[++i];
+                    break;
+                default:
+                    Logger.log("Unknown option:", args[i]);
+                    return;
+            }
+        }
+
+        CnfGenerator generator = parseGenerator(args, seed);
+        Path path = Paths.get(output != null ? output : String.format("%s_%d.cnf", generator.getName(), seed));
+
+        writer.write(generator, path);
+        Logger.log(String.format(
+                "%s: %s, %.1f MB in %d ms (%.1f MB/s)",
+                path, generator, writer.getByteCount() / 1e6, writer.getElapsedMillis(), writer.getThroughput()
+        ));
+    }
+}
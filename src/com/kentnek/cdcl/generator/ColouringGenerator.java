@@ -0,0 +1,90 @@
+package com.kentnek.cdcl.generator;
+
+/**
+ * The k-colouring of a random graph with n vertices and m edges, whose endpoints are drawn uniformly; an edge may be
+ * drawn twice, which only repeats its clauses. Random 3-colouring is hardest around m = 2.3 n.
+ * <p>
+ * Variable v * k + c + 1 means vertex v has colour c. The first n clauses give every vertex a colour, the next ones
+ * forbid two colours for the same vertex, and the last k clauses of every edge forbid the same colour at both ends.
+ *
+ * @author kentnek
+ */
+
+public class ColouringGenerator extends CnfGenerator {
+
+    private final int vertexCount;
+    private final long edgeCount;
+    private final int colourCount;
+
+    public ColouringGenerator(int vertexCount, long edgeCount, int colourCount, long seed) {
+        super(seed);
+
+        if (vertexCount < 2 || colourCount < 1) {
+            throw new IllegalArgumentException("There must be at least two vertices and one colour.");
+        }
+
+        this.vertexCount = vertexCount;
+        this.edgeCount = edgeCount;
+        this.colourCount = colourCount;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("colouring_V%d_E%d_C%d", vertexCount, edgeCount, colourCount);
+    }
+
+    @Override
+    public int getVariableCount() {
+        return vertexCount * colourCount;
+    }
+
+    @Override
+    public long getClauseCount() {
+        return vertexCount + vertexCount * pairCount(colourCount) + edgeCount * colourCount;
+    }
+
+    @Override
+    public int getMaxClauseLength() {
+        return Math.max(colourCount, 2);
+    }
+
+    @Override
+    public int getClause(long index, ClauseRandom random, int[] literals) {
+        if (index < vertexCount) {
+            int vertex = (int) index;
+            for (int colour = 0; colour < colourCount; colour++) literals[colour] = variable(vertex, colour);
+            return colourCount;
+        }
+
+        index -= vertexCount;
+        long pairs = pairCount(colourCount);
+
+        if (index < vertexCount * pairs) {
+            int vertex = (int) (index / pairs);
+            long pair = index % pairs;
+            int second = pairHigh(pair);
+
+            literals[0] = -variable(vertex, pairLow(pair, second));
+            literals[1] = -variable(vertex, second);
+            return 2;
+        }
+
+        index -= vertexCount * pairs;
+        long edge = index / colourCount;
+        int colour = (int) (index % colourCount);
+
+        // the k clauses of an edge restart the same stream, so they agree on its endpoints
+        random.reset(seed, edge);
+        int first = random.nextInt(vertexCount);
+        int second = random.nextInt(vertexCount - 1);
+        if (second >= first) second++;
+
+        literals[0] = -variable(first, colour);
+        literals[1] = -variable(second, colour);
+        return 2;
+    }
+
+    private int variable(int vertex, int colour) {
+        return vertex * colourCount + colour + 1;
+    }
+}
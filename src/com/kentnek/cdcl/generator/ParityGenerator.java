@@ -0,0 +1,106 @@
+package com.kentnek.cdcl.generator;
+
+/**
+ * Two parity chains over the same n variables: x1 ⊕ ... ⊕ xn is constrained twice, once in order and once in a random
+ * order, to the same parity if the instance is satisfiable, or to opposite parities if it is not.
+ * <p>
+ * Each chain is encoded with n - 1 auxiliary variables s2, ..., sn, where si is the parity of the first i variables,
+ * by the XOR s(i-1) ⊕ xi ⊕ si = 0 as four ternary clauses, plus a unit clause on sn. Unsatisfiable instances are hard
+ * for plain resolution, so they stress the XOR detection and Gauss-Jordan propagation, see
+ * {@link com.kentnek.cdcl.algo.preprocessor.XorDetection}.
+ * <p>
+ * Variables 1 to n are the x's, followed by the auxiliary variables of the first and the second chain.
+ *
+ * @author kentnek
+ */
+
+public class ParityGenerator extends CnfGenerator {
+
+    // The sign patterns of the clauses of a ⊕ b ⊕ c = 0: those with an odd number of negations, as bit masks
+    private static final int[] NEGATIONS = {1, 2, 4, 7};
+
+    private final int n;
+    private final boolean isSatisfiable;
+
+    // The order of the x's in the second chain
+    private final int[] permutation;
+
+    public ParityGenerator(int n, boolean isSatisfiable, long seed) {
+        super(seed);
+
+        if (n < 2) throw new IllegalArgumentException("A parity chain needs at least 2 variables.");
+
+        this.n = n;
+        this.isSatisfiable = isSatisfiable;
+
+        permutation = new int[n];
+        for (int i = 0; i < n; i++) permutation[i] = i + 1;
+
+        ClauseRandom random = new ClauseRandom().reset(seed, -1);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = swap;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return String.format("parity_%d_%s", n, isSatisfiable ? "sat" : "unsat");
+    }
+
+    @Override
+    public int getVariableCount() {
+        return n + 2 * (n - 1);
+    }
+
+    @Override
+    public long getClauseCount() {
+        return 2L * chainLength();
+    }
+
+    @Override
+    public int getMaxClauseLength() {
+        return 3;
+    }
+
+    @Override
+    public int getClause(long index, ClauseRandom random, int[] literals) {
+        int chain = (int) (index / chainLength());
+        int offset = (int) (index % chainLength());
+
+        if (offset == chainLength() - 1) {
+            boolean parity = ClauseRandom.bit(seed, 0) ^ (chain == 1 && !isSatisfiable);
+            int last = sum(chain, n - 1);
+            literals[0] = parity ? last : -last;
+            return 1;
+        }
+
+        int step = offset / 4 + 1;
+        int negations = NEGATIONS[offset % 4];
+        literals[0] = step == 1 ? x(chain, 0) : sum(chain, step - 1);
+        literals[1] = x(chain, step);
+        literals[2] = sum(chain, step);
+
+        for (int i = 0; i < 3; i++) {
+            if ((negations >> i & 1) != 0) literals[i] = -literals[i];
+        }
+
+        return 3;
+    }
+
+    private int chainLength() {
+        return 4 * (n - 1) + 1;
+    }
+
+    // The i-th x of a chain, from 0
+    private int x(int chain, int i) {
+        return chain == 0 ? i + 1 : permutation[i];
+    }
+
+    // The parity of the x's 0 to i of a chain, for i >= 1
+    private int sum(int chain, int i) {
+        return n + chain * (n - 1) + i;
+    }
+}
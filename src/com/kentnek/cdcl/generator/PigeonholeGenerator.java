@@ -0,0 +1,68 @@
+package com.kentnek.cdcl.generator;
+
+/**
+ * The pigeonhole principle PHP(n+1, n): n+1 pigeons in n holes, at most one pigeon per hole. It is unsatisfiable, and
+ * resolution proofs of it are exponential in n, so it stresses conflict analysis and clause database management.
+ * <p>
+ * Variable p * n + h + 1 means pigeon p is in hole h. The first n+1 clauses put every pigeon in some hole, and the
+ * others keep every pair of pigeons out of the same hole, hole by hole.
+ *
+ * @author kentnek
+ */
+
+public class PigeonholeGenerator extends CnfGenerator {
+
+    private final int holeCount;
+    private final int pigeonCount;
+
+    public PigeonholeGenerator(int holeCount) {
+        super(0);
+
+        if (holeCount < 1) throw new IllegalArgumentException("There must be at least one hole.");
+
+        this.holeCount = holeCount;
+        this.pigeonCount = holeCount + 1;
+    }
+
+    @Override
+    public String getName() {
+        return "php_" + pigeonCount + "_" + holeCount;
+    }
+
+    @Override
+    public int getVariableCount() {
+        return pigeonCount * holeCount;
+    }
+
+    @Override
+    public long getClauseCount() {
+        return pigeonCount + holeCount * pairCount(pigeonCount);
+    }
+
+    @Override
+    public int getMaxClauseLength() {
+        return Math.max(holeCount, 2);
+    }
+
+    @Override
+    public int getClause(long index, ClauseRandom random, int[] literals) {
+        if (index < pigeonCount) {
+            int pigeon = (int) index;
+            for (int hole = 0; hole < holeCount; hole++) literals[hole] = variable(pigeon, hole);
+            return holeCount;
+        }
+
+        long pairs = pairCount(pigeonCount);
+        int hole = (int) ((index - pigeonCount) / pairs);
+        long pair = (index - pigeonCount) % pairs;
+
+        int second = pairHigh(pair);
+        literals[0] = -variable(pairLow(pair, second), hole);
+        literals[1] = -variable(second, hole);
+        return 2;
+    }
+
+    private int variable(int pigeon, int hole) {
+        return pigeon * holeCount + hole + 1;
+    }
+}
@@ -0,0 +1,48 @@
+package com.kentnek.cdcl.generator;
+
+/**
+ * Random k-SAT with a planted solution, so instances past the threshold are still satisfiable.
+ * <p>
+ * Every variable gets a hidden random value, see {@link #getPlantedValue(int)}. Clauses are drawn as in
+ * {@link RandomKSatGenerator}, and a clause that the hidden assignment falsifies gets one of its literals, chosen at
+ * random, flipped. This slightly biases the literals towards the planted solution, which is what makes large planted
+ * instances easier than uniform ones at the same ratio.
+ *
+ * @author kentnek
+ */
+
+public class PlantedKSatGenerator extends RandomKSatGenerator {
+
+    public PlantedKSatGenerator(int variableCount, int k, long clauseCount, long seed) {
+        super(variableCount, k, clauseCount, seed);
+    }
+
+    public static PlantedKSatGenerator atRatio(int variableCount, int k, double ratio, long seed) {
+        return new PlantedKSatGenerator(variableCount, k, Math.round(variableCount * ratio), seed);
+    }
+
+    /**
+     * @return the value of the variable in the planted solution.
+     */
+    public boolean getPlantedValue(int variable) {
+        return ClauseRandom.bit(seed, variable);
+    }
+
+    @Override
+    public String getName() {
+        return "planted_" + super.getName();
+    }
+
+    @Override
+    public int getClause(long index, ClauseRandom random, int[] literals) {
+        int length = super.getClause(index, random, literals);
+
+        for (int i = 0; i < length; i++) {
+            if (literals[i] > 0 == getPlantedValue(Math.abs(literals[i]))) return length;
+        }
+
+        int flipped = random.nextInt(length);
+        literals[flipped] = -literals[flipped];
+        return length;
+    }
+}
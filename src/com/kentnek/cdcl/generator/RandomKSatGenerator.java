@@ -0,0 +1,76 @@
+package com.kentnek.cdcl.generator;
+
+/**
+ * Uniform random k-SAT: every clause has k distinct variables, drawn uniformly, with random signs.
+ * <p>
+ * For 3-SAT, instances are hardest around the satisfiability threshold, at a clause/variable ratio of about 4.26,
+ * see {@link #atRatio(int, int, double, long)}.
+ *
+ * @author kentnek
+ */
+
+public class RandomKSatGenerator extends CnfGenerator {
+
+    protected final int variableCount;
+    protected final int k;
+    protected final long clauseCount;
+
+    public RandomKSatGenerator(int variableCount, int k, long clauseCount, long seed) {
+        super(seed);
+
+        if (k < 1 || k > variableCount) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot draw %d distinct variables out of %d.", k, variableCount
+            ));
+        }
+
+        this.variableCount = variableCount;
+        this.k = k;
+        this.clauseCount = clauseCount;
+    }
+
+    public static RandomKSatGenerator atRatio(int variableCount, int k, double ratio, long seed) {
+        return new RandomKSatGenerator(variableCount, k, Math.round(variableCount * ratio), seed);
+    }
+
+    @Override
+    public String getName() {
+        return String.format("N%d_K%d_L%d", variableCount, k, clauseCount);
+    }
+
+    @Override
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    @Override
+    public long getClauseCount() {
+        return clauseCount;
+    }
+
+    @Override
+    public int getMaxClauseLength() {
+        return k;
+    }
+
+    @Override
+    public int getClause(long index, ClauseRandom random, int[] literals) {
+        random.reset(seed, index);
+
+        for (int i = 0; i < k; i++) {
+            int variable;
+
+            // k is small, so a linear scan for repeats beats any set
+            boolean isRepeated;
+            do {
+                variable = random.nextInt(variableCount) + 1;
+                isRepeated = false;
+                for (int j = 0; j < i && !isRepeated; j++) isRepeated = Math.abs(literals[j]) == variable;
+            } while (isRepeated);
+
+            literals[i] = random.nextBoolean() ? -variable : variable;
+        }
+
+        return k;
+    }
+}
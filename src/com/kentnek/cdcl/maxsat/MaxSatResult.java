@@ -0,0 +1,71 @@
+package com.kentnek.cdcl.maxsat;
+
+import com.kentnek.cdcl.model.Assignment;
+
+/**
+ * The outcome of {@link MaxSatSolver}: the best model found with its cost, and the proven lower bound.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+public class MaxSatResult {
+
+    public enum Status {
+        /**
+         * The model has the minimum cost.
+         */
+        OPTIMUM,
+
+        /**
+         * The budget ran out after a model was found, so its cost is only an upper bound.
+         */
+        SATISFIABLE,
+
+        /**
+         * The hard clauses are unsatisfiable.
+         */
+        UNSATISFIABLE,
+
+        /**
+         * The budget ran out before any model was found.
+         */
+        UNKNOWN
+    }
+
+    private final Status status;
+    private final Assignment model;
+
+    public final long cost;
+    public final long lowerBound;
+    public final int coreCount;
+    public final int solveCount;
+
+    MaxSatResult(Status status, Assignment model, long cost, long lowerBound, int coreCount, int solveCount) {
+        this.status = status;
+        this.model = model;
+        this.cost = cost;
+        this.lowerBound = lowerBound;
+        this.coreCount = coreCount;
+        this.solveCount = solveCount;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the best model over the variables of the instance, or null if none was found.
+     */
+    public Assignment getModel() {
+        return model;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: cost %s, lower bound %d, %d cores, %d solves",
+                status, model != null ? String.valueOf(cost) : "-", lowerBound, coreCount, solveCount
+        );
+    }
+}
@@ -0,0 +1,343 @@
+package com.kentnek.cdcl.maxsat;
+
+import com.kentnek.cdcl.FormulaHelper;
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.Budget;
+import com.kentnek.cdcl.algo.CdclSolver;
+import com.kentnek.cdcl.algo.SolveResult;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.VsidsPicker;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Logic;
+
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+import static com.kentnek.cdcl.model.Assignment.NIL;
+
+/**
+ * A core-guided MaxSAT solver, using the OLL algorithm as in RC2, on an incremental {@link CdclSolver} session.
+ * <p>
+ * Each soft clause C gets an assumption literal a, with the hard clause (C ∨ ¬a), or a = C if C is a unit. The solver
+ * is called under the assumptions with a positive remaining weight:
+ * <p>
+ * - UNSAT: the failed assumptions form a core, i.e. at least one of them must be false. The lower bound increases by
+ * the minimum weight w of the core, which is subtracted from every assumption of the core. A totalizer then counts the
+ * false assumptions of the core, and ¬o_2 ("at most one is false") becomes a new assumption of weight w. When ¬o_k
+ * itself is in a later core, ¬o_{k+1} takes over.
+ * <p>
+ * - SAT: the model gives an upper bound. Once all the assumptions are satisfied, the model is optimal.
+ * <p>
+ * With stratification, only the assumptions of the highest weights are used at first, and the lower weights are
+ * added each time the current ones are satisfiable, so that good models are found early.
+ * <p>
+ * Since the variable count of a {@link Formula} is fixed, the formula is created with a pool of spare variables for
+ * the assumption literals and the totalizers. When the pool runs out, the session is rebuilt from all the clauses
+ * added so far, with a pool twice as big.
+ *
+ * @author kentnek
+ */
+
+public class MaxSatSolver {
+
+    private Supplier<CdclSolver> config = () -> new CdclSolver()
+            .with(new VsidsPicker(0))
+            .with(new TwoWatchedLiteralPropagator())
+            .with(new ClauseLearningWithUip());
+
+    private boolean isStratified = true;
+    private boolean shouldShrinkCores = false;
+    private long timeLimitMillis = Long.MAX_VALUE;
+    private LongConsumer upperBoundListener = cost -> {
+    };
+
+    // The assumption literal of a totalizer output ¬o_k, with its totalizer and k
+    private class Output {
+        final Totalizer totalizer;
+        final int k;
+
+        Output(Totalizer totalizer, int k) {
+            this.totalizer = totalizer;
+            this.k = k;
+        }
+    }
+
+    // State of the current solve
+    private WeightedFormula instance;
+    private CdclSolver solver;
+    private final List<int[]> clauses = new ArrayList<>();
+    private int nextVariable, variableLimit;
+    private boolean isStale;
+
+    private final Map<Integer, Long> weights = new LinkedHashMap<>();
+    private final Map<Integer, Output> outputs = new HashMap<>();
+
+    private long lowerBound, upperBound;
+    private Assignment bestModel;
+    private int coreCount, solveCount;
+
+    /**
+     * Sets the configuration of the SAT solver. A new solver is created whenever the variable pool grows.
+     */
+    public MaxSatSolver with(Supplier<CdclSolver> config) {
+        this.config = config;
+        return this;
+    }
+
+    public MaxSatSolver withStratification(boolean isStratified) {
+        this.isStratified = isStratified;
+        return this;
+    }
+
+    /**
+     * Shrinks every core before relaxing it, see {@link CdclSolver#shrinkFailedAssumptions()}. Smaller cores make
+     * smaller totalizers, at the cost of more solves.
+     */
+    public MaxSatSolver withCoreShrinking(boolean shouldShrinkCores) {
+        this.shouldShrinkCores = shouldShrinkCores;
+        return this;
+    }
+
+    public MaxSatSolver withTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+        return this;
+    }
+
+    /**
+     * Called with the cost of every model that improves on the previous ones.
+     */
+    public MaxSatSolver withUpperBoundListener(LongConsumer upperBoundListener) {
+        this.upperBoundListener = upperBoundListener;
+        return this;
+    }
+
+    public MaxSatResult solve(WeightedFormula instance) {
+        long startTime = System.currentTimeMillis();
+        init(instance);
+
+        long level = isStratified ? nextLevel(Long.MAX_VALUE) : 1;
+
+        while (true) {
+            if (isStale) rebuild();
+
+            long remainingTime = timeLimitMillis == Long.MAX_VALUE
+                    ? Long.MAX_VALUE : timeLimitMillis - (System.currentTimeMillis() - startTime);
+            solver.with(new Budget().withTimeLimit(Math.max(0, remainingTime)));
+
+            final long currentLevel = level;
+            int[] assumptions = weights.entrySet().stream()
+                    .filter(e -> e.getValue() >= currentLevel)
+                    .mapToInt(Map.Entry::getKey)
+                    .toArray();
+
+            SolveResult result = solver.solve(assumptions);
+            solveCount++;
+
+            if (result.getStatus() == SolveResult.Status.UNKNOWN) {
+                return result(bestModel != null ? MaxSatResult.Status.SATISFIABLE : MaxSatResult.Status.UNKNOWN);
+            }
+
+            if (result.getStatus() == SolveResult.Status.SAT) {
+                updateUpperBound(result.getAssignment());
+                if (upperBound <= lowerBound) return result(MaxSatResult.Status.OPTIMUM);
+
+                // every assumption holds, so the model is optimal
+                long next = nextLevel(level);
+                if (next == 0) return result(MaxSatResult.Status.OPTIMUM);
+
+                level = next;
+                continue;
+            }
+
+            int[] core = shouldShrinkCores ? solver.shrinkFailedAssumptions() : solver.getFailedAssumptions();
+            if (core.length == 0) return result(MaxSatResult.Status.UNSATISFIABLE);
+
+            relax(core);
+        }
+    }
+
+    private void init(WeightedFormula instance) {
+        this.instance = instance;
+        clauses.clear();
+        weights.clear();
+        outputs.clear();
+        lowerBound = 0;
+        upperBound = Long.MAX_VALUE;
+        bestModel = null;
+        coreCount = solveCount = 0;
+
+        List<int[]> softClauses = instance.getSoftClauses();
+        nextVariable = instance.getVariableCount() + 1;
+        variableLimit = instance.getVariableCount() + 2 * softClauses.size() + 64;
+        isStale = true;
+
+        instance.getHardClauses().forEach(this::addClause);
+
+        for (int i = 0; i < softClauses.size(); i++) {
+            int[] softClause = softClauses.get(i);
+            long weight = instance.getWeight(i);
+
+            if (softClause.length == 0) {
+                // always falsified
+                lowerBound += weight;
+                continue;
+            }
+
+            int assumption;
+            if (softClause.length == 1) {
+                assumption = softClause[0];
+            } else {
+                assumption = newVariable();
+                int[] relaxed = Arrays.copyOf(softClause, softClause.length + 1);
+                relaxed[softClause.length] = -assumption;
+                addClause(relaxed);
+            }
+
+            weights.merge(assumption, weight, Long::sum);
+        }
+    }
+
+    /**
+     * Relaxes a core: increases the lower bound, subtracts the minimum weight from the core, and adds the next
+     * totalizer outputs as assumptions.
+     */
+    private void relax(int[] core) {
+        coreCount++;
+        long minWeight = Arrays.stream(core).mapToLong(weights::get).min().orElse(0);
+        lowerBound += minWeight;
+        Logger.debug(String.format("Core of size %d, weight %d, lower bound %d.", core.length, minWeight, lowerBound));
+
+        for (int assumption : core) {
+            long weight = weights.get(assumption) - minWeight;
+            if (weight > 0) weights.put(assumption, weight);
+            else weights.remove(assumption);
+
+            // at least k inputs of this totalizer are false, but maybe not k + 1
+            Output output = outputs.get(assumption);
+            if (output != null && output.k < output.totalizer.getInputCount()) {
+                addOutput(output.totalizer, output.k + 1, minWeight);
+            }
+        }
+
+        if (core.length == 1) {
+            // the assumption is implied false, whatever the other assumptions
+            addClause(-core[0]);
+        } else {
+            // the inputs are true when the assumptions are false
+            int[] inputs = Arrays.stream(core).map(a -> -a).toArray();
+            addOutput(new Totalizer(inputs, this::newVariable, this::addClause), 2, minWeight);
+        }
+    }
+
+    private void addOutput(Totalizer totalizer, int k, long weight) {
+        int assumption = -totalizer.getOutput(k);
+        outputs.put(assumption, new Output(totalizer, k));
+        weights.merge(assumption, weight, Long::sum);
+    }
+
+    /**
+     * @return the highest weight below the given one, or 0 if there's none.
+     */
+    private long nextLevel(long level) {
+        if (!isStratified) return 0;
+        return weights.values().stream().filter(w -> w < level).max(Long::compare).orElse(0L);
+    }
+
+    private void updateUpperBound(Assignment assignment) {
+        long cost = instance.getCost(assignment);
+        if (cost >= upperBound) return;
+
+        upperBound = cost;
+        bestModel = new Assignment(instance.getVariableCount());
+        for (int v = 1; v <= instance.getVariableCount(); v++) {
+            bestModel.add(v, assignment.getLiteralValue(v) == Logic.TRUE, NIL);
+        }
+
+        upperBoundListener.accept(cost);
+    }
+
+    private MaxSatResult result(MaxSatResult.Status status) {
+        return new MaxSatResult(status, bestModel, upperBound, lowerBound, coreCount, solveCount);
+    }
+
+    //region Variable pool
+
+    private int newVariable() {
+        if (nextVariable > variableLimit) {
+            // the current session cannot hold the new variable, so it is rebuilt before the next solve
+            variableLimit = instance.getVariableCount() + 2 * (variableLimit - instance.getVariableCount());
+            isStale = true;
+        }
+
+        return nextVariable++;
+    }
+
+    private void addClause(int... clause) {
+        clauses.add(clause);
+        if (!isStale) solver.addClause(clause);
+    }
+
+    /**
+     * Starts a new session with all the clauses so far. The learned clauses are lost.
+     */
+    private void rebuild() {
+        Logger.debug(String.format("MaxSAT session with %d variables and %d clauses.", variableLimit, clauses.size()));
+
+        solver = config.get().load(new Formula(variableLimit));
+        clauses.forEach(solver::addClause);
+        isStale = false;
+    }
+
+    //endregion
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: MaxSatSolver file.wcnf [--time-limit ms] [--no-stratification] [--shrink-cores]");
+            System.exit(1);
+        }
+
+        MaxSatSolver maxSatSolver = new MaxSatSolver()
+                .withUpperBoundListener(cost -> System.out.println("o " + cost));
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--time-limit":
+                    maxSatSolver.withTimeLimit(Long.parseLong(args[++i]));
+                    break;
+                case "--no-stratification":
+                    maxSatSolver.withStratification(false);
+                    break;
+                case "--shrink-cores":
+                    maxSatSolver.withCoreShrinking(true);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        WeightedFormula instance = FormulaHelper.parseWcnfFromFile(args[0]);
+        if (instance == null) return;
+
+        MaxSatResult result = maxSatSolver.solve(instance);
+        System.out.println("c " + result);
+
+        switch (result.getStatus()) {
+            case OPTIMUM:
+                System.out.println("s OPTIMUM FOUND");
+                break;
+            case SATISFIABLE:
+                System.out.println("s SATISFIABLE");
+                break;
+            case UNSATISFIABLE:
+                System.out.println("s UNSATISFIABLE");
+                break;
+            default:
+                System.out.println("s UNKNOWN");
+        }
+
+        if (result.getModel() != null) System.out.println("v " + result.getModel().toMinisatString() + "0");
+    }
+}
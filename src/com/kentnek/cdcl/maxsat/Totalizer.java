@@ -0,0 +1,112 @@
+package com.kentnek.cdcl.maxsat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+/**
+ * An iterative totalizer: a cardinality encoding that counts the true inputs in unary, with outputs o_1, o_2, ... such
+ * that o_k is true when at least k inputs are true.
+ * <p>
+ * The inputs are the leaves of a balanced binary tree, and each node counts the inputs below it with the clauses
+ * (¬l_i ∨ ¬r_j ∨ o_{i+j}) over the outputs of its children. Only this direction is encoded, which is all that
+ * assuming ¬o_k (i.e. at most k - 1 inputs are true) needs.
+ * <p>
+ * Outputs are only created up to the largest k requested so far, and extended on demand, so a core-guided solver pays
+ * for the bounds it actually reaches.
+ *
+ * @author kentnek
+ */
+
+class Totalizer {
+
+    private class Node {
+        final Node left, right;
+        final int size;
+
+        // outputs.get(k - 1) is true if at least k inputs below this node are true
+        final List<Integer> outputs = new ArrayList<>();
+
+        Node(int input) {
+            this.left = this.right = null;
+            this.size = 1;
+            outputs.add(input);
+        }
+
+        Node(Node left, Node right) {
+            this.left = left;
+            this.right = right;
+            this.size = left.size + right.size;
+        }
+    }
+
+    private final Node root;
+    private final IntSupplier newVariable;
+    private final Consumer<int[]> clauseConsumer;
+
+    /**
+     * @param newVariable    allocates a fresh variable for an output.
+     * @param clauseConsumer receives the clauses of the encoding.
+     */
+    Totalizer(int[] inputs, IntSupplier newVariable, Consumer<int[]> clauseConsumer) {
+        this.newVariable = newVariable;
+        this.clauseConsumer = clauseConsumer;
+        this.root = build(inputs, 0, inputs.length);
+    }
+
+    private Node build(int[] inputs, int from, int to) {
+        if (to - from == 1) return new Node(inputs[from]);
+
+        int middle = (from + to) / 2;
+        return new Node(build(inputs, from, middle), build(inputs, middle, to));
+    }
+
+    int getInputCount() {
+        return root.size;
+    }
+
+    /**
+     * @return the output that is true if at least k inputs are true, for 1 <= k <= the number of inputs.
+     */
+    int getOutput(int k) {
+        assert (k >= 1 && k <= root.size);
+
+        extend(root, k);
+        return root.outputs.get(k - 1);
+    }
+
+    /**
+     * Creates the outputs of a node up to the given bound, and the clauses that define them.
+     */
+    private void extend(Node node, int bound) {
+        bound = Math.min(bound, node.size);
+        int oldBound = node.outputs.size();
+        if (oldBound >= bound) return;
+
+        extend(node.left, bound);
+        extend(node.right, bound);
+
+        for (int k = oldBound + 1; k <= bound; k++) node.outputs.add(newVariable.getAsInt());
+
+        for (int k = oldBound + 1; k <= bound; k++) {
+            int output = node.outputs.get(k - 1);
+
+            // i inputs of the left child and j = k - i inputs of the right child are true
+            for (int i = 0; i <= Math.min(k, node.left.size); i++) {
+                int j = k - i;
+                if (j > node.right.size) continue;
+
+                if (i == 0) {
+                    clauseConsumer.accept(new int[]{-node.right.outputs.get(j - 1), output});
+                } else if (j == 0) {
+                    clauseConsumer.accept(new int[]{-node.left.outputs.get(i - 1), output});
+                } else {
+                    clauseConsumer.accept(new int[]{
+                            -node.left.outputs.get(i - 1), -node.right.outputs.get(j - 1), output
+                    });
+                }
+            }
+        }
+    }
+}
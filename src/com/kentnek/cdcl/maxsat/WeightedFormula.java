@@ -0,0 +1,86 @@
+package com.kentnek.cdcl.maxsat;
+
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A weighted partial MaxSAT instance: hard clauses that must be satisfied, and soft clauses with a positive weight.
+ * The cost of an assignment is the total weight of the soft clauses it falsifies.
+ * <p>
+ * Clauses are kept as arrays of literals, since the formula given to the solver has more variables than the instance,
+ * see {@link MaxSatSolver}.
+ *
+ * @author kentnek
+ */
+
+public class WeightedFormula {
+    private int variableCount;
+
+    private final List<int[]> hardClauses = new ArrayList<>();
+    private final List<int[]> softClauses = new ArrayList<>();
+    private final List<Long> weights = new ArrayList<>();
+
+    public WeightedFormula(int variableCount) {
+        this.variableCount = variableCount;
+    }
+
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    public void addHard(int... literals) {
+        hardClauses.add(checkLiterals(literals));
+    }
+
+    public void addSoft(long weight, int... literals) {
+        if (weight <= 0) throw new IllegalArgumentException("The weight of a soft clause must be positive: " + weight);
+
+        softClauses.add(checkLiterals(literals));
+        weights.add(weight);
+    }
+
+    private int[] checkLiterals(int[] literals) {
+        for (int literal : literals) {
+            if (literal == 0) throw new IllegalArgumentException("Invalid literal: 0");
+            variableCount = Math.max(variableCount, Math.abs(literal));
+        }
+        return literals.clone();
+    }
+
+    public List<int[]> getHardClauses() {
+        return Collections.unmodifiableList(hardClauses);
+    }
+
+    public List<int[]> getSoftClauses() {
+        return Collections.unmodifiableList(softClauses);
+    }
+
+    public long getWeight(int softIndex) {
+        return weights.get(softIndex);
+    }
+
+    /**
+     * @return the cost of an assignment that satisfies the hard clauses.
+     */
+    public long getCost(Assignment assignment) {
+        long cost = 0;
+
+        for (int i = 0; i < softClauses.size(); i++) {
+            boolean isSatisfied = false;
+            for (int literal : softClauses.get(i)) {
+                if (assignment.getLiteralValue(literal) == Logic.TRUE) {
+                    isSatisfied = true;
+                    break;
+                }
+            }
+
+            if (!isSatisfied) cost += weights.get(i);
+        }
+
+        return cost;
+    }
+}
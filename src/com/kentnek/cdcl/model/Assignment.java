@@ -4,6 +4,7 @@ import com.kentnek.cdcl.Logger;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,7 +21,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 public class Assignment implements Iterable<Assignment.SingleAssignment> {
     public static final int NIL = -1;
-    private final int variableCount;
+    private int variableCount;
     private int assignmentOrder;
 
     /**
@@ -28,6 +29,13 @@ public class Assignment implements Iterable<Assignment.SingleAssignment> {
      */
     private final Map<Integer, SingleAssignment> map = new ConcurrentHashMap<>();
 
+    /**
+     * Assignments in the order they were made, and the trail size at the start of each decision level > 0. These allow
+     * {@link #undoToLevel(int)} to only visit the assignments that are actually undone.
+     */
+    private final List<SingleAssignment> trail = new ArrayList<>();
+    private final List<Integer> trailLimits = new ArrayList<>();
+
     private int kappaAntecedent;
     private int currentDecisionLevel;
 
@@ -63,6 +71,21 @@ public class Assignment implements Iterable<Assignment.SingleAssignment> {
         this.assignmentOrder = 0;
     }
 
+    /**
+     * Clears this assignment and its listeners, so it can be reused for another formula without reallocating.
+     */
+    public void reset(int variableCount) {
+        this.variableCount = variableCount;
+        this.kappaAntecedent = NIL;
+        this.currentDecisionLevel = 0;
+        this.assignmentOrder = 0;
+
+        map.clear();
+        trail.clear();
+        trailLimits.clear();
+        listeners.clear();
+    }
+
     public int getVariableCount() {
         return variableCount;
     }
@@ -79,6 +102,10 @@ public class Assignment implements Iterable<Assignment.SingleAssignment> {
         return map.keySet().size() == variableCount;
     }
 
+    public int getAssignedCount() {
+        return map.size();
+    }
+
     //region Listener
 
     private List<Listener> listeners = new ArrayList<>();
@@ -105,6 +132,8 @@ public class Assignment implements Iterable<Assignment.SingleAssignment> {
     //region Decision Level
 
     public void setCurrentDecisionLevel(int decisionLevel) {
+        while (trailLimits.size() > decisionLevel) trailLimits.remove(trailLimits.size() - 1);
+        while (trailLimits.size() < decisionLevel) trailLimits.add(trail.size());
         this.currentDecisionLevel = decisionLevel;
     }
 
@@ -113,9 +142,62 @@ public class Assignment implements Iterable<Assignment.SingleAssignment> {
     }
 
     public void incrementDecisionLevel() {
+        trailLimits.add(trail.size());
         this.currentDecisionLevel++;
     }
 
+    /**
+     * Opens a new decision level and assigns the given literal as its decision.
+     */
+    public void decide(int literalNum) {
+        incrementDecisionLevel();
+        add(Math.abs(literalNum), literalNum > 0, NIL);
+    }
+
+    /**
+     * @return the literal decided when the given level (>= 1) was opened by {@link #decide(int)}, or 0 if there's none.
+     */
+    public int getDecisionLiteral(int decisionLevel) {
+        if (decisionLevel < 1 || decisionLevel > currentDecisionLevel) return 0;
+
+        int start = trailLimits.get(decisionLevel - 1);
+        if (start >= trail.size()) return 0;
+
+        SingleAssignment single = trail.get(start);
+        boolean isDecision = single.decisionLevel == decisionLevel && single.antecedent == NIL
+                && map.get(single.variable) == single;
+
+        return isDecision ? single.toLiteralNum() : 0;
+    }
+
+    /**
+     * Unassigns every variable whose decision level is later than the given level, then makes it the current level.
+     * <p>
+     * Only the part of the trail made after the given level is visited, so a temporary decision can be propagated and
+     * undone cheaply.
+     */
+    public void undoToLevel(int decisionLevel) {
+        if (decisionLevel < currentDecisionLevel) {
+            int start = trailLimits.get(decisionLevel);
+
+            // Assignments made at a lower level after this level was opened (e.g. learned units) must survive.
+            LinkedList<SingleAssignment> kept = new LinkedList<>();
+
+            for (int i = trail.size() - 1; i >= start; i--) {
+                SingleAssignment single = trail.remove(i);
+                if (map.get(single.variable) != single) continue; // superseded or already removed
+
+                if (single.decisionLevel > decisionLevel) remove(single.variable);
+                else kept.addFirst(single);
+            }
+
+            trail.addAll(kept);
+        }
+
+        setCurrentDecisionLevel(Math.min(decisionLevel, currentDecisionLevel));
+        setKappaAntecedent(NIL);
+    }
+
     //endregion
 
 
@@ -140,6 +222,7 @@ public class Assignment implements Iterable<Assignment.SingleAssignment> {
         this.assignmentOrder++;
 
         map.put(single.variable, single);
+        trail.add(single);
         listeners.forEach(l -> l.add(single.variable, single.value, single.antecedent));
     }
 
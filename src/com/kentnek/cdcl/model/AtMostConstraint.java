@@ -0,0 +1,54 @@
+package com.kentnek.cdcl.model;
+
+import java.util.Arrays;
+
+/**
+ * A cardinality constraint stating that at most k of its literals are true: l_1 + l_2 + ... + l_n <= k.
+ * <p>
+ * An at-most-one constraint over n literals stands for the n(n-1)/2 binary clauses (¬l_i v ¬l_j). Such constraints
+ * are propagated with a counter of true literals, see
+ * {@link com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator}.
+ *
+ * @author kentnek
+ */
+
+public class AtMostConstraint {
+    private final int[] literals;
+    private final int bound;
+
+    /**
+     * @param literals distinct literals, none of which is the negation of another.
+     * @param bound    the maximum number of true literals.
+     */
+    public AtMostConstraint(int[] literals, int bound) {
+        assert (bound >= 0);
+        this.literals = literals.clone();
+        this.bound = bound;
+    }
+
+    public int[] getLiterals() {
+        return literals;
+    }
+
+    public int getBound() {
+        return bound;
+    }
+
+    public Logic evaluate(Assignment assignment) {
+        int trueCount = 0, undefinedCount = 0;
+
+        for (int literal : literals) {
+            Logic value = assignment.getLiteralValue(literal);
+            if (value == Logic.TRUE) trueCount++;
+            else if (value == Logic.UNDEFINED) undefinedCount++;
+        }
+
+        if (trueCount > bound) return Logic.FALSE;
+        return trueCount + undefinedCount <= bound ? Logic.TRUE : Logic.UNDEFINED;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("atMost%d%s", bound, Arrays.toString(literals));
+    }
+}
@@ -167,6 +167,12 @@ public class Clause implements Iterable<Literal> {
         }
     }
 
+    @Override
+    public int hashCode() {
+        // consistent with equals(), which ignores the order of literals
+        return literals.hashCode();
+    }
+
     @Override
     public Iterator<Literal> iterator() {
         return this.literals.iterator();
@@ -3,12 +3,16 @@ package com.kentnek.cdcl.model;
 import com.kentnek.cdcl.Logger;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Represents a CNF formula, which is a conjunction over clauses: c_1 ∧ c_2 ∧ ... c_n.
  * <p>
- * This object emits one event to an attached {@link Listener}: "learn" when a new clause is added to the formula after
- * conflict analysis.
+ * A formula may also hold {@link AtMostConstraint}s and {@link XorConstraint}s. They are not iterated with the
+ * clauses, so only the components that check {@link #hasConstraints()} support them.
+ * <p>
+ * This object emits two events to an attached {@link Listener}: "learn" when a new clause is added to the formula after
+ * conflict analysis, and "forget" when a clause is removed during the search.
  * <p>
  *
  * @author kentnek
@@ -18,11 +22,24 @@ public class Formula implements Iterable<Clause> {
     private final int variableCount;
     private final LinkedHashMap<Integer, Clause> clauses;
 
+    // Clauses forgotten during the search, kept so the resolution traces that mention them can still be followed
+    private final Map<Integer, Clause> forgottenClauses = new HashMap<>();
+
     // If this formula is unsatisfiable, we store the final empty clause for proof generation
     private Clause bottomClause = null;
 
     private int clauseId = 0;
 
+    // Cardinality constraints, propagated alongside the clauses
+    private final List<AtMostConstraint> constraints = new ArrayList<>();
+    private final List<XorConstraint> xorConstraints = new ArrayList<>();
+
+    // Reasons of propagations by the constraints, only turned into clauses when conflict analysis asks for them
+    private final Map<Integer, Supplier<Clause>> lazyReasons = new HashMap<>();
+
+    // Clauses and variables removed by preprocessing, needed to extend a model to the original formula
+    private final ReconstructionStack reconstructionStack = new ReconstructionStack();
+
     public Formula(int variableCount) {
         assert (variableCount > 0);
         this.variableCount = variableCount;
@@ -33,8 +50,29 @@ public class Formula implements Iterable<Clause> {
         return variableCount;
     }
 
+    public ReconstructionStack getReconstructionStack() {
+        return reconstructionStack;
+    }
+
+    /**
+     * @return true if the variable has been eliminated by preprocessing, so it no longer occurs in any clause.
+     */
+    public boolean isEliminated(int variable) {
+        return reconstructionStack.isEliminated(variable);
+    }
+
+    /**
+     * @return true if every variable that has not been eliminated is assigned.
+     */
+    public boolean isComplete(Assignment assignment) {
+        return assignment.getAssignedCount() + reconstructionStack.getEliminatedCount() >= variableCount;
+    }
+
     public Clause getClause(int id) {
-        return clauses.get(id);
+        Clause clause = clauses.get(id);
+        if (clause == null) clause = forgottenClauses.get(id);
+        if (clause == null && lazyReasons.containsKey(id)) clause = materializeReason(id);
+        return clause;
     }
 
     public int getClauseSize() {
@@ -62,6 +100,41 @@ public class Formula implements Iterable<Clause> {
         clauses.remove(clause.getId());
     }
 
+    /**
+     * Replaces a clause by another one, which takes over its id and position.
+     */
+    public void replace(Clause clause, Clause replacement) {
+        assert (clauses.get(clause.getId()) == clause);
+        replacement.id = clause.getId();
+        clauses.put(replacement.id, replacement);
+    }
+
+    /**
+     * Creates a copy of this formula that can be solved independently, e.g. on another thread. The clauses themselves
+     * are shared, since they are never modified once added; listeners are not copied.
+     */
+    public Formula copy() {
+        Formula copied = new Formula(variableCount);
+        copied.clauses.putAll(this.clauses);
+        copied.forgottenClauses.putAll(this.forgottenClauses);
+        copied.clauseId = this.clauseId;
+        copied.bottomClause = this.bottomClause;
+        copied.constraints.addAll(this.constraints);
+        copied.xorConstraints.addAll(this.xorConstraints);
+        copied.reconstructionStack.addAll(this.reconstructionStack);
+        return copied;
+    }
+
+    /**
+     * Forgetting a clause removes it from the formula, and notifies the listeners as well. The clause stays accessible
+     * by {@link #getClause(int)}, since it may be the antecedent of an assignment or part of a resolution trace.
+     */
+    public void forget(Clause clause) {
+        remove(clause);
+        forgottenClauses.put(clause.getId(), clause);
+        listeners.forEach(l -> l.forget(clause));
+    }
+
     public Clause getBottomClause() {
         return bottomClause;
     }
@@ -72,12 +145,72 @@ public class Formula implements Iterable<Clause> {
         this.bottomClause = bottomClause;
     }
 
+    //region Constraints
+
+    public void add(AtMostConstraint constraint) {
+        constraints.add(constraint);
+    }
+
+    public List<AtMostConstraint> getConstraints() {
+        return constraints;
+    }
+
+    public void add(XorConstraint constraint) {
+        xorConstraints.add(constraint);
+    }
+
+    public List<XorConstraint> getXorConstraints() {
+        return xorConstraints;
+    }
+
+    public boolean hasConstraints() {
+        return !constraints.isEmpty() || !xorConstraints.isEmpty();
+    }
+
+    /**
+     * Reserves a clause id for the reason of a propagation, whose clause is only built if {@link #getClause(int)} is
+     * called with that id, i.e. if the propagation takes part in a conflict. The built clause is then kept like a
+     * forgotten clause, so resolution traces can mention it.
+     */
+    public int addLazyReason(Supplier<Clause> reason) {
+        int id = clauseId++;
+        lazyReasons.put(id, reason);
+        return id;
+    }
+
+    /**
+     * Drops a reason that has not been built, once its propagation is undone.
+     */
+    public void removeLazyReason(int id) {
+        lazyReasons.remove(id);
+    }
+
+    /**
+     * Adds a clause implied by the constraints, e.g. the reason of a conflict, that is neither watched nor iterated.
+     */
+    public void addReason(Clause reason) {
+        reason.id = clauseId++;
+        forgottenClauses.put(reason.id, reason);
+    }
+
+    private Clause materializeReason(int id) {
+        Clause reason = lazyReasons.remove(id).get();
+        reason.id = id;
+        forgottenClauses.put(id, reason);
+        return reason;
+    }
+
+    //endregion
+
     //region Listener
 
     private List<Listener> listeners = new ArrayList<>();
 
     public interface Listener extends GenericListener {
         void learn(Clause clause);
+
+        default void forget(Clause clause) {
+        }
     }
 
     public void register(GenericListener listener) {
@@ -101,6 +234,24 @@ public class Formula implements Iterable<Clause> {
             }
         }
 
+        for (AtMostConstraint constraint : constraints) {
+            Logic value = constraint.evaluate(assignment);
+            result = (result == Logic.UNDEFINED) ? value : result.and(value);
+            if (result == Logic.FALSE || result == Logic.UNDEFINED) {
+                Logger.log("false constraint:", constraint);
+                return result;
+            }
+        }
+
+        for (XorConstraint constraint : xorConstraints) {
+            Logic value = constraint.evaluate(assignment);
+            result = (result == Logic.UNDEFINED) ? value : result.and(value);
+            if (result == Logic.FALSE || result == Logic.UNDEFINED) {
+                Logger.log("false constraint:", constraint);
+                return result;
+            }
+        }
+
         return result;
     }
 
@@ -114,6 +265,16 @@ public class Formula implements Iterable<Clause> {
             if (i++ < clauses.size() - 1) builder.append(" ∧ ");
         }
 
+        for (AtMostConstraint constraint : constraints) {
+            if (builder.length() > 0) builder.append(" ∧ ");
+            builder.append(constraint);
+        }
+
+        for (XorConstraint constraint : xorConstraints) {
+            if (builder.length() > 0) builder.append(" ∧ ");
+            builder.append(constraint);
+        }
+
         return builder.toString();
     }
 
@@ -3,8 +3,11 @@ package com.kentnek.cdcl.model;
 import com.kentnek.cdcl.Logger;
 
 import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -221,32 +224,45 @@ public class Proof {
     }
 
     public void writeToFile(String fileName) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("proofs/" + fileName))) {
-            writer.write(String.format("# Proof for '%s':\n", fileName));
+        try {
+            writeToFile(Paths.get("proofs", fileName));
+        } catch (IOException e) {
+            System.out.println("Unable to write to file.");
+            e.printStackTrace();
+        }
+    }
 
-            writer.write(String.format("v %d\n\n", clauses.size()));
+    public void writeToFile(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            write(writer, path.getFileName().toString());
+        }
+    }
 
-            boolean separated = false;
-            for (Clause clause : clauses) {
-                if (!separated && clause.getTrace() != null) {
-                    separated = true;
-                    writer.write("\n");
-                }
+    /**
+     * Writes the proof in the same format as {@link #writeToFile(Path)}, without closing the writer.
+     */
+    public void write(Writer writer, String name) throws IOException {
+        writer.write(String.format("# Proof for '%s':\n", name));
 
-                writer.write(String.format("%d %s\n", clause.id + 1, clause.toSimpleString()));
+        writer.write(String.format("v %d\n\n", clauses.size()));
+
+        boolean separated = false;
+        for (Clause clause : clauses) {
+            if (!separated && clause.getTrace() != null) {
+                separated = true;
+                writer.write("\n");
             }
 
-            writer.write("\n# Resolutions:\n");
+            writer.write(String.format("%d %s\n", clause.id + 1, clause.toSimpleString()));
+        }
 
-            for (Resolution resolution : resolutions) {
-                for (int id : resolution.inputs) {
-                    writer.write(id + 1 + " ");
-                }
-                writer.write(resolution.output + 1 + "\n");
+        writer.write("\n# Resolutions:\n");
+
+        for (Resolution resolution : resolutions) {
+            for (int id : resolution.inputs) {
+                writer.write(id + 1 + " ");
             }
-        } catch (IOException e) {
-            System.out.println("Unable to write to file.");
-            e.printStackTrace();
+            writer.write(resolution.output + 1 + "\n");
         }
     }
 
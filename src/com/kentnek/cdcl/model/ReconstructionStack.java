@@ -0,0 +1,107 @@
+package com.kentnek.cdcl.model;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Records how variables have been eliminated from a {@link Formula}, so that a model of the simplified formula can be
+ * extended to a model of the original one.
+ * <p>
+ * Each entry is a removed clause together with a witness literal from that clause. Entries are replayed from the most
+ * recent one: if the clause is not satisfied by the current model, its witness is set to true.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+public class ReconstructionStack {
+
+    private static class Entry {
+        final Clause clause;
+        final Literal witness;
+
+        Entry(Clause clause, Literal witness) {
+            this.clause = clause;
+            this.witness = witness;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<Integer> eliminatedVariables = new HashSet<>();
+
+    /**
+     * Records a clause removed from the formula, which can be satisfied later by flipping the witness literal.
+     */
+    public void push(Clause clause, Literal witness) {
+        assert (clause.contains(witness));
+        entries.add(new Entry(clause, witness));
+    }
+
+    /**
+     * Marks a variable as not occurring in the formula anymore, so the search does not need to assign it.
+     */
+    public void eliminate(int variable) {
+        eliminatedVariables.add(variable);
+    }
+
+    public boolean isEliminated(int variable) {
+        return eliminatedVariables.contains(variable);
+    }
+
+    public int getEliminatedCount() {
+        return eliminatedVariables.size();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Visits the entries from the oldest one, with their clause and witness.
+     */
+    public void forEach(BiConsumer<Clause, Literal> action) {
+        entries.forEach(entry -> action.accept(entry.clause, entry.witness));
+    }
+
+    public Set<Integer> getEliminatedVariables() {
+        return Collections.unmodifiableSet(eliminatedVariables);
+    }
+
+    /**
+     * Appends all entries and eliminated variables of another stack.
+     */
+    public void addAll(ReconstructionStack other) {
+        entries.addAll(other.entries);
+        eliminatedVariables.addAll(other.eliminatedVariables);
+    }
+
+    /**
+     * Extends a model of the simplified formula to a model of the original formula.
+     * <p>
+     * Eliminated variables are set to false before the entries are replayed, since the witness of an entry may depend
+     * on them: an entry checked while some of its variables are unassigned may be flipped for nothing, and falsify an
+     * entry replayed before it.
+     */
+    public void extend(Assignment assignment) {
+        for (int variable : eliminatedVariables) {
+            if (!assignment.contains(variable)) assignment.add(variable, false, Assignment.NIL, 0);
+        }
+
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            if (isSatisfied(entry.clause, assignment)) continue;
+
+            Literal witness = entry.witness;
+            if (assignment.contains(witness.variable)) assignment.remove(witness.variable);
+            assignment.add(witness.variable, !witness.isNegated, Assignment.NIL, 0);
+        }
+    }
+
+    private boolean isSatisfied(Clause clause, Assignment assignment) {
+        for (Literal literal : clause) {
+            if (assignment.getLiteralValue(literal) == Logic.TRUE) return true;
+        }
+
+        return false;
+    }
+}
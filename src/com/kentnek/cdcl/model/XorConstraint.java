@@ -0,0 +1,69 @@
+package com.kentnek.cdcl.model;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * A parity constraint over variables: x_1 ⊕ x_2 ⊕ ... ⊕ x_n = rhs.
+ * <p>
+ * An XOR over n variables stands for the 2^(n-1) clauses that forbid each assignment of the wrong parity. Such
+ * constraints are propagated together by Gauss-Jordan elimination, see
+ * {@link com.kentnek.cdcl.algo.propagator.GaussJordanMatrix}.
+ *
+ * @author kentnek
+ */
+
+public class XorConstraint {
+    private final int[] variables;
+    private final boolean rhs;
+
+    /**
+     * Creates the constraint stating that the XOR of the given literals is true. A negated literal flips the right-hand
+     * side, and a variable occurring twice cancels out.
+     */
+    public static XorConstraint fromLiterals(int... literals) {
+        TreeSet<Integer> variables = new TreeSet<>();
+        boolean rhs = true;
+
+        for (int literal : literals) {
+            int variable = Math.abs(literal);
+            if (!variables.remove(variable)) variables.add(variable);
+            if (literal < 0) rhs = !rhs;
+        }
+
+        return new XorConstraint(variables.stream().mapToInt(v -> v).toArray(), rhs);
+    }
+
+    /**
+     * @param variables distinct variables.
+     */
+    public XorConstraint(int[] variables, boolean rhs) {
+        this.variables = variables.clone();
+        this.rhs = rhs;
+    }
+
+    public int[] getVariables() {
+        return variables;
+    }
+
+    public boolean getRhs() {
+        return rhs;
+    }
+
+    public Logic evaluate(Assignment assignment) {
+        boolean parity = false;
+
+        for (int variable : variables) {
+            Logic value = assignment.getLiteralValue(variable);
+            if (value == Logic.UNDEFINED) return Logic.UNDEFINED;
+            if (value == Logic.TRUE) parity = !parity;
+        }
+
+        return Logic.fromBoolean(parity == rhs);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("xor%s = %d", Arrays.toString(variables), rhs ? 1 : 0);
+    }
+}
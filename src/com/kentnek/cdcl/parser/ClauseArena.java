@@ -0,0 +1,326 @@
+package com.kentnek.cdcl.parser;
+
+import com.kentnek.cdcl.model.Clause;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Literal;
+import com.kentnek.cdcl.model.XorConstraint;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The clauses of a parsed DIMACS file, stored back to back in a single growing int[], without any object per literal.
+ * <p>
+ * Clause i spans the literals from {@code getClauseStart(i)} (inclusive) to {@code getClauseEnd(i)} (exclusive). XOR
+ * lines are stored the same way, and flagged, see {@link #isXor(int)}. Clauses may be normalised as they are added,
+ * see {@link ClauseNormalizer}.
+ *
+ * @author kentnek
+ */
+
+public class ClauseArena {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private int variableCount = -1;
+    private int declaredClauseCount = -1;
+
+    private int[] literals = new int[INITIAL_CAPACITY];
+    private int literalCount = 0;
+
+    // clause -> index of its first literal, and one extra entry for the end of the last clause
+    private int[] clauseStarts = new int[INITIAL_CAPACITY];
+    private int clauseCount = 0;
+
+    private final BitSet xorClauses = new BitSet();
+
+    private ClauseNormalizer normalizer = null;
+    private int droppedClauseCount = 0;
+
+    ClauseArena() {
+    }
+
+    ClauseArena(ClauseNormalizer normalizer) {
+        this.normalizer = normalizer;
+    }
+
+    /**
+     * Wraps arrays that are already filled, e.g. read from a {@link FormulaSnapshot}.
+     *
+     * @param clauseStarts the start of each clause, followed by the end of the last one.
+     */
+    ClauseArena(int variableCount, int declaredClauseCount, int[] literals, int[] clauseStarts, BitSet xorClauses) {
+        this.variableCount = variableCount;
+        this.declaredClauseCount = declaredClauseCount;
+        this.literals = literals;
+        this.literalCount = literals.length;
+        this.clauseStarts = clauseStarts;
+        this.clauseCount = clauseStarts.length - 1;
+        this.xorClauses.or(xorClauses);
+    }
+
+    /**
+     * Copies the clauses and XORs of a formula, in this order.
+     *
+     * @throws IllegalArgumentException if the formula has at-most-k constraints, which have no arena representation.
+     */
+    public static ClauseArena fromFormula(Formula formula) {
+        if (!formula.getConstraints().isEmpty()) {
+            throw new IllegalArgumentException("At-most-k constraints cannot be stored in a clause arena.");
+        }
+
+        ClauseArena arena = new ClauseArena();
+
+        for (Clause clause : formula) {
+            for (Literal literal : clause) arena.addLiteral(literal.toLiteralNum());
+            arena.endClause(false);
+        }
+
+        for (XorConstraint constraint : formula.getXorConstraints()) {
+            int[] variables = constraint.getVariables();
+            if (variables.length == 0 && !constraint.getRhs()) continue; // always true
+
+            // the arena stores XORs of literals whose XOR is true, so a false right-hand side negates one literal
+            for (int i = 0; i < variables.length; i++) {
+                arena.addLiteral(i == 0 && !constraint.getRhs() ? -variables[i] : variables[i]);
+            }
+            arena.endClause(true);
+        }
+
+        arena.setHeader(formula.getVariableCount(), arena.getClauseCount());
+        return arena;
+    }
+
+    //region Building
+
+    void setHeader(int variableCount, int declaredClauseCount) {
+        this.variableCount = variableCount;
+        this.declaredClauseCount = declaredClauseCount;
+    }
+
+    boolean hasHeader() {
+        return variableCount >= 0;
+    }
+
+    void addLiteral(int literal) {
+        if (literalCount == literals.length) literals = Arrays.copyOf(literals, literals.length * 2);
+        literals[literalCount++] = literal;
+    }
+
+    /**
+     * Ends the clause made of the literals added since the last call.
+     */
+    void endClause(boolean isXor) {
+        if (clauseCount + 1 == clauseStarts.length) clauseStarts = Arrays.copyOf(clauseStarts, clauseStarts.length * 2);
+        int start = clauseStarts[clauseCount];
+
+        if (normalizer != null && !isXor) {
+            int end = normalizer.simplify(literals, start, literalCount);
+            if (end >= 0) clauseStarts[clauseCount + 1] = literalCount = end;
+
+            if (end < 0 || normalizer.isDuplicate(this, clauseCount)) {
+                literalCount = start;
+                droppedClauseCount++;
+                return;
+            }
+        }
+
+        if (isXor) xorClauses.set(clauseCount);
+        clauseStarts[++clauseCount] = literalCount;
+    }
+
+    /**
+     * Appends the clauses of another arena, after the clauses of this one. If both are normalised, the clauses of the
+     * other arena are already simplified, so only the duplicates of clauses in this arena are left to drop.
+     */
+    void append(ClauseArena other) {
+        droppedClauseCount += other.droppedClauseCount;
+        if (normalizer != null && other.normalizer != null) normalizer.addCounts(other.normalizer);
+
+        if (literalCount + other.literalCount > literals.length) {
+            literals = Arrays.copyOf(literals, Math.max(literals.length * 2, literalCount + other.literalCount));
+        }
+        if (clauseCount + other.clauseCount + 1 > clauseStarts.length) {
+            clauseStarts = Arrays.copyOf(
+                    clauseStarts, Math.max(clauseStarts.length * 2, clauseCount + other.clauseCount + 1)
+            );
+        }
+
+        System.arraycopy(other.literals, 0, literals, literalCount, other.literalCount);
+        for (int i = 1; i <= other.clauseCount; i++) {
+            clauseStarts[clauseCount + i] = literalCount + other.clauseStarts[i];
+        }
+        for (int i = other.xorClauses.nextSetBit(0); i >= 0; i = other.xorClauses.nextSetBit(i + 1)) {
+            xorClauses.set(clauseCount + i);
+        }
+
+        int firstClause = clauseCount;
+        literalCount += other.literalCount;
+        clauseCount += other.clauseCount;
+
+        if (normalizer != null) dropDuplicates(firstClause, other.normalizer == null);
+    }
+
+    /**
+     * Drops the clauses from the given one on that repeat an earlier clause, shifting the kept ones down in place.
+     *
+     * @param isSimplifying whether the clauses must be simplified first, i.e. they come from an arena that is not
+     *                      normalised.
+     */
+    private void dropDuplicates(int firstClause, boolean isSimplifying) {
+        int keptCount = firstClause;
+        int start = clauseStarts[firstClause];
+
+        for (int clause = firstClause; clause < clauseCount; clause++) {
+            // the kept clauses never overtake the next one, so its bounds are still the original ones
+            int end = clauseStarts[clause + 1];
+            int keptStart = clauseStarts[keptCount];
+            boolean isXor = xorClauses.get(clause);
+            xorClauses.clear(clause);
+
+            if (keptStart != start) System.arraycopy(literals, start, literals, keptStart, end - start);
+            int keptEnd = keptStart + end - start;
+
+            if (isSimplifying && !isXor) keptEnd = normalizer.simplify(literals, keptStart, keptEnd);
+            start = end;
+
+            if (keptEnd < 0) {
+                droppedClauseCount++;
+                continue;
+            }
+
+            clauseStarts[keptCount + 1] = keptEnd;
+            if (!isXor && normalizer.isDuplicate(this, keptCount)) {
+                droppedClauseCount++;
+                continue;
+            }
+
+            if (isXor) xorClauses.set(keptCount);
+            keptCount++;
+        }
+
+        clauseCount = keptCount;
+        literalCount = clauseStarts[keptCount];
+    }
+
+    /**
+     * @return true if no literal was added since the last clause ended.
+     */
+    boolean isClauseEmpty() {
+        return literalCount == clauseStarts[clauseCount];
+    }
+
+    //endregion
+
+    //region Access
+
+    /**
+     * @return the number of variables declared in the header, or -1 if there was no header.
+     */
+    public int getVariableCount() {
+        return variableCount;
+    }
+
+    /**
+     * @return the number of clauses declared in the header, XORs included, or -1 if there was no header.
+     */
+    public int getDeclaredClauseCount() {
+        return declaredClauseCount;
+    }
+
+    /**
+     * @return the number of clauses, XORs included.
+     */
+    public int getClauseCount() {
+        return clauseCount;
+    }
+
+    /**
+     * @return the number of clauses read, including the ones dropped by normalisation, to be checked against the
+     * header.
+     */
+    public int getParsedClauseCount() {
+        return clauseCount + droppedClauseCount;
+    }
+
+    /**
+     * @return the normaliser of the clauses, or null if they are kept verbatim.
+     */
+    public ClauseNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    public int getLiteralCount() {
+        return literalCount;
+    }
+
+    public int getClauseStart(int clause) {
+        return clauseStarts[clause];
+    }
+
+    public int getClauseEnd(int clause) {
+        return clauseStarts[clause + 1];
+    }
+
+    public int getLiteral(int index) {
+        return literals[index];
+    }
+
+    public boolean isXor(int clause) {
+        return xorClauses.get(clause);
+    }
+
+    // The backing arrays, which may be longer than the literal and clause counts
+
+    int[] getLiteralArray() {
+        return literals;
+    }
+
+    int[] getClauseStartArray() {
+        return clauseStarts;
+    }
+
+    BitSet getXorClauses() {
+        return xorClauses;
+    }
+
+    //endregion
+
+    /**
+     * Builds the formula. Literals are shared between clauses, so there are at most two {@link Literal}s per variable.
+     *
+     * @throws IllegalArgumentException if a literal is out of the range declared in the header.
+     */
+    public Formula toFormula() {
+        Formula formula = new Formula(variableCount);
+        Literal[] literalTable = new Literal[2 * variableCount + 1];
+
+        for (int clause = 0; clause < clauseCount; clause++) {
+            int start = clauseStarts[clause], end = clauseStarts[clause + 1];
+
+            if (isXor(clause)) {
+                formula.add(XorConstraint.fromLiterals(Arrays.copyOfRange(literals, start, end)));
+                continue;
+            }
+
+            Clause result = new Clause(variableCount);
+
+            for (int i = start; i < end; i++) {
+                int literal = literals[i];
+                if (literal > variableCount || literal < -variableCount) {
+                    throw new IllegalArgumentException(String.format(
+                            "Literal %d is out of range, there are only %d variables.", literal, variableCount
+                    ));
+                }
+
+                int index = literal + variableCount;
+                if (literalTable[index] == null) literalTable[index] = new Literal(literal);
+                result.add(literalTable[index]);
+            }
+
+            formula.add(result);
+        }
+
+        return formula;
+    }
+}
@@ -0,0 +1,162 @@
+package com.kentnek.cdcl.parser;
+
+import java.util.Arrays;
+
+/**
+ * Normalises the clauses of a {@link ClauseArena} as they are parsed, one at a time.
+ * <p>
+ * The literals of a clause are sorted by variable, with x before ¬x, so duplicate literals and complementary pairs
+ * become adjacent: duplicates are dropped, and a clause with a complementary pair is a tautology, and is dropped
+ * altogether. The sorted clause is then looked up in an open-addressing hash set of the clauses kept so far, which
+ * stores clause indices into the arena, so a duplicate clause is found without any object per clause.
+ * <p>
+ * XOR lines are kept as they are, since a repeated variable cancels out in an XOR.
+ *
+ * @author kentnek
+ */
+
+public class ClauseNormalizer {
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    private int tautologyCount, duplicateLiteralCount, duplicateClauseCount;
+
+    // Open-addressing set of kept clauses: clause index + 1, or 0 for an empty slot
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private int occupiedCount = 0;
+
+    /**
+     * Sorts the literals in [start, end), and drops the duplicate ones.
+     *
+     * @return the new end, or -1 if the clause is a tautology.
+     */
+    int simplify(int[] literals, int start, int end) {
+        for (int i = start; i < end; i++) literals[i] = toKey(literals[i]);
+        Arrays.sort(literals, start, end);
+
+        int write = start, duplicates = 0;
+
+        for (int i = start; i < end; i++) {
+            int key = literals[i];
+
+            if (write > start && literals[write - 1] == key) {
+                duplicates++;
+                continue;
+            }
+
+            if (write > start && (literals[write - 1] ^ 1) == key) {
+                tautologyCount++;
+                return -1;
+            }
+
+            literals[write++] = key;
+        }
+
+        for (int i = start; i < write; i++) literals[i] = fromKey(literals[i]);
+
+        duplicateLiteralCount += duplicates;
+        return write;
+    }
+
+    /**
+     * Looks up a clause among the clauses kept so far, and adds it if it is new. The clause must be simplified.
+     *
+     * @return true if the clause is a duplicate, which must then be dropped.
+     */
+    boolean isDuplicate(ClauseArena arena, int clause) {
+        if (2 * (occupiedCount + 1) > slots.length) rehash(arena);
+
+        int mask = slots.length - 1;
+
+        for (int slot = hash(arena, clause) & mask; ; slot = (slot + 1) & mask) {
+            int other = slots[slot] - 1;
+
+            if (other < 0) {
+                slots[slot] = clause + 1;
+                occupiedCount++;
+                return false;
+            }
+
+            if (isEqual(arena, clause, other)) {
+                duplicateClauseCount++;
+                return true;
+            }
+        }
+    }
+
+    private void rehash(ClauseArena arena) {
+        int[] oldSlots = slots;
+        slots = new int[oldSlots.length * 2];
+        int mask = slots.length - 1;
+
+        for (int entry : oldSlots) {
+            if (entry == 0) continue;
+
+            int slot = hash(arena, entry - 1) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = entry;
+        }
+    }
+
+    private static int hash(ClauseArena arena, int clause) {
+        int[] literals = arena.getLiteralArray();
+        int hash = 0x9E3779B9;
+
+        for (int i = arena.getClauseStart(clause); i < arena.getClauseEnd(clause); i++) {
+            hash = (hash ^ literals[i]) * 0x01000193;
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean isEqual(ClauseArena arena, int first, int second) {
+        int[] literals = arena.getLiteralArray();
+        int firstStart = arena.getClauseStart(first), secondStart = arena.getClauseStart(second);
+        int length = arena.getClauseEnd(first) - firstStart;
+        if (arena.getClauseEnd(second) - secondStart != length) return false;
+
+        for (int i = 0; i < length; i++) {
+            if (literals[firstStart + i] != literals[secondStart + i]) return false;
+        }
+
+        return true;
+    }
+
+    // x -> 2x, ¬x -> 2x + 1
+    private static int toKey(int literal) {
+        return literal > 0 ? literal << 1 : (-literal << 1) | 1;
+    }
+
+    private static int fromKey(int key) {
+        return (key & 1) == 0 ? key >>> 1 : -(key >>> 1);
+    }
+
+    /**
+     * Adds the counts of another normaliser, e.g. of a chunk parsed in parallel.
+     */
+    void addCounts(ClauseNormalizer other) {
+        tautologyCount += other.tautologyCount;
+        duplicateLiteralCount += other.duplicateLiteralCount;
+        duplicateClauseCount += other.duplicateClauseCount;
+    }
+
+    public int getTautologyCount() {
+        return tautologyCount;
+    }
+
+    public int getDuplicateLiteralCount() {
+        return duplicateLiteralCount;
+    }
+
+    public int getDuplicateClauseCount() {
+        return duplicateClauseCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "removed %d tautologies, %d duplicate literals and %d duplicate clauses",
+                tautologyCount, duplicateLiteralCount, duplicateClauseCount
+        );
+    }
+}
@@ -0,0 +1,122 @@
+package com.kentnek.cdcl.parser;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The compression formats of input files, detected by their magic bytes, or by their extension if the file is too
+ * short to have any.
+ * <p>
+ * Gzip is inflated in-process by {@link GZIPInputStream}. The JDK has no xz decoder, so xz files are piped through the
+ * "xz -dc" command, which must be on the PATH.
+ *
+ * @author kentnek
+ */
+
+public enum Compression {
+    NONE(new byte[0], ""),
+    GZIP(new byte[]{(byte) 0x1F, (byte) 0x8B}, ".gz"),
+    XZ(new byte[]{(byte) 0xFD, '7', 'z', 'X', 'Z', 0}, ".xz");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final byte[] magic;
+    private final String extension;
+
+    Compression(byte[] magic, String extension) {
+        this.magic = magic;
+        this.extension = extension;
+    }
+
+    public static Compression detect(Path path) throws IOException {
+        byte[] header = new byte[6];
+        int length;
+
+        try (InputStream in = Files.newInputStream(path)) {
+            length = in.read(header);
+        }
+
+        for (Compression compression : values()) {
+            if (compression == NONE) continue;
+            boolean matches = length >= compression.magic.length
+                    ? startsWith(header, compression.magic)
+                    : path.toString().endsWith(compression.extension);
+            if (matches) return compression;
+        }
+
+        return NONE;
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Opens a stream over the decompressed content of a file.
+     */
+    public InputStream open(Path path) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPInputStream(Files.newInputStream(path), BUFFER_SIZE);
+
+            case XZ:
+                return openProcess("xz", "-dc", path.toString());
+
+            default:
+                return Files.newInputStream(path);
+        }
+    }
+
+    /**
+     * Runs a command and returns its output. The end of the output, and closing the stream, wait for the command, and
+     * fail if it did.
+     */
+    private static InputStream openProcess(String... command) throws IOException {
+        Process process;
+        try {
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        } catch (IOException e) {
+            throw new IOException("Cannot run '" + command[0] + "', is it installed?", e);
+        }
+
+        process.getOutputStream().close();
+
+        return new FilterInputStream(process.getInputStream()) {
+            @Override
+            public int read() throws IOException {
+                int result = super.read();
+                if (result < 0) waitFor(process, command[0]);
+                return result;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                int result = super.read(bytes, offset, length);
+                if (result < 0) waitFor(process, command[0]);
+                return result;
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                waitFor(process, command[0]);
+            }
+        };
+    }
+
+    private static void waitFor(Process process, String name) throws IOException {
+        try {
+            int exitCode = process.waitFor();
+            if (exitCode != 0) throw new IOException(String.format("'%s' failed with exit code %d.", name, exitCode));
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package com.kentnek.cdcl.parser;
+
+import com.kentnek.cdcl.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parses DIMACS CNF files into a {@link ClauseArena}, straight from the bytes.
+ * <p>
+ * Files are memory-mapped in windows of 256 MB, so the page cache is read without any copy, and the lexer runs over the
+ * raw bytes: no line, String or Integer is ever created. The lexer keeps its state between buffers, so a token or a
+ * clause may span windows, and clauses may span lines. Other byte sources can be parsed the same way, by feeding their
+ * buffers one after another, see {@link #feed(ByteBuffer)}.
+ * <p>
+ * Large files are split into chunks at clause boundaries, which are lexed in parallel into their own arenas, and then
+ * concatenated in file order, so the clause order, and hence the clause ids, do not depend on the thread count. A
+ * boundary is a line start after a line ending with the token "0"; if a chunk turns out to end inside a clause anyway,
+ * e.g. because a clause spans a comment line ending with "0", the file is parsed again by a single thread.
+ * <p>
+ * Compressed files are decompressed on the fly, see {@link Compression}, on a separate thread that fills buffers ahead
+ * of the lexer, so inflating and lexing overlap. The decompressed content never touches the disk.
+ * <p>
+ * Besides clauses, it accepts comment lines starting with "c", XOR lines starting with "x", and stops at "%", which
+ * ends the files of the SATLIB benchmarks.
+ * <p>
+ * Usage: DimacsParser file...
+ *
+ * @author kentnek
+ */
+
+public class DimacsParser {
+
+    private static final int WINDOW_SIZE = 1 << 28;
+
+    // Parallel parsing of files of at least 8 MB, in a few chunks per thread, for load balancing
+    private static final long MIN_PARALLEL_SIZE = 1 << 23;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int PROBE_SIZE = 1 << 16;
+
+    // Buffers between the decompressing thread and the lexer
+    private static final int STREAM_BUFFER_SIZE = 1 << 20;
+    private static final int STREAM_BUFFER_COUNT = 4;
+
+    private enum State {
+        TOKEN_START, NUMBER, COMMENT, HEADER, DONE
+    }
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private boolean isNormalizing = true;
+
+    private ClauseArena arena;
+
+    // Whether this parser lexes a chunk after the first one, which has no header
+    private boolean isChunk = false;
+
+    // Lexer state
+    private State state;
+    private int value;
+    private boolean isNegative, hasDigits, isXor;
+    private final StringBuilder header = new StringBuilder();
+
+    // Number of bytes fed so far, and the time the parsing started at
+    private long byteCount;
+    private long startTime, elapsedNanos;
+
+    public DimacsParser() {
+        reset();
+    }
+
+    /**
+     * Sets the number of threads lexing uncompressed files. Defaults to the number of processors.
+     */
+    public DimacsParser withThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+        return this;
+    }
+
+    /**
+     * Sets whether clauses are normalised as they are parsed, see {@link ClauseNormalizer}. Enabled by default.
+     */
+    public DimacsParser withNormalization(boolean isNormalizing) {
+        this.isNormalizing = isNormalizing;
+        return this;
+    }
+
+    /**
+     * Starts a new parse, dropping the clauses parsed so far.
+     */
+    public void reset() {
+        arena = new ClauseArena(isNormalizing ? new ClauseNormalizer() : null);
+        state = State.TOKEN_START;
+        isXor = false;
+        header.setLength(0);
+        byteCount = 0;
+        startTime = System.nanoTime();
+        elapsedNanos = 0;
+    }
+
+    /**
+     * Parses a whole file, by memory-mapping it, or by streaming it if it is compressed.
+     *
+     * @throws IllegalArgumentException if the file is not in DIMACS CNF format.
+     */
+    public ClauseArena parseFile(Path path) throws IOException {
+        Compression compression = Compression.detect(path);
+
+        if (compression != Compression.NONE) {
+            try (InputStream in = compression.open(path)) {
+                return parse(in);
+            }
+        }
+
+        if (threadCount > 1 && Files.size(path) >= MIN_PARALLEL_SIZE) {
+            ClauseArena result = parseInParallel(path);
+            if (result != null) return result;
+        }
+
+        reset();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            for (long position = 0; position < size && state != State.DONE; position += WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(
+                        FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position)
+                );
+                feed(window);
+            }
+        }
+
+        return finish();
+    }
+
+    //region Parallel parsing
+
+    /**
+     * Lexes the chunks of a file in parallel, and concatenates them in order.
+     *
+     * @return the arena, or null if the chunks do not end at clause boundaries, or the header is not in the first one.
+     */
+    private ClauseArena parseInParallel(Path path) throws IOException {
+        reset();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = split(channel, channel.size());
+            if (bounds == null) return null;
+
+            List<Future<DimacsParser>> futures = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i], end = bounds[i + 1];
+                int index = i;
+                futures.add(executor.submit(() -> parseChunk(channel, start, end, index > 0, isNormalizing)));
+            }
+
+            List<DimacsParser> chunks = new ArrayList<>();
+            for (Future<DimacsParser> future : futures) chunks.add(getChunk(future));
+
+            if (!chunks.get(0).arena.hasHeader()) return null;
+            arena = chunks.get(0).arena;
+
+            for (int i = 0; i < chunks.size(); i++) {
+                DimacsParser chunk = chunks.get(i);
+                boolean isLast = i == chunks.size() - 1 || chunk.state == State.DONE;
+
+                if (i > 0 && chunk.arena.hasHeader()) return null;
+                if (!isLast && !chunk.isAtClauseBoundary()) return null;
+
+                if (isLast) chunk.finish();
+                if (i > 0) arena.append(chunk.arena);
+
+                if (isLast) {
+                    byteCount = chunk.byteCount;
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        state = State.DONE;
+        elapsedNanos = System.nanoTime() - startTime;
+        return arena;
+    }
+
+    /**
+     * Splits a file into chunks of at most 2 GB, each ending at a clause boundary.
+     *
+     * @return the chunk bounds, from 0 to the file size, or null if a chunk would be too large to be mapped.
+     */
+    private long[] split(FileChannel channel, long size) throws IOException {
+        int chunkCount = (int) Math.max(threadCount * CHUNKS_PER_THREAD, (size + WINDOW_SIZE - 1) / WINDOW_SIZE);
+        long[] bounds = new long[chunkCount + 1];
+        int boundCount = 1;
+
+        for (int i = 1; i < chunkCount; i++) {
+            long from = Math.max(i * (size / chunkCount), bounds[boundCount - 1]);
+            long bound = findClauseBoundary(channel, from, size);
+            if (bound > bounds[boundCount - 1] && bound < size) bounds[boundCount++] = bound;
+        }
+
+        bounds[boundCount++] = size;
+
+        for (int i = 0; i + 1 < boundCount; i++) {
+            if (bounds[i + 1] - bounds[i] > Integer.MAX_VALUE) return null;
+        }
+
+        return Arrays.copyOf(bounds, boundCount);
+    }
+
+    /**
+     * Finds the first line start after the given position whose previous line ends with the token "0". The line the
+     * position is in is skipped, as its beginning is unknown.
+     *
+     * @return the position of the line start, or the file size if there is none.
+     */
+    private static long findClauseBoundary(FileChannel channel, long from, long size) throws IOException {
+        boolean isFullLine = false, isInToken = false;
+        int tokenLength = 0;
+        byte lastByte = 0;
+
+        for (long position = from; position < size; position += PROBE_SIZE) {
+            MappedByteBuffer probe = channel.map(
+                    FileChannel.MapMode.READ_ONLY, position, Math.min(PROBE_SIZE, size - position)
+            );
+
+            for (int i = 0; i < probe.limit(); i++) {
+                byte b = probe.get(i);
+
+                if (b == '\n') {
+                    if (isFullLine && tokenLength == 1 && lastByte == '0') return position + i + 1;
+                    isFullLine = true;
+                    isInToken = false;
+                    tokenLength = 0;
+                } else if (b == ' ' || b == '\r' || b == '\t') {
+                    isInToken = false;
+                } else {
+                    if (!isInToken) tokenLength = 0;
+                    isInToken = true;
+                    tokenLength++;
+                    lastByte = b;
+                }
+            }
+        }
+
+        return size;
+    }
+
+    private static DimacsParser parseChunk(
+            FileChannel channel, long start, long end, boolean isChunk, boolean isNormalizing
+    ) throws IOException {
+        DimacsParser parser = new DimacsParser().withNormalization(isNormalizing);
+        parser.reset();
+        parser.isChunk = isChunk;
+        parser.byteCount = start; // so errors are reported at their position in the file
+        parser.feed(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        return parser;
+    }
+
+    private static DimacsParser getChunk(Future<DimacsParser> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private boolean isAtClauseBoundary() {
+        return (state == State.TOKEN_START || state == State.DONE) && arena.isClauseEmpty() && !isXor;
+    }
+
+    //endregion
+
+    /**
+     * Parses a whole stream, which is not closed. The stream is read on another thread, into a few buffers that are
+     * handed over to the lexer and recycled once lexed.
+     *
+     * @throws IllegalArgumentException if the content is not in DIMACS CNF format.
+     */
+    public ClauseArena parse(InputStream in) throws IOException {
+        reset();
+
+        BlockingQueue<ByteBuffer> freeBuffers = new ArrayBlockingQueue<>(STREAM_BUFFER_COUNT);
+        for (int i = 0; i < STREAM_BUFFER_COUNT; i++) freeBuffers.add(ByteBuffer.allocate(STREAM_BUFFER_SIZE));
+
+        // one more slot, so the end of stream never waits
+        BlockingQueue<ByteBuffer> filledBuffers = new ArrayBlockingQueue<>(STREAM_BUFFER_COUNT + 1);
+        ByteBuffer endOfStream = ByteBuffer.allocate(0);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                while (true) {
+                    ByteBuffer buffer = freeBuffers.take();
+                    int length = readFully(in, buffer.array());
+                    if (length == 0) break;
+
+                    buffer.clear().limit(length);
+                    filledBuffers.add(buffer);
+                }
+            } catch (IOException e) {
+                failure.set(e);
+            } catch (InterruptedException e) {
+                // the lexer failed, and stopped reading
+            } finally {
+                filledBuffers.add(endOfStream);
+            }
+        }, "dimacs-reader");
+
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            for (ByteBuffer buffer; (buffer = filledBuffers.take()) != endOfStream; ) {
+                feed(buffer);
+                freeBuffers.add(buffer);
+            }
+
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing.");
+        } finally {
+            if (reader.isAlive()) {
+                reader.interrupt();
+                joinQuietly(reader);
+            }
+        }
+
+        if (failure.get() != null) throw failure.get();
+        return finish();
+    }
+
+    /**
+     * Reads until the array is full or the stream ends.
+     *
+     * @return the number of bytes read.
+     */
+    private static int readFully(InputStream in, byte[] array) throws IOException {
+        int length = 0;
+
+        while (length < array.length) {
+            int count = in.read(array, length, array.length - length);
+            if (count < 0) break;
+            length += count;
+        }
+
+        return length;
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //region Lexer
+
+    /**
+     * Parses the remaining bytes of a buffer, which are all consumed.
+     */
+    public void feed(ByteBuffer buffer) {
+        int start = buffer.position(), position = start, limit = buffer.limit();
+        long offset = byteCount - start; // offset + position is the position in the input
+
+        for (; position < limit && state != State.DONE; position++) {
+            byte b = buffer.get(position);
+
+            if (state == State.NUMBER) {
+                if (b >= '0' && b <= '9') {
+                    if (value > (Integer.MAX_VALUE - 9) / 10) throw error("Literal is too large", offset + position);
+                    value = value * 10 + (b - '0');
+                    hasDigits = true;
+                    continue;
+                }
+
+                endNumber(offset + position);
+            }
+
+            switch (state) {
+                case COMMENT:
+                    if (b == '\n') state = State.TOKEN_START;
+                    continue;
+
+                case HEADER:
+                    if (b == '\n') {
+                        parseHeader(offset + position);
+                        state = State.TOKEN_START;
+                    } else {
+                        header.append((char) b);
+                    }
+                    continue;
+
+                default:
+                    break;
+            }
+
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') continue;
+
+            if (b == '-' || (b >= '0' && b <= '9')) {
+                isNegative = b == '-';
+                hasDigits = !isNegative;
+                value = isNegative ? 0 : b - '0';
+                state = State.NUMBER;
+            } else if (b == 'c') {
+                state = State.COMMENT;
+            } else if (b == 'p') {
+                header.setLength(0);
+                header.append('p');
+                state = State.HEADER;
+            } else if (b == 'x' && arena.isClauseEmpty()) {
+                isXor = true;
+            } else if (b == '%') {
+                state = State.DONE;
+            } else {
+                throw error(String.format("Unexpected character '%c'", (char) b), offset + position);
+            }
+        }
+
+        byteCount += position - start;
+        buffer.position(limit);
+    }
+
+    /**
+     * Ends the parse, and adds the last clause if it has no terminating 0.
+     */
+    public ClauseArena finish() {
+        if (state == State.NUMBER) endNumber(byteCount);
+        if (state == State.HEADER) parseHeader(byteCount);
+        if (!arena.isClauseEmpty()) arena.endClause(isXor);
+
+        if (!arena.hasHeader() && !isChunk) throw new IllegalArgumentException("The 'p cnf' header is missing.");
+
+        state = State.DONE;
+        elapsedNanos = System.nanoTime() - startTime;
+        return arena;
+    }
+
+    private void endNumber(long offset) {
+        state = State.TOKEN_START;
+        if (!hasDigits) throw error("A '-' is not followed by digits", offset);
+        if (!arena.hasHeader() && !isChunk) throw error("A clause comes before the 'p cnf' header", offset);
+
+        if (value == 0) {
+            arena.endClause(isXor);
+            isXor = false;
+        } else {
+            arena.addLiteral(isNegative ? -value : value);
+        }
+    }
+
+    private void parseHeader(long offset) {
+        String[] tokens = header.toString().trim().split("\\s+");
+        if (tokens.length != 4 || !tokens[1].equals("cnf")) throw error("Invalid header '" + header + "'", offset);
+
+        try {
+            arena.setHeader(Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]));
+        } catch (NumberFormatException e) {
+            throw error("Invalid header '" + header + "'", offset);
+        }
+    }
+
+    private static IllegalArgumentException error(String message, long offset) {
+        return new IllegalArgumentException(String.format("%s at byte %d.", message, offset));
+    }
+
+    //endregion
+
+    //region Statistics
+
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    /**
+     * @return the time from the start of the parse to {@link #finish()}, in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    /**
+     * @return the parse speed, in MB/s.
+     */
+    public double getThroughput() {
+        return byteCount / 1e6 / Math.max(elapsedNanos / 1e9, 1e-9);
+    }
+
+    @Override
+    public String toString() {
+        String result = String.format(
+                "%d clauses, %d literals, %.1f MB in %d ms (%.1f MB/s)",
+                arena.getClauseCount(), arena.getLiteralCount(), byteCount / 1e6, getElapsedMillis(), getThroughput()
+        );
+
+        return arena.getNormalizer() == null ? result : result + ", " + arena.getNormalizer();
+    }
+
+    //endregion
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            Logger.log("Usage: DimacsParser file...");
+            return;
+        }
+
+        DimacsParser parser = new DimacsParser();
+
+        for (String path : args) {
+            parser.parseFile(Paths.get(path));
+            Logger.log(path + ":", parser);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.kentnek.cdcl.parser;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.preprocessor.FormulaPreprocessor;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Formula;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A local directory of {@link FormulaSnapshot}s, so formulas that are solved again and again are parsed, and possibly
+ * preprocessed, only once.
+ * <p>
+ * Snapshots are keyed by the SHA-256 of the content of the source file, so a renamed copy hits and an edited file
+ * misses, plus the name of the preprocessing, if any. The directory is bounded in size: the least recently used
+ * snapshots, by modification time, which is updated on every hit, are deleted first. Snapshots are written to a
+ * temporary file and then moved in place, so concurrent processes never read a partial one.
+ * <p>
+ * Usage: SnapshotCache file [--dir path] [--max-size MB]
+ *
+ * @author kentnek
+ */
+
+public class SnapshotCache {
+
+    private static final String EXTENSION = ".snap";
+    private static final long DEFAULT_MAX_SIZE = 1L << 30;
+    private static final int HASH_WINDOW_SIZE = 1 << 26;
+
+    private final Path directory;
+    private long maxSize = DEFAULT_MAX_SIZE;
+
+    private int hitCount, missCount;
+
+    public SnapshotCache() {
+        this(Paths.get(System.getProperty("java.io.tmpdir"), "cdcl-snapshots"));
+    }
+
+    public SnapshotCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Sets the maximum total size of the snapshots, in bytes. Defaults to 1 GB.
+     */
+    public SnapshotCache withMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Loads a DIMACS file from its snapshot, or parses it and stores its snapshot.
+     *
+     * @throws IllegalArgumentException if the file cannot be parsed, or the clause count does not match the header.
+     */
+    public Formula load(Path cnfPath) throws IOException {
+        return load(cnfPath, "", null);
+    }
+
+    /**
+     * Loads a DIMACS file, preprocessed, from its snapshot, or parses and preprocesses it and stores its snapshot. The
+     * name identifies the preprocessing configuration: a different configuration must use a different name.
+     * <p>
+     * Preprocessing that leaves at-most-k constraints in the formula, or refutes it, is not cached.
+     */
+    public Formula load(Path cnfPath, String name, FormulaPreprocessor preprocessor) throws IOException {
+        String key = hash(cnfPath) + (name.isEmpty() ? "" : "-" + name.replaceAll("[^A-Za-z0-9_.-]", "_"));
+        Path snapshotPath = directory.resolve(key + EXTENSION);
+
+        if (Files.exists(snapshotPath)) {
+            try {
+                FormulaSnapshot snapshot = FormulaSnapshot.read(snapshotPath);
+                Files.setLastModifiedTime(snapshotPath, FileTime.fromMillis(System.currentTimeMillis()));
+                hitCount++;
+                return snapshot.toFormula();
+            } catch (IOException e) {
+                Logger.log("Ignoring the snapshot:", e.getMessage());
+            }
+        }
+
+        missCount++;
+        ClauseArena arena = new DimacsParser().parseFile(cnfPath);
+        if (arena.getParsedClauseCount() != arena.getDeclaredClauseCount()) {
+            throw new IllegalArgumentException(String.format(
+                    "Clause number defined to be %d, but found %d instead.",
+                    arena.getDeclaredClauseCount(), arena.getParsedClauseCount()
+            ));
+        }
+
+        Formula formula = arena.toFormula();
+        FormulaSnapshot snapshot;
+
+        if (preprocessor == null) {
+            snapshot = FormulaSnapshot.of(arena);
+        } else {
+            preprocessor.preprocess(formula, new Assignment(formula.getVariableCount()));
+
+            if (formula.getBottomClause() != null || !formula.getConstraints().isEmpty()) return formula;
+            snapshot = FormulaSnapshot.of(formula);
+        }
+
+        store(snapshot, snapshotPath);
+        return formula;
+    }
+
+    private void store(FormulaSnapshot snapshot, Path snapshotPath) throws IOException {
+        Files.createDirectories(directory);
+
+        Path temporaryPath = Files.createTempFile(directory, "partial", ".tmp");
+        try {
+            snapshot.write(temporaryPath);
+            Files.move(
+                    temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+            );
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+
+        evict(snapshotPath);
+    }
+
+    /**
+     * Deletes the least recently used snapshots until the total size is within the limit. The given snapshot, just
+     * written, is kept even if it alone is over the limit.
+     */
+    private void evict(Path keptPath) throws IOException {
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.list(directory)) {
+            snapshots = files.filter(path -> path.toString().endsWith(EXTENSION)).collect(Collectors.toList());
+        }
+
+        long totalSize = 0;
+        List<Path> candidates = new ArrayList<>();
+
+        for (Path path : snapshots) {
+            try {
+                totalSize += Files.size(path);
+                if (!path.equals(keptPath)) candidates.add(path);
+            } catch (NoSuchFileException e) {
+                // deleted by another process
+            }
+        }
+
+        candidates.sort(Comparator.comparing(SnapshotCache::lastModifiedTime));
+
+        for (Path path : candidates) {
+            if (totalSize <= maxSize) break;
+
+            try {
+                long size = Files.size(path);
+                Files.delete(path);
+                totalSize -= size;
+                Logger.debug("Evicted snapshot", path);
+            } catch (NoSuchFileException e) {
+                // deleted by another process
+            }
+        }
+    }
+
+    private static FileTime lastModifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the file content, in hexadecimal.
+     */
+    private static String hash(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has SHA-256
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            for (long position = 0; position < size; position += HASH_WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(
+                        FileChannel.MapMode.READ_ONLY, position, Math.min(HASH_WINDOW_SIZE, size - position)
+                );
+                digest.update(window);
+            }
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) builder.append(String.format("%02x", b));
+        return builder.toString();
+    }
+
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    public int getMissCount() {
+        return missCount;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            Logger.log("Usage: SnapshotCache file [--dir path] [--max-size MB]");
+            return;
+        }
+
+        SnapshotCache cache = new SnapshotCache();
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--dir":
+                    cache = new SnapshotCache(Paths.get(args[++i])).withMaxSize(cache.maxSize);
+                    break;
+                case "--max-size":
+                    cache.withMaxSize(Long.parseLong(args[++i]) << 20);
+                    break;
+                default:
+                    Logger.log("Unknown option:", args[i]);
+                    return;
+            }
+        }
+
+        Path path = Paths.get(args[0]);
+
+        for (int i = 0; i < 2; i++) {
+            long startTime = System.currentTimeMillis();
+            Formula formula = cache.load(path);
+            Logger.log(String.format(
+                    "%s: %d clauses in %d ms (%s)", path, formula.getClauseSize(),
+                    System.currentTimeMillis() - startTime, cache.getHitCount() > 0 ? "snapshot" : "parsed"
+            ));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.kentnek.cdcl.server;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Sends CNF files to a local {@link SolverServer} from several concurrent clients, and reports the throughput and the
+ * latency percentiles.
+ * <p>
+ * Each client keeps one connection, and sends the files round-robin. The first requests of each client only warm up
+ * the server, and are not measured.
+ * <p>
+ * Usage: LoadGenerator file... [--port n] [--clients n] [--requests n] [--warmup n] [--options "time=1000"]
+ *
+ * @author kentnek
+ */
+
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        int port = SolverServer.DEFAULT_PORT;
+        int clientCount = 4;
+        int requestCount = 50;
+        int warmupCount = 5;
+        String options = "";
+        List<String> payloads = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--clients":
+                    clientCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--requests":
+                    requestCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmupCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--options":
+                    options = args[++i];
+                    break;
+                default:
+                    payloads.add(new String(Files.readAllBytes(Paths.get(args[i])), StandardCharsets.UTF_8));
+            }
+        }
+
+        if (payloads.isEmpty()) {
+            System.err.println("Usage: LoadGenerator file... [--port n] [--clients n] [--requests n] [--warmup n] "
+                    + "[--options \"time=1000\"]");
+            System.exit(1);
+        }
+
+        run(port, clientCount, requestCount, warmupCount, options, payloads);
+    }
+
+    /**
+     * @param requestCount the number of measured requests per client.
+     */
+    public static void run(int port, int clientCount, int requestCount, int warmupCount, String options,
+                           List<String> payloads) throws InterruptedException, ExecutionException {
+        ExecutorService clients = Executors.newFixedThreadPool(clientCount);
+        CyclicBarrier barrier = new CyclicBarrier(clientCount + 1);
+        List<Future<long[]>> futures = new ArrayList<>();
+        Map<String, Integer> statusCounts = new ConcurrentHashMap<>();
+
+        for (int c = 0; c < clientCount; c++) {
+            int offset = c;
+            futures.add(clients.submit(() -> {
+                long[] latencies = new long[requestCount];
+
+                try (SolverClient client = new SolverClient(port)) {
+                    for (int i = 0; i < warmupCount; i++) {
+                        client.solve(payloads.get((offset + i) % payloads.size()), options);
+                    }
+
+                    barrier.await();
+
+                    for (int i = 0; i < requestCount; i++) {
+                        String payload = payloads.get((offset + warmupCount + i) % payloads.size());
+
+                        long startTime = System.nanoTime();
+                        List<String> response = client.solve(payload, options);
+                        latencies[i] = System.nanoTime() - startTime;
+
+                        statusCounts.merge(String.valueOf(SolverClient.getStatus(response)), 1, Integer::sum);
+                    }
+                } catch (Exception e) {
+                    // releases the main thread if it is still waiting for the warm-up
+                    barrier.reset();
+                    throw e;
+                }
+
+                return latencies;
+            }));
+        }
+
+        try {
+            // starts the clock once every client has warmed up
+            barrier.await();
+        } catch (BrokenBarrierException e) {
+            // a client failed, its future reports why
+        }
+        long startTime = System.nanoTime();
+
+        long[] latencies = new long[0];
+        try {
+            for (Future<long[]> future : futures) {
+                long[] clientLatencies = future.get();
+                int length = latencies.length;
+                latencies = Arrays.copyOf(latencies, length + clientLatencies.length);
+                System.arraycopy(clientLatencies, 0, latencies, length, clientLatencies.length);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        double elapsedSeconds = (System.nanoTime() - startTime) / 1e9;
+        Arrays.sort(latencies);
+
+        System.out.println(String.format(
+                "%d requests from %d clients in %.2f s: %.1f requests/s",
+                latencies.length, clientCount, elapsedSeconds, latencies.length / elapsedSeconds
+        ));
+        System.out.println(String.format(
+                "Latency: p50 = %.2f ms, p99 = %.2f ms, max = %.2f ms",
+                percentile(latencies, 0.5), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6
+        ));
+        System.out.println("Statuses: " + new TreeMap<>(statusCounts));
+    }
+
+    /**
+     * @return the given percentile of sorted latencies in nanoseconds, in milliseconds.
+     */
+    private static double percentile(long[] sortedLatencies, double p) {
+        int index = (int) Math.ceil(p * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,71 @@
+package com.kentnek.cdcl.server;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A connection to a {@link SolverServer}, which can send any number of requests one after another.
+ * <p>
+ *
+ * @author kentnek
+ */
+
+public class SolverClient implements Closeable {
+
+    private final Socket socket;
+    private final BufferedReader reader;
+    private final Writer writer;
+
+    public SolverClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a formula in DIMACS format, and waits for the response.
+     *
+     * @param options the options of the SOLVE header, e.g. "time=1000 model".
+     * @return the lines of the response, without the final "END".
+     */
+    public List<String> solve(String dimacs, String options) throws IOException {
+        writer.write("SOLVE " + options + "\n");
+        writer.write(dimacs);
+        if (!dimacs.endsWith("\n")) writer.write("\n");
+        writer.write(SolverServer.END + "\n");
+        writer.flush();
+
+        List<String> lines = new ArrayList<>();
+        for (String line; (line = reader.readLine()) != null; ) {
+            if (line.equals(SolverServer.END)) return lines;
+            lines.add(line);
+        }
+
+        throw new EOFException("The server closed the connection.");
+    }
+
+    /**
+     * @return the status of a response, e.g. "SATISFIABLE".
+     */
+    public static String getStatus(List<String> response) {
+        for (String line : response) {
+            if (line.startsWith("s ")) return line.substring(2);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.write("QUIT\n");
+            writer.flush();
+        } finally {
+            socket.close();
+        }
+    }
+}
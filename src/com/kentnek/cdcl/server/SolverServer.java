@@ -0,0 +1,318 @@
+package com.kentnek.cdcl.server;
+
+import com.kentnek.cdcl.Logger;
+import com.kentnek.cdcl.algo.Budget;
+import com.kentnek.cdcl.algo.CdclSolver;
+import com.kentnek.cdcl.algo.SolveResult;
+import com.kentnek.cdcl.algo.UnsatProver;
+import com.kentnek.cdcl.algo.analyzer.ClauseLearningWithUip;
+import com.kentnek.cdcl.algo.picker.HybridVsidsPicker;
+import com.kentnek.cdcl.algo.preprocessor.BlockedClauseElimination;
+import com.kentnek.cdcl.algo.preprocessor.FailedLiteralProbing;
+import com.kentnek.cdcl.algo.preprocessor.PreprocessorPipeline;
+import com.kentnek.cdcl.algo.preprocessor.PureLiteralElimination;
+import com.kentnek.cdcl.algo.propagator.TwoWatchedLiteralPropagator;
+import com.kentnek.cdcl.model.Assignment;
+import com.kentnek.cdcl.model.Formula;
+import com.kentnek.cdcl.model.Logic;
+import com.kentnek.cdcl.parser.ClauseArena;
+import com.kentnek.cdcl.parser.DimacsParser;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long-lived solver process, so that many formulas are solved by an already started and warmed-up JVM.
+ * <p>
+ * The server listens on the loopback interface only. A connection is kept open for any number of requests, each being
+ * a header line, a DIMACS payload, and a line "END":
+ * <p>
+ * SOLVE [time=ms] [conflicts=n] [model] [proof]
+ * <p>
+ * The response follows the SAT competition output, and is also terminated by a line "END": an "s" status line
+ * (SATISFIABLE, UNSATISFIABLE, UNKNOWN or ERROR), "c" lines with the statistics, a "v" line with the model if
+ * requested, and the refutation proof if requested and the formula is unsatisfiable. "QUIT" closes the connection.
+ * <p>
+ * Payloads are parsed on the connection threads, and solved on a fixed pool of solver threads. Each solver thread
+ * keeps its own assignment, propagator and picker between jobs, so their maps and watch lists are reused rather than
+ * reallocated for every formula.
+ *
+ * @author kentnek
+ */
+
+public class SolverServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 7777;
+    static final String END = "END";
+
+    private int port = DEFAULT_PORT;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    private ServerSocket serverSocket;
+    private ExecutorService solverPool;
+    private ExecutorService connectionPool;
+    private ThreadLocal<Worker> workers;
+
+    private final AtomicLong solvedCount = new AtomicLong(0);
+
+    public SolverServer withPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public SolverServer withThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public long getSolvedCount() {
+        return solvedCount.get();
+    }
+
+    /**
+     * Binds the socket. Use port 0 to pick any free port, see {@link #getPort()}.
+     */
+    public SolverServer start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        solverPool = Executors.newFixedThreadPool(threadCount);
+        connectionPool = Executors.newCachedThreadPool();
+        workers = ThreadLocal.withInitial(Worker::new);
+
+        Logger.log(String.format("Solver server listening on port %d with %d threads.", getPort(), threadCount));
+        return this;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    public void serve() throws IOException {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                connectionPool.submit(() -> handle(socket));
+            }
+        } catch (SocketException e) {
+            // the server socket has been closed
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connectionPool.shutdownNow();
+        solverPool.shutdownNow();
+    }
+
+    //region Connections
+
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            for (String header; (header = reader.readLine()) != null; ) {
+                header = header.trim();
+                if (header.isEmpty()) continue;
+                if (header.equals("QUIT")) break;
+
+                // the payload is always consumed, so the connection stays usable after an invalid request
+                String payload = readPayload(reader);
+
+                String response;
+                try {
+                    Request request = Request.parse(header);
+                    Formula formula = parsePayload(payload);
+
+                    response = solverPool.submit(() -> solve(request, formula)).get();
+                } catch (ExecutionException e) {
+                    response = error(e.getCause());
+                } catch (RuntimeException e) {
+                    response = error(e);
+                }
+
+                writer.write(response);
+                writer.write(END + "\n");
+                writer.flush();
+            }
+
+        } catch (IOException e) {
+            // the client went away
+        } catch (InterruptedException e) {
+            // the server is shutting down
+        }
+    }
+
+    /**
+     * Reads the DIMACS lines up to "END".
+     */
+    private static String readPayload(BufferedReader reader) throws IOException {
+        StringBuilder payload = new StringBuilder();
+
+        for (String line; (line = reader.readLine()) != null; ) {
+            if (line.equals(END)) return payload.toString();
+            payload.append(line).append('\n');
+        }
+
+        throw new EOFException("The connection was closed in the middle of a payload.");
+    }
+
+    /**
+     * Parses a payload with {@link DimacsParser}, like files are, normalisation included.
+     *
+     * @throws IllegalArgumentException if the payload is not in DIMACS CNF format, or the clause count does not match
+     *                                  the header.
+     */
+    private static Formula parsePayload(String payload) throws IOException {
+        InputStream in = new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8));
+        ClauseArena arena = new DimacsParser().parse(in);
+
+        if (arena.getParsedClauseCount() != arena.getDeclaredClauseCount()) {
+            throw new IllegalArgumentException(String.format(
+                    "Clause number defined to be %d, but found %d instead.",
+                    arena.getDeclaredClauseCount(), arena.getParsedClauseCount()
+            ));
+        }
+
+        return arena.toFormula();
+    }
+
+    private static String error(Throwable e) {
+        return "s ERROR\nc " + String.valueOf(e).replace('\n', ' ') + "\n";
+    }
+
+    //endregion
+
+    //region Solving
+
+    private String solve(Request request, Formula formula) throws IOException {
+        Budget budget = new Budget().withTimeLimit(request.timeLimitMillis).withConflictLimit(request.conflictLimit);
+        SolveResult result = workers.get().solve(formula, budget, request.proof);
+        solvedCount.incrementAndGet();
+
+        // The model is the scratch assignment of this thread, so the response is built before its next job.
+        StringWriter writer = new StringWriter();
+        switch (result.getStatus()) {
+            case SAT:
+                writer.write("s SATISFIABLE\n");
+                break;
+            case UNSAT:
+                writer.write("s UNSATISFIABLE\n");
+                break;
+            default:
+                writer.write("s UNKNOWN\n");
+        }
+
+        writer.write(String.format(
+                "c time=%d conflicts=%d decisions=%d propagations=%d restarts=%d\n",
+                result.elapsedTimeMillis, result.conflicts, result.decisions, result.propagations, result.restarts
+        ));
+        if (result.getReason() != null) writer.write("c reason=" + result.getReason() + "\n");
+
+        Assignment model = result.getAssignment();
+        if (request.model && model != null) {
+            writer.write("v");
+            for (int v = 1; v <= model.getVariableCount(); v++) {
+                writer.write(" " + (model.getLiteralValue(v) == Logic.TRUE ? v : -v));
+            }
+            writer.write(" 0\n");
+        }
+
+        if (request.proof && result.getStatus() == SolveResult.Status.UNSAT) {
+            new UnsatProver(formula).prove()
+                    .expandResolutions()
+                    .renumberClauses()
+                    .write(writer, "request");
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * The per-thread solver, with the same configuration as {@link com.kentnek.cdcl.Main}. It is configured once:
+     * adding a preprocessor for every request would nest one more pipeline each time.
+     */
+    private static class Worker {
+        private final Assignment assignment = new Assignment(0);
+        private final CdclSolver solver = new CdclSolver()
+                .with(new PreprocessorPipeline()
+                        .add(new PureLiteralElimination())
+                        .add(new BlockedClauseElimination(), 500)
+                        .add(new FailedLiteralProbing(), 500))
+                .with(new HybridVsidsPicker(0.1f))
+                .with(new TwoWatchedLiteralPropagator())
+                .with(new ClauseLearningWithUip())
+                .with(assignment);
+
+        SolveResult solve(Formula formula, Budget budget, boolean tracing) {
+            return solver
+                    .with(budget)
+                    .withTracing(tracing)
+                    .solveWithBudget(formula);
+        }
+    }
+
+    //endregion
+
+    /**
+     * The options of a SOLVE header.
+     */
+    static class Request {
+        long timeLimitMillis = Long.MAX_VALUE;
+        long conflictLimit = Long.MAX_VALUE;
+        boolean model = false;
+        boolean proof = false;
+
+        static Request parse(String header) {
+            String[] tokens = header.split("\\s+");
+            if (!tokens[0].equals("SOLVE")) throw new IllegalArgumentException("Unknown command: " + tokens[0]);
+
+            Request request = new Request();
+            for (int i = 1; i < tokens.length; i++) {
+                String token = tokens[i];
+
+                if (token.equals("model")) {
+                    request.model = true;
+                } else if (token.equals("proof")) {
+                    request.proof = true;
+                } else if (token.startsWith("time=")) {
+                    request.timeLimitMillis = Long.parseLong(token.substring(5));
+                } else if (token.startsWith("conflicts=")) {
+                    request.conflictLimit = Long.parseLong(token.substring(10));
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + token);
+                }
+            }
+
+            return request;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        SolverServer server = new SolverServer();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    server.withPort(Integer.parseInt(args[++i]));
+                    break;
+                case "--threads":
+                    server.withThreadCount(Integer.parseInt(args[++i]));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        server.start().serve();
+    }
+}